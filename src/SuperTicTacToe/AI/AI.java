@@ -1,38 +1,105 @@
 package SuperTicTacToe.AI;
 
 import SuperTicTacToe.Cell;
+import SuperTicTacToe.Distributed.SearchCoordinator;
+import SuperTicTacToe.Monitoring.GameStats;
+import SuperTicTacToe.Monitoring.ThinkEvent;
 import SuperTicTacToe.SuperTicTacToeGame;
+import jdk.jfr.FlightRecorder;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 public class AI {
+    //Node table size used in solver mode (2^16 entries, about 1.3 MB).
+    private static final int SOLVER_TABLE_BITS = 16;
+    //Cache depth of proven wins, which are worth reusing at any budget.
+    private static final int PROVEN_DEPTH = 255;
+
     private AIStatus status;
+    private AIStatus lastStrategy;
     private Point optimalMove;
+    private boolean verbose;
 
     private Cell[][] lastKnownBoard;
     private ArrayList<Point> plyPositions;
     private ArrayList<Point> aiPositions;
+    //One Point per cell (row*size+col), shared by the position lists so observing
+    //a board allocates nothing.
+    private Point[] cellPoints;
+    private Random random;
 
     private Cell aiCellValue;
     private Cell playerCellValue;
     private int connectionsToWin;
 
+    private ThreatSearch threatSearch;
+    private Evaluator evaluator;
+    private byte[] flatBoard;
+
+    //Proof-number solver, only created once solver mode is turned on, and the
+    //game it is handed, rebuilt in place before every move.
+    private ProofNumberSearch solver;
+    private SuperTicTacToeGame solverGame;
+    //Multi-move search behind analyze, only created once an analysis is asked for.
+    private MultiPvSearch analysis;
+    //Worker processes analyze runs on instead, when set.
+    private SearchCoordinator coordinator;
+
+    //Persistent position cache (null for none), the key of the position being
+    //thought about, and whether the move came from the cache.
+    private PositionCache cache;
+    private SymmetricHash cacheHash;
+    private long cacheKey;
+    private long cacheSalt;
+    private boolean fromCache;
+    //Evaluator score behind a BEST_ALTERNATIVE move, stored with it in the cache.
+    private double moveScore;
+
+    private AIConfig config;
+    private TimeManager timeManager;
+    private long forkDeadline;
+    private long blockForkDeadline;
+    private long lastThinkNanos;
+    //Search effort behind the current move, for GameStats and the Think JFR event.
+    private long searchNodes;
+    private int searchDepth;
+
     /*********************************************************************************
      * AI Class
      *********************************************************************************
      * Initializes the relevant AI variables (status, connections to win, cell values,
      * and cell positions) and stores the current game board by calling remember.
+     * The AI has no time limit (see AIConfig.UNLIMITED).
      ********************************************************************************/
     public AI(SuperTicTacToeGame game, Cell aiValue) {
+        this(game, aiValue, AIConfig.UNLIMITED);
+    }
+
+    /*********************************************************************************
+     * AI Class
+     *********************************************************************************
+     * Same as AI(game, aiValue), with the budgets of the given configuration.
+     ********************************************************************************/
+    public AI(SuperTicTacToeGame game, Cell aiValue, AIConfig config) {
         this.status = AIStatus.WAITING_FOR_PLAYER;
+        this.verbose = true;
         this.connectionsToWin = game.getConnections();
         this.aiCellValue = aiValue;
         this.playerCellValue = aiValue == Cell.X ? Cell.O : Cell.X;
         this.plyPositions = new ArrayList<Point>();
         this.aiPositions = new ArrayList<Point>();
+        this.random = new Random();
+        this.threatSearch = new ThreatSearch(game.getSize(), this.connectionsToWin);
+        this.timeManager = new TimeManager(game.getSize(), this.connectionsToWin);
+        this.evaluator = new Evaluator(game.getSize(), this.connectionsToWin);
         remember(game.getBoard());
+        setConfig(config);
+        setCache(PositionCache.shared());
     }
 
     /*********************************************************************************
@@ -41,18 +108,47 @@ public class AI {
      * The AI's status is updated to "thinking". At which time, the AI observes the
      * board, determines its best chance at winning, then returns the optimal move.
      * Before returning the optimal move, the player and ai position memory is cleared.
+     * With a move time set, the searches stop at a deadline chosen by the time
+     * manager, and the best move found by then is returned. Every move is counted
+     * in GameStats and, once Flight Recorder is running, recorded as a Think JFR
+     * event. (Setting up JFR for the first event would cost a short-lived JVM a
+     * few hundred milliseconds before its first move.)
      *
      * @param board - The current game board.
      * @return optimalMove - The AI's optimal move as a Point object.
      ********************************************************************************/
     public Point think(Cell[][] board) {
-        System.out.println();
+        if (this.verbose)
+            System.out.println();
+        ThinkEvent event = FlightRecorder.isInitialized() ? new ThinkEvent() : null;
+        if (event != null)
+            event.begin();
+        long start = System.nanoTime();
         this.optimalMove = null;
+        this.searchNodes = 0;
+        this.searchDepth = 0;
+        this.cacheKey = 0;
+        this.fromCache = false;
+        this.moveScore = 0;
         statusChange(AIStatus.THINKING);
 
         observeBoard(board);
+        scheduleDeadlines(start);
 
         performStrategySequence();
+        this.lastStrategy = this.status;
+        this.lastThinkNanos = System.nanoTime()-start;
+        GameStats.get().thinkCompleted(this.lastThinkNanos, this.searchNodes);
+        if (event != null)
+            event.end();
+        if (event != null && event.shouldCommit()) {
+            event.boardSize = board.length;
+            event.ply = this.aiPositions.size()+this.plyPositions.size();
+            event.depth = this.searchDepth;
+            event.nodes = this.searchNodes;
+            event.strategy = this.lastStrategy.name();
+            event.commit();
+        }
 
         this.plyPositions.clear();
         this.aiPositions.clear();
@@ -60,19 +156,255 @@ public class AI {
         return this.optimalMove;
     }
 
+    /*********************************************************************************
+     * analyze
+     *********************************************************************************
+     * Ranks the AI's best moves in a position, for hints and analysis. Unlike think,
+     * every move is searched by an alpha-beta search (see MultiPvSearch) and the
+     * best count moves are returned with their scores and principal variations.
+     * The search deepens until the configuration's move time runs out, or to
+     * MultiPvSearch.DEFAULT_MAX_DEPTH if there is no move time. Normal play does
+     * not use this search.
+     *
+     * @param board - The current game board.
+     * @param count - The number of moves to rank.
+     * @return lines - Up to count moves, best first.
+     ********************************************************************************/
+    public List<MoveAnalysis> analyze(Cell[][] board, int count) {
+        return analyze(board, count, null);
+    }
+
+    /*********************************************************************************
+     * analyze
+     *********************************************************************************
+     * Same as analyze(board, count), with the ranking so far handed to the listener
+     * after every completed depth. With a search coordinator set, the root moves
+     * are searched on its worker processes; if a worker fails, the analysis falls
+     * back to the in-process search.
+     *
+     * @param board - The current game board.
+     * @param count - The number of moves to rank.
+     * @param listener - Receives the results of each depth, or null.
+     * @return lines - Up to count moves, best first.
+     ********************************************************************************/
+    public List<MoveAnalysis> analyze(Cell[][] board, int count, AnalysisListener listener) {
+        long start = System.nanoTime();
+        int size = board.length;
+        if (this.analysis == null)
+            this.analysis = new MultiPvSearch(size, this.connectionsToWin);
+        byte[] cells = new byte[size*size];
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                cells[i*size+j] = board[i][j].toByte();
+        int maxDepth = MultiPvSearch.DEFAULT_MAX_DEPTH;
+        long deadline = Long.MAX_VALUE;
+        if (this.config.getMoveTimeMillis() > 0) {
+            maxDepth = size*size;
+            deadline = start+this.config.getMoveTimeMillis()*1000000L;
+        }
+        if (this.coordinator != null) {
+            try {
+                return this.coordinator.analyze(cells, this.aiCellValue.toByte(), this.connectionsToWin, count,
+                        maxDepth, deadline, listener);
+            } catch (IOException ex) {
+                System.err.println("Distributed analysis failed, searching in process: "+ex.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return new ArrayList<>();
+            }
+        }
+        this.analysis.setMaxDepth(maxDepth);
+        this.analysis.setDeadline(deadline);
+        return this.analysis.analyze(cells, this.aiCellValue.toByte(), count, listener);
+    }
+
+    /*********************************************************************************
+     * setCoordinator
+     *********************************************************************************
+     * Makes analyze split its search between worker processes. The caller owns
+     * the coordinator and closes it.
+     *
+     * @param coordinator - The coordinator, or null to search in process.
+     ********************************************************************************/
+    public void setCoordinator(SearchCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
     /*********************************************************************************
      * eraseMemory
      *********************************************************************************
      * Erases all data variables associated with the last game, and sets all variables
-     * to their default value.
+     * to their default value. The board, the evaluator and the per-move counters
+     * are cleared in place, so the AI can play a new game without allocating.
      ********************************************************************************/
     public void eraseMemory() {
+        this.status = AIStatus.WAITING_FOR_PLAYER;
         this.optimalMove = null;
+        this.lastStrategy = null;
         this.plyPositions.clear();
         this.aiPositions.clear();
         for (int i = 0; i < this.lastKnownBoard.length; i++)
             for (int j = 0; j < this.lastKnownBoard.length; j++)
                 this.lastKnownBoard[i][j] = Cell.EMPTY;
+        Arrays.fill(this.flatBoard, Cell.EMPTY_CODE);
+        this.evaluator.sync(this.flatBoard);
+        this.cacheKey = 0;
+        this.fromCache = false;
+        this.moveScore = 0;
+        this.lastThinkNanos = 0;
+        this.searchNodes = 0;
+        this.searchDepth = 0;
+    }
+
+    /*********************************************************************************
+     * reuse
+     *********************************************************************************
+     * Prepares the AI for a new game on a board of the same size and connections,
+     * possibly playing the other side or with other budgets, in the same state as
+     * a newly constructed AI. Used by GamePool in place of constructing a new AI.
+     *
+     * @param aiValue - The cell value the AI plays.
+     * @param config - The budgets to play with.
+     ********************************************************************************/
+    public void reuse(Cell aiValue, AIConfig config) {
+        eraseMemory();
+        this.aiCellValue = aiValue;
+        this.playerCellValue = aiValue == Cell.X ? Cell.O : Cell.X;
+        this.verbose = true;
+        this.coordinator = null;
+        setConfig(config);
+        setCache(PositionCache.shared());
+    }
+
+    /*********************************************************************************
+     * setVerbose
+     *********************************************************************************
+     * Turns the console status messages on or off. Batch tools evaluating many
+     * positions turn them off; the interactive game leaves them on.
+     *
+     * @param verbose - Whether or not status changes are printed.
+     ********************************************************************************/
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /*********************************************************************************
+     * setSolverMode
+     *********************************************************************************
+     * Turns solver mode on or off. In solver mode the AI runs a proof-number search
+     * before looking for forks, and plays a move that keeps a proven win whenever
+     * one can be found within the node limit.
+     *
+     * @param enabled - Whether or not the solver is used.
+     * @param nodeLimit - The maximum number of nodes searched per move.
+     ********************************************************************************/
+    public void setSolverMode(boolean enabled, long nodeLimit) {
+        if (!enabled) {
+            this.solver = null;
+            return;
+        }
+        //Proven results stay true, so an existing solver keeps its table.
+        if (this.solver == null)
+            this.solver = new ProofNumberSearch(this.lastKnownBoard.length, this.connectionsToWin, SOLVER_TABLE_BITS);
+        this.solver.setNodeLimit(nodeLimit);
+    }
+
+    /*********************************************************************************
+     * setConfig
+     *********************************************************************************
+     * Applies a configuration's move time and node limits. The solver is turned on
+     * when the configuration has a solver node limit.
+     *
+     * @param config - The configuration to use from the next move on.
+     ********************************************************************************/
+    public void setConfig(AIConfig config) {
+        this.config = config;
+        this.threatSearch.setLimits(ThreatSearch.DEFAULT_MAX_DEPTH, config.getSearchNodeLimit());
+        setSolverMode(config.getSolverNodeLimit() > 0, config.getSolverNodeLimit());
+    }
+
+    /*********************************************************************************
+     * setCache
+     *********************************************************************************
+     * Sets the persistent position cache the AI reads its moves from and stores
+     * them in. By default this is PositionCache.shared().
+     *
+     * @param cache - The cache, or null for none.
+     ********************************************************************************/
+    public void setCache(PositionCache cache) {
+        this.cache = cache;
+        if (cache != null && this.cacheHash == null) {
+            this.cacheHash = new SymmetricHash(this.lastKnownBoard.length, this.connectionsToWin);
+            //Moves chosen with other evaluation weights are not reused.
+            this.cacheSalt = Arrays.hashCode(this.evaluator.getWeights())*0x9E3779B97F4A7C15L;
+        }
+    }
+
+    /*********************************************************************************
+     * setDifficulty
+     *********************************************************************************
+     * Applies the budgets of a difficulty level.
+     *
+     * @param difficulty - The difficulty level.
+     ********************************************************************************/
+    public void setDifficulty(Difficulty difficulty) {
+        setConfig(new AIConfig(difficulty));
+    }
+
+    /*********************************************************************************
+     * getSize
+     *********************************************************************************
+     * Returns the size of the board the AI was made for.
+     *
+     * @return size - The size of the game board.
+     ********************************************************************************/
+    int getSize() {
+        return this.lastKnownBoard.length;
+    }
+
+    /*********************************************************************************
+     * getConnections
+     *********************************************************************************
+     * Returns the connections to win of the game the AI was made for.
+     *
+     * @return connections - The connections to win the game.
+     ********************************************************************************/
+    int getConnections() {
+        return this.connectionsToWin;
+    }
+
+    /*********************************************************************************
+     * getConfig
+     *********************************************************************************
+     * Returns the configuration in use.
+     *
+     * @return config - The AI's configuration.
+     ********************************************************************************/
+    public AIConfig getConfig() {
+        return this.config;
+    }
+
+    /*********************************************************************************
+     * getLastThinkNanos
+     *********************************************************************************
+     * Returns how long the most recent call to think took.
+     *
+     * @return lastThinkNanos - The duration of the last move in nanoseconds.
+     ********************************************************************************/
+    public long getLastThinkNanos() {
+        return this.lastThinkNanos;
+    }
+
+    /*********************************************************************************
+     * getLastStrategy
+     *********************************************************************************
+     * Returns the strategy (ENDGAME, BLOCKING, ...) that produced the move returned
+     * by the most recent call to think, or null if the AI has not thought yet.
+     *
+     * @return lastStrategy - The strategy behind the last move as an AIStatus.
+     ********************************************************************************/
+    public AIStatus getLastStrategy() {
+        return this.lastStrategy;
     }
 
     /*********************************************************************************
@@ -84,10 +416,37 @@ public class AI {
      * @param status - The AI's status as an AIStatus enumeration.
      ********************************************************************************/
     private void statusChange(AIStatus status) {
-        System.out.println("AI Status Changed: "+status);
+        if (this.verbose)
+            System.out.println("AI Status Changed: "+status);
         this.status = status;
     }
 
+    /*********************************************************************************
+     * scheduleDeadlines
+     *********************************************************************************
+     * Asks the time manager how long to spend on this move and hands each search
+     * its deadline. The solver may use up to 40% of the allocation and the fork
+     * search up to 70%; time either one does not use is passed on, and the fork
+     * block search may run until the end. The remaining strategies are cheap and
+     * always run.
+     *
+     * @param start - The System.nanoTime() value at which the move started.
+     ********************************************************************************/
+    private void scheduleDeadlines(long start) {
+        if (this.config.getMoveTimeMillis() <= 0) {
+            this.forkDeadline = Long.MAX_VALUE;
+            this.blockForkDeadline = Long.MAX_VALUE;
+            if (this.solver != null)
+                this.solver.setDeadline(Long.MAX_VALUE);
+            return;
+        }
+        long allocation = this.timeManager.allocate(this.flatBoard, this.config.getMoveTimeMillis()*1000000L);
+        if (this.solver != null)
+            this.solver.setDeadline(start+allocation*4/10);
+        this.forkDeadline = start+allocation*7/10;
+        this.blockForkDeadline = start+allocation;
+    }
+
     /*********************************************************************************
      * observeBoard
      *********************************************************************************
@@ -97,12 +456,18 @@ public class AI {
      *              objects.
      ********************************************************************************/
     private void observeBoard(Cell[][] board) {
+        int size = board.length;
+        if (this.cellPoints == null || this.cellPoints.length != size*size) {
+            this.cellPoints = new Point[size*size];
+            for (int cell = 0; cell < this.cellPoints.length; cell++)
+                this.cellPoints[cell] = new Point(cell/size, cell%size);
+        }
         for (int i = 0; i < board.length; i++) {
             for (int j = 0; j < board[i].length; j++) {
                 if (board[i][j] == aiCellValue)
-                    aiPositions.add(new Point(i, j));
+                    aiPositions.add(this.cellPoints[i*size+j]);
                 else if (board[i][j] == playerCellValue)
-                    plyPositions.add(new Point(i, j));
+                    plyPositions.add(this.cellPoints[i*size+j]);
             }
         }
         remember(board);
@@ -112,7 +477,7 @@ public class AI {
      * remember
      *********************************************************************************
      * Stores the current game board in the "lastKnownBoard" variable for later
-     * parsing.
+     * parsing, and brings the evaluator's window codes up to date with it.
      *
      * @param board - The current game board.
      ********************************************************************************/
@@ -121,12 +486,17 @@ public class AI {
         //To save time, I am using a nested for loop. Probably more efficient ways of doing this.
         //Maybe using a single loop as well as Arrays.copyOf? Unsure.
         int boardSize = board.length;
-        this.lastKnownBoard = new Cell[boardSize][boardSize];
+        if (this.lastKnownBoard == null || this.lastKnownBoard.length != boardSize)
+            this.lastKnownBoard = new Cell[boardSize][boardSize];
+        if (this.flatBoard == null || this.flatBoard.length != boardSize*boardSize)
+            this.flatBoard = new byte[boardSize*boardSize];
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
                 this.lastKnownBoard[i][j] = board[i][j];
+                this.flatBoard[i*boardSize+j] = board[i][j].toByte();
             }
         }
+        this.evaluator.sync(this.flatBoard);
     }
 
     /*********************************************************************************
@@ -149,328 +519,268 @@ public class AI {
      *********************************************************************************
      * The AI performs the strategy sequence by first attempting to win,
      * attempting to block the other player from winning, attempting to create
-     * a fork, attempting to block a fork, then attempting to play as close to its
-     * own other positions as possible to create chains.
+     * a fork, attempting to block a fork, then playing the cell the evaluator
+     * scores best. (Forks are found by a
+     * threat-space search over the whole board rather than per position.) In
+     * solver mode, a proven winning move is tried before forks. When a position
+     * cache is set, the searches are skipped for positions it already holds, and
+     * their results are stored in it.
      ********************************************************************************/
     private void performStrategySequence() {
-        for (Point p : aiPositions)
-            attemptEndgame(p);
-        for (Point p : plyPositions)
-            attemptBlock(p);
-        for (Point p : aiPositions)
-            attemptFork(p);
-        for (Point p : plyPositions)
-            attemptBlockFork(p);
-        for (Point p : aiPositions)
-            attemptBestAlternative(p);
+        attemptEndgame();
+        attemptBlock();
+        attemptCached();
+        attemptProvenWin();
+        attemptFork();
+        attemptBlockFork();
+        attemptBestAlternative();
+        storeInCache();
         attemptRandom();
     }
 
     /*********************************************************************************
-     * attemptEndgame
+     * attemptCached
      *********************************************************************************
-     * AI checks every one of its positions for row, column, diag, and antidiag win
-     * conditions.
-     *
-     * @param posToCheck - The position it is currently checking.
+     * AI looks the position up in the position cache, or any rotation or
+     * reflection of it, and replays the stored move if it was found with at least
+     * the effort of the current configuration. An entry that does not fit the
+     * board or names no strategy (a stale or corrupt file) counts as a miss.
      ********************************************************************************/
-    private void attemptEndgame(Point posToCheck) {
-        if ((this.optimalMove != null) || (this.aiPositions.size() <= 0))
+    private void attemptCached() {
+        if (this.optimalMove != null || this.cache == null)
             return;
+        this.cacheKey = this.cacheHash.key(this.flatBoard, this.aiCellValue.toByte())^this.cacheSalt;
+        if (this.cacheKey == 0)
+            this.cacheKey = 1;
+        PositionCache.Entry entry = this.cache.get(this.cacheKey);
+        GameStats.get().cacheProbed(entry != null);
+        if (entry == null || entry.move < 0 || entry.depth < cacheDepth()
+                || entry.strategy >= AIStatus.values().length)
+            return;
+        int cell = this.cacheHash.fromCanonical(entry.move);
+        if (cell >= this.flatBoard.length || this.flatBoard[cell] != Cell.EMPTY_CODE)
+            return;
+        this.fromCache = true;
+        statusChange(AIStatus.values()[entry.strategy]);
+        this.optimalMove = new Point(cell/this.lastKnownBoard.length, cell%this.lastKnownBoard.length);
+    }
 
-        //Row endgame conditions.
-        for (int i = 0; (i <= this.lastKnownBoard.length - this.connectionsToWin); i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[posToCheck.x][j] != Cell.EMPTY && this.lastKnownBoard[posToCheck.x][j] != this.aiCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[posToCheck.x][j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(posToCheck.x, j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.ENDGAME);
-                this.optimalMove = emptyCell;
-                return;
-            }
-        }
-
-        //Column endgame conditions.
-        for (int i = 0; (i <= this.lastKnownBoard.length - this.connectionsToWin); i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[j][posToCheck.y] != Cell.EMPTY && this.lastKnownBoard[j][posToCheck.y] != this.aiCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[j][posToCheck.y] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(j, posToCheck.y);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.ENDGAME);
-                this.optimalMove = emptyCell;
-                return;
-            }
-        }
+    /*********************************************************************************
+     * storeInCache
+     *********************************************************************************
+     * Stores a move found by one of the searches in the position cache. Proven
+     * wins are stored at the greatest depth; other moves at the depth of the
+     * configuration's budget.
+     ********************************************************************************/
+    private void storeInCache() {
+        if (this.cache == null || this.cacheKey == 0 || this.fromCache || this.optimalMove == null)
+            return;
+        int cell = this.optimalMove.x*this.lastKnownBoard.length+this.optimalMove.y;
+        boolean proven = this.status == AIStatus.PROVEN_WIN || this.status == AIStatus.CREATING_FORK;
+        this.cache.put(this.cacheKey, this.cacheHash.toCanonical(cell), proven ? PROVEN_DEPTH : cacheDepth(),
+                this.status.ordinal(), proven ? 1 : (float) this.moveScore);
+    }
 
-        //Diagonal Endgame Conditions
-        int diagSubVal = Math.min(posToCheck.y, posToCheck.x);
-        Point diagStartPos = new Point(posToCheck.x-diagSubVal, posToCheck.y-diagSubVal);
-        int distFromDiagPrimary = diagStartPos.x+diagStartPos.y;
-
-        for (int i = 0; i < this.lastKnownBoard.length-distFromDiagPrimary-this.connectionsToWin+1; i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] != Cell.EMPTY && this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] != this.aiCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(diagStartPos.x+j, diagStartPos.y+j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.ENDGAME);
-                this.optimalMove = emptyCell;
-                return;
-            }
-        }
+    /*********************************************************************************
+     * cacheDepth
+     *********************************************************************************
+     * Returns the cache depth of the configuration's budget: the number of bits in
+     * its combined node limits.
+     ********************************************************************************/
+    private int cacheDepth() {
+        long nodes = this.config.getSearchNodeLimit()+this.config.getSolverNodeLimit();
+        return Math.min(PROVEN_DEPTH-1, 64-Long.numberOfLeadingZeros(nodes));
+    }
 
-        //AntiDiagonal Endgame Conditions
-        int antiDiagDistFromBottom = (this.lastKnownBoard.length-1)-posToCheck.x;
-        int antiDiagSubVal = Math.min(posToCheck.y, antiDiagDistFromBottom);
-
-        Point antiDiagStartPos = new Point(posToCheck.x+antiDiagSubVal, posToCheck.y-antiDiagSubVal);
-        int antiDiagDistFromPrimary = Math.abs((antiDiagStartPos.x+antiDiagStartPos.y)-(this.lastKnownBoard.length-1));
-
-        for (int i = 0; i < this.lastKnownBoard.length-antiDiagDistFromPrimary-this.connectionsToWin+1; i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[antiDiagStartPos.x-j][antiDiagStartPos.y+j] != Cell.EMPTY && this.lastKnownBoard[antiDiagStartPos.x-j][antiDiagStartPos.y+j] != this.aiCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[antiDiagStartPos.x-j][antiDiagStartPos.y+j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(antiDiagStartPos.x-j, antiDiagStartPos.y+j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.ENDGAME);
-                this.optimalMove = emptyCell;
-                return;
-            }
+    /*********************************************************************************
+     * attemptEndgame
+     *********************************************************************************
+     * AI looks up the pattern class of every window on the board and plays the
+     * empty cell of a window it already holds all but one cell of.
+     ********************************************************************************/
+    private void attemptEndgame() {
+        if ((this.optimalMove != null) || (this.aiPositions.size() <= 0))
+            return;
+        int cell = this.evaluator.findWinningCell(this.aiCellValue.toByte());
+        if (cell >= 0) {
+            statusChange(AIStatus.ENDGAME);
+            this.optimalMove = new Point(cell/this.lastKnownBoard.length, cell%this.lastKnownBoard.length);
         }
     }
 
     /*********************************************************************************
      * attemptBlock
      *********************************************************************************
-     * AI checks every one of the player's positions for row, column, diag, and
-     * antidiagonal win conditions and ways to block them from winning.
-     *
-     * @param posToCheck - The player's position it's currently checking.
+     * AI looks up the pattern class of every window on the board and blocks the
+     * empty cell of a window the player holds all but one cell of.
      ********************************************************************************/
-    private void attemptBlock(Point posToCheck) {
-        if (this.optimalMove != null)
+    private void attemptBlock() {
+        if ((this.optimalMove != null) || (this.plyPositions.size() <= 0))
             return;
-        //Row block conditions.
-        for (int i = 0; (i <= this.lastKnownBoard.length - this.connectionsToWin); i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[posToCheck.x][j] != Cell.EMPTY && this.lastKnownBoard[posToCheck.x][j] != this.playerCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[posToCheck.x][j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(posToCheck.x, j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.BLOCKING);
-                this.optimalMove = emptyCell;
-                return;
-            }
-        }
-
-        //Column block conditions.
-        for (int i = 0; (i <= this.lastKnownBoard.length - this.connectionsToWin); i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[j][posToCheck.y] != Cell.EMPTY && this.lastKnownBoard[j][posToCheck.y] != this.playerCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[j][posToCheck.y] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(j, posToCheck.y);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.BLOCKING);
-                this.optimalMove = emptyCell;
-                return;
-            }
+        int cell = this.evaluator.findWinningCell(this.playerCellValue.toByte());
+        if (cell >= 0) {
+            statusChange(AIStatus.BLOCKING);
+            this.optimalMove = new Point(cell/this.lastKnownBoard.length, cell%this.lastKnownBoard.length);
         }
+    }
 
-        //Diagonal Block Conditions
-        int diagSubVal = Math.min(posToCheck.y, posToCheck.x);
-        Point diagStartPos = new Point(posToCheck.x-diagSubVal, posToCheck.y-diagSubVal);
-        int distFromDiagPrimary = diagStartPos.x+diagStartPos.y;
-
-        for (int i = 0; i < this.lastKnownBoard.length-distFromDiagPrimary-this.connectionsToWin+1; i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin+i; j++) {
-                if (this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] != Cell.EMPTY && this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] != this.playerCellValue) {
-                    emptyCell = null;
-                    break;
-                }
-                else if (this.lastKnownBoard[diagStartPos.x+j][diagStartPos.y+j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(diagStartPos.x+j, diagStartPos.y+j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.BLOCKING);
-                this.optimalMove = emptyCell;
-                return;
-            }
-        }
+    /*********************************************************************************
+     * attemptProvenWin
+     *********************************************************************************
+     * In solver mode, AI rebuilds the position as a game and asks the proof-number
+     * solver for a move that keeps a forced win. Nothing is played if no win can be
+     * proven within the node limit.
+     ********************************************************************************/
+    private void attemptProvenWin() {
+        if (this.optimalMove != null || this.solver == null)
+            return;
+        int move = this.solver.findWinningMove(rebuildGame());
+        this.searchNodes += this.solver.getNodes();
+        GameStats.get().tableProbed(this.solver.getTableProbes(), this.solver.getTableHits());
+        if (move < 0)
+            return;
+        statusChange(AIStatus.PROVEN_WIN);
+        if (this.verbose)
+            System.out.println("Forced win proven in "+this.solver.getNodes()+" nodes.");
+        this.optimalMove = new Point(move/this.lastKnownBoard.length, move%this.lastKnownBoard.length);
+    }
 
-        //AntiDiagonal Block Conditions
-        int antiDiagDistFromBottom = (this.lastKnownBoard.length-1)-posToCheck.x;
-        int antiDiagSubVal = Math.min(posToCheck.y, antiDiagDistFromBottom);
-
-        Point antiDiagStartPos = new Point(posToCheck.x+antiDiagSubVal, posToCheck.y-antiDiagSubVal);
-        int antiDiagDistFromPrimary = Math.abs((antiDiagStartPos.x+antiDiagStartPos.y)-(this.lastKnownBoard.length-1));
-
-        for (int i = 0; i < this.lastKnownBoard.length-antiDiagDistFromPrimary-this.connectionsToWin+1; i++) {
-            Point emptyCell = null;
-            for (int j = i; j < this.connectionsToWin + i; j++) {
-                if (this.lastKnownBoard[antiDiagStartPos.x - j][antiDiagStartPos.y + j] != Cell.EMPTY && this.lastKnownBoard[antiDiagStartPos.x - j][antiDiagStartPos.y + j] != this.playerCellValue) {
-                    emptyCell = null;
-                    break;
-                } else if (this.lastKnownBoard[antiDiagStartPos.x - j][antiDiagStartPos.y + j] == Cell.EMPTY) {
-                    if (emptyCell == null)
-                        emptyCell = new Point(antiDiagStartPos.x - j, antiDiagStartPos.y + j);
-                    else {
-                        emptyCell = null;
-                        break;
-                    }
-                }
-            }
-            if (emptyCell != null) {
-                statusChange(AIStatus.BLOCKING);
-                this.optimalMove = emptyCell;
-                return;
-            }
+    /*********************************************************************************
+     * rebuildGame
+     *********************************************************************************
+     * Replays the observed positions as a game with the AI to move. The real move
+     * order is unknown, so the two players' cells are played alternately, starting
+     * with whoever has more cells (or the AI, when both have the same number).
+     * The same game object is reset and reused every time.
+     *
+     * @return game - A game holding the last known board.
+     ********************************************************************************/
+    private SuperTicTacToeGame rebuildGame() {
+        boolean aiStarted = this.aiPositions.size() >= this.plyPositions.size();
+        Cell starter = aiStarted ? this.aiCellValue : this.playerCellValue;
+        ArrayList<Point> first = aiStarted ? this.aiPositions : this.plyPositions;
+        ArrayList<Point> second = aiStarted ? this.plyPositions : this.aiPositions;
+        char starterChar = starter == Cell.X ? 'x' : 'o';
+        if (this.solverGame == null || this.solverGame.getSize() != this.lastKnownBoard.length)
+            this.solverGame = new SuperTicTacToeGame(this.lastKnownBoard.length, this.connectionsToWin, starterChar);
+        SuperTicTacToeGame game = this.solverGame;
+        game.reset(starterChar);
+        for (int i = 0; i < first.size(); i++) {
+            game.select(first.get(i).x, first.get(i).y);
+            if (i < second.size())
+                game.select(second.get(i).x, second.get(i).y);
         }
+        return game;
     }
 
     /*********************************************************************************
      * attemptFork
      *********************************************************************************
-     * This method has not yet been implemented.
-     *
-     * @param posToCheck - The position it is currently checking.
+     * AI runs a threat-space search for a sequence of forcing moves (each one
+     * threatening to win next move) that ends in a fork or a win, and plays the
+     * first move of it.
      ********************************************************************************/
-    private void attemptFork(Point posToCheck) {
+    private void attemptFork() {
         if ((this.optimalMove != null) || (this.aiPositions.size() <= 0))
             return;
-        //Not enough time to implement, unfortunately.
-        //statusChange(AIStatus.CREATING_FORK);
+        this.threatSearch.setDeadline(this.forkDeadline);
+        int move = this.threatSearch.findForcedWin(this.flatBoard, this.aiCellValue.toByte());
+        recordThreatSearch();
+        if (move < 0)
+            return;
+        statusChange(AIStatus.CREATING_FORK);
+        reportThreatSearch();
+        this.optimalMove = new Point(move/this.lastKnownBoard.length, move%this.lastKnownBoard.length);
     }
 
     /*********************************************************************************
      * attemptBlockFork
      *********************************************************************************
-     * This method has not yet been implemented.
-     *
-     * @param posToCheck - The position it is currently checking.
+     * AI runs the same threat-space search from the player's side. If the player has
+     * a forced win, the AI occupies the cell of that sequence which breaks it.
      ********************************************************************************/
-    private void attemptBlockFork(Point posToCheck) {
-        if (this.optimalMove != null)
+    private void attemptBlockFork() {
+        if (this.optimalMove != null || this.plyPositions.size() <= 0)
             return;
-        //Not enough time to implement, unfortunately.
-        //statusChange(AIStatus.BLOCKING_FORK);
+        this.threatSearch.setDeadline(this.blockForkDeadline);
+        int move = this.threatSearch.findForkBlock(this.flatBoard, this.aiCellValue.toByte());
+        recordThreatSearch();
+        if (move < 0)
+            return;
+        statusChange(AIStatus.BLOCKING_FORK);
+        reportThreatSearch();
+        this.optimalMove = new Point(move/this.lastKnownBoard.length, move%this.lastKnownBoard.length);
+    }
+
+    /*********************************************************************************
+     * recordThreatSearch
+     *********************************************************************************
+     * Adds the last threat-space search to the search effort behind this move.
+     ********************************************************************************/
+    private void recordThreatSearch() {
+        this.searchNodes += this.threatSearch.getNodes();
+        this.searchDepth = Math.max(this.searchDepth, this.threatSearch.getDepthReached());
+    }
+
+    /*********************************************************************************
+     * reportThreatSearch
+     *********************************************************************************
+     * Prints the length of the forcing sequence and the nodes searched to find it.
+     ********************************************************************************/
+    private void reportThreatSearch() {
+        if (this.verbose)
+            System.out.println("Forcing sequence of "+this.threatSearch.getSequenceLength()
+                    +" moves found in "+this.threatSearch.getNodes()+" nodes.");
     }
 
     /*********************************************************************************
      * attemptBestAlternative
      *********************************************************************************
-     * If the AI was unable to win, block, create a fork, or block a fork, it attempts
-     * to create chains of its own value by choosing a position relative to its
-     * other positions.
-     * Position Validation Cycle:
-     * 8|1|2
-     * 7|0|3
-     * 6|5|4
-     *
-     * @param posToCheck - The position it is currently checking.
+     * If the AI was unable to win, block, create a fork, or block a fork, it scores
+     * every empty cell next to a taken cell with the pattern evaluator (weights
+     * tuned from self-play, see Evaluator) and plays the one that leaves the player
+     * with the worst position.
      ********************************************************************************/
-    private void attemptBestAlternative(Point posToCheck) {
-        if ((this.optimalMove != null) || (this.aiPositions.size() <= 0))
+    private void attemptBestAlternative() {
+        if (this.optimalMove != null || (this.aiPositions.isEmpty() && this.plyPositions.isEmpty()))
             return;
         statusChange(AIStatus.BEST_ALTERNATIVE);
-        if (isValidPosition(posToCheck.x-1, posToCheck.y)
-                && this.lastKnownBoard[posToCheck.x-1][posToCheck.y] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x-1, posToCheck.y);
-        else if (isValidPosition(posToCheck.x-1, posToCheck.y+1)
-                && this.lastKnownBoard[posToCheck.x-1][posToCheck.y+1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x-1, posToCheck.y+1);
-        else if (isValidPosition(posToCheck.x, posToCheck.y+1)
-                && this.lastKnownBoard[posToCheck.x][posToCheck.y+1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x, posToCheck.y+1);
-        else if (isValidPosition(posToCheck.x+1, posToCheck.y+1)
-                && this.lastKnownBoard[posToCheck.x+1][posToCheck.y+1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x+1, posToCheck.y+1);
-        else if (isValidPosition(posToCheck.x+1, posToCheck.y)
-                && this.lastKnownBoard[posToCheck.x+1][posToCheck.y] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x+1, posToCheck.y);
-        else if (isValidPosition(posToCheck.x-1, posToCheck.y-1)
-                && this.lastKnownBoard[posToCheck.x-1][posToCheck.y-1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x-1, posToCheck.y-1);
-        else if (isValidPosition(posToCheck.x, posToCheck.y-1)
-                && this.lastKnownBoard[posToCheck.x][posToCheck.y-1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x, posToCheck.y-1);
-        else if (isValidPosition(posToCheck.x+1, posToCheck.y-1)
-                && this.lastKnownBoard[posToCheck.x+1][posToCheck.y-1] == Cell.EMPTY)
-            this.optimalMove = new Point(posToCheck.x+1, posToCheck.y-1);
+        int size = this.lastKnownBoard.length;
+        byte ai = this.aiCellValue.toByte();
+        byte player = this.playerCellValue.toByte();
+        double base = this.evaluator.evaluate(player);
+        int best = -1;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int cell = 0; cell < this.flatBoard.length; cell++) {
+            if (this.flatBoard[cell] != Cell.EMPTY_CODE || !hasTakenNeighbor(cell/size, cell%size))
+                continue;
+            double score = this.evaluator.evaluateAfter(base, cell, ai);
+            if (score < bestScore) {
+                bestScore = score;
+                best = cell;
+            }
+        }
+        if (best >= 0) {
+            this.optimalMove = new Point(best/size, best%size);
+            this.moveScore = -bestScore;
+        }
+    }
+
+    /*********************************************************************************
+     * hasTakenNeighbor
+     *********************************************************************************
+     * Determines whether or not any of the 8 cells around a position is taken.
+     *
+     * @param x - The row, or x position.
+     * @param y - The column, or y position.
+     * @return result - Whether or not a neighboring cell is taken.
+     ********************************************************************************/
+    private boolean hasTakenNeighbor(int x, int y) {
+        for (int i = x-1; i <= x+1; i++)
+            for (int j = y-1; j <= y+1; j++)
+                if (isValidPosition(i, j) && this.lastKnownBoard[i][j] != Cell.EMPTY)
+                    return true;
+        return false;
     }
 
     /*********************************************************************************
@@ -484,11 +794,10 @@ public class AI {
             return;
         statusChange(AIStatus.RANDOM);
         boolean valid = false;
-        Random r = new Random();
 
         while (!valid) {
-            int row = r.nextInt(this.lastKnownBoard.length);
-            int col = r.nextInt(this.lastKnownBoard.length);
+            int row = this.random.nextInt(this.lastKnownBoard.length);
+            int col = this.random.nextInt(this.lastKnownBoard.length);
             if (this.lastKnownBoard[row][col] == Cell.EMPTY) {
                 this.optimalMove = new Point(row, col);
                 valid = true;
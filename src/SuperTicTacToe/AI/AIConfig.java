@@ -0,0 +1,89 @@
+package SuperTicTacToe.AI;
+
+public final class AIConfig {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //No deadline, the default threat-search limit and no solver: the AI's behaviour
+    //before budgets existed.
+    public static final AIConfig UNLIMITED = new AIConfig(0, ThreatSearch.DEFAULT_NODE_LIMIT, 0);
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final long moveTimeMillis;
+    private final int searchNodeLimit;
+    private final long solverNodeLimit;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * AIConfig - Constructor
+     *********************************************************************************
+     * Creates a configuration with explicit budgets.
+     *
+     * @param moveTimeMillis - The most time a move may take, or 0 for no limit.
+     * @param searchNodeLimit - The node limit of each threat-space search, at least 1.
+     * @param solverNodeLimit - The node limit of the proof-number solver, or 0 to
+     *                        play without it.
+     ********************************************************************************/
+    public AIConfig(long moveTimeMillis, int searchNodeLimit, long solverNodeLimit) {
+        if (moveTimeMillis < 0 || searchNodeLimit <= 0 || solverNodeLimit < 0)
+            throw new IllegalArgumentException("The search node limit must be positive and the other budgets"
+                    +" must not be negative.");
+        this.moveTimeMillis = moveTimeMillis;
+        this.searchNodeLimit = searchNodeLimit;
+        this.solverNodeLimit = solverNodeLimit;
+    }
+
+    /*********************************************************************************
+     * AIConfig - Constructor
+     *********************************************************************************
+     * Creates the configuration for a difficulty level.
+     *
+     * @param difficulty - The difficulty level.
+     ********************************************************************************/
+    public AIConfig(Difficulty difficulty) {
+        this(difficulty.getMoveTimeMillis(), difficulty.getSearchNodeLimit(), difficulty.getSolverNodeLimit());
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getMoveTimeMillis
+     *********************************************************************************
+     * Returns the most time a move may take.
+     * @return moveTimeMillis - The move time in milliseconds, or 0 for no limit.
+     ********************************************************************************/
+    public long getMoveTimeMillis() {
+        return this.moveTimeMillis;
+    }
+
+    /*********************************************************************************
+     * getSearchNodeLimit
+     *********************************************************************************
+     * Returns the node limit of each threat-space search.
+     * @return searchNodeLimit - The node limit.
+     ********************************************************************************/
+    public int getSearchNodeLimit() {
+        return this.searchNodeLimit;
+    }
+
+    /*********************************************************************************
+     * getSolverNodeLimit
+     *********************************************************************************
+     * Returns the node limit of the proof-number solver.
+     * @return solverNodeLimit - The node limit, or 0 if the solver is not used.
+     ********************************************************************************/
+    public long getSolverNodeLimit() {
+        return this.solverNodeLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "AIConfig["+this.moveTimeMillis+" ms, "+this.searchNodeLimit+" nodes, solver "
+                +this.solverNodeLimit+" nodes]";
+    }
+}
@@ -1,10 +1,12 @@
 package SuperTicTacToe.AI;
 
+//PositionCache files store these ordinals: bump PositionCache.VERSION when they change.
 public enum AIStatus {
     WAITING_FOR_PLAYER,
     THINKING,
     ENDGAME,
     BLOCKING,
+    PROVEN_WIN,
     CREATING_FORK,
     BLOCKING_FORK,
     BEST_ALTERNATIVE,
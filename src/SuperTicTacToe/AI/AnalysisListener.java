@@ -0,0 +1,16 @@
+package SuperTicTacToe.AI;
+
+import java.util.List;
+
+public interface AnalysisListener {
+    /*********************************************************************************
+     * depthCompleted
+     *********************************************************************************
+     * Called each time the analysis finishes a search depth, with the best moves
+     * found so far.
+     *
+     * @param depth - The depth just completed, in plies.
+     * @param lines - The best moves, best first.
+     ********************************************************************************/
+    void depthCompleted(int depth, List<MoveAnalysis> lines);
+}
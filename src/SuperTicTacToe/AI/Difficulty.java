@@ -0,0 +1,30 @@
+package SuperTicTacToe.AI;
+
+public enum Difficulty {
+    //Move time (ms), threat-search node limit, solver node limit (0 = no solver).
+    EASY(5, 2000, 0),
+    MEDIUM(100, 10000, 0),
+    HARD(2000, 200000, 5000000);
+
+    private final long moveTimeMillis;
+    private final int searchNodeLimit;
+    private final long solverNodeLimit;
+
+    Difficulty(long moveTimeMillis, int searchNodeLimit, long solverNodeLimit) {
+        this.moveTimeMillis = moveTimeMillis;
+        this.searchNodeLimit = searchNodeLimit;
+        this.solverNodeLimit = solverNodeLimit;
+    }
+
+    public long getMoveTimeMillis() {
+        return this.moveTimeMillis;
+    }
+
+    public int getSearchNodeLimit() {
+        return this.searchNodeLimit;
+    }
+
+    public long getSolverNodeLimit() {
+        return this.solverNodeLimit;
+    }
+}
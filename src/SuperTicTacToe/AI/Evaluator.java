@@ -0,0 +1,580 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.OpenWindows;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Evaluator {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Where the tuned weights are read from, unless the system property is set.
+    public static final String WEIGHTS_PROPERTY = "supertictactoe.weights";
+    public static final String DEFAULT_WEIGHTS_FILE = "src/SuperTicTacToe/res/eval-weights.txt";
+
+    //Weights read from the weights file, by connections. Loaded once per run.
+    private static volatile Map<Integer, double[]> loadedWeights;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int connections;
+    private int featureCount;
+    //Every window of connections cells along a row, column, or diagonal.
+    private int[][] windows;
+    //Indices (into windows) of the windows through each cell, and the weight
+    //(3^offset) of the cell in each of those windows' pattern codes.
+    private int[][] windowsThroughCell;
+    private int[][] powersThroughCell;
+    private PatternTable table;
+    private double[] weights;
+    //Window class -> feature index (featureCount for none) and weight, for each
+    //player to move: [0] for X, [1] for O.
+    private int[][] classFeature;
+    private double[][] classWeight;
+    //classWeight flattened: the weight of class c with mover m is at (m-1)*classes+c.
+    private double[] moverClassWeight;
+
+    //Pattern code of every window of the tracked board, kept up to date by sync.
+    private int[] codes;
+    //The windows of the tracked board someone can still complete.
+    private OpenWindows openWindows;
+    private byte[] tracked;
+    private float[] scratch;
+    //Per-position pattern codes and weight offsets of evaluateBatch, grown on demand.
+    private int[] batchCodes;
+    private int[] batchOffsets;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * Evaluator - Constructor
+     *********************************************************************************
+     * Creates an evaluator with the weights loaded for this number of connections,
+     * or the built-in defaults if the weights file has none.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public Evaluator(int size, int connections) {
+        this(size, connections, weightsFor(connections));
+    }
+
+    /*********************************************************************************
+     * Evaluator - Constructor
+     *********************************************************************************
+     * Creates an evaluator with explicit weights (see features for their
+     * layout).
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param weights - One weight per feature.
+     ********************************************************************************/
+    public Evaluator(int size, int connections, double[] weights) {
+        if (weights.length != featureCount(connections))
+            throw new IllegalArgumentException("Expected "+featureCount(connections)+" weights for "
+                    +connections+" connections, got "+weights.length+".");
+        this.size = size;
+        this.connections = connections;
+        this.featureCount = featureCount(connections);
+        this.weights = weights.clone();
+        this.table = PatternTable.forConnections(connections);
+        this.windows = buildWindows(size, connections);
+        this.windowsThroughCell = ThreatSearch.buildLinesThroughCell(size, this.windows);
+        this.powersThroughCell = new int[size*size][];
+        for (int cell = 0; cell < size*size; cell++) {
+            int[] through = this.windowsThroughCell[cell];
+            this.powersThroughCell[cell] = new int[through.length];
+            for (int i = 0; i < through.length; i++) {
+                int[] window = this.windows[through[i]];
+                int offset = 0;
+                while (window[offset] != cell)
+                    offset++;
+                this.powersThroughCell[cell][i] = this.table.getPower(offset);
+            }
+        }
+        buildClassTables();
+        this.codes = new int[this.windows.length];
+        this.openWindows = new OpenWindows(size, connections);
+        this.tracked = new byte[size*size];
+        this.scratch = new float[this.featureCount+1];
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * features
+     *********************************************************************************
+     * Counts the pattern features of a position from the point of view of the
+     * player to move. Feature c-1 counts the windows holding c of the mover's cells
+     * and none of the opponent's; feature connections-1+c-1 counts the same for the
+     * opponent. Windows holding cells of both players are dead and not counted.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @param out - Receives the features.
+     * @param offset - Where in out the features start.
+     ********************************************************************************/
+    public void features(byte[] board, byte mover, float[] out, int offset) {
+        int[] feature = this.classFeature[mover-1];
+        float[] counts = this.scratch;
+        Arrays.fill(counts, 0);
+        for (int[] window : this.windows)
+            counts[feature[this.table.getLineClass(code(board, window))]]++;
+        System.arraycopy(counts, 0, out, offset, this.featureCount);
+    }
+
+    /*********************************************************************************
+     * evaluate
+     *********************************************************************************
+     * Scores a position for the player to move: the weighted sum of its features.
+     * The chance of the mover winning is modelled as 1/(1+e^-score).
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @return score - The score of the position.
+     ********************************************************************************/
+    public double evaluate(byte[] board, byte mover) {
+        double[] weight = this.classWeight[mover-1];
+        double score = 0;
+        for (int[] window : this.windows)
+            score += weight[this.table.getLineClass(code(board, window))];
+        return score;
+    }
+
+    /*********************************************************************************
+     * sync
+     *********************************************************************************
+     * Brings the tracked board in line with the given board. Only the windows
+     * through cells that changed since the last sync have their codes updated.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     ********************************************************************************/
+    public void sync(byte[] board) {
+        for (int cell = 0; cell < board.length; cell++)
+            if (board[cell] != this.tracked[cell])
+                update(cell, board[cell]);
+    }
+
+    /*********************************************************************************
+     * set
+     *********************************************************************************
+     * Changes one cell of the tracked board, updating only the windows through it.
+     * Used by searches to play and take back moves.
+     *
+     * @param cell - The cell index (row*size+col).
+     * @param code - The cell's new byte code.
+     ********************************************************************************/
+    public void set(int cell, byte code) {
+        update(cell, code);
+    }
+
+    /*********************************************************************************
+     * isDeadDraw
+     *********************************************************************************
+     * Determines whether every window of the tracked board holds cells of both
+     * players, so the position is a draw however it is played out.
+     *
+     * @return result - Whether or not no window can be completed any more.
+     ********************************************************************************/
+    public boolean isDeadDraw() {
+        return this.openWindows.isDead();
+    }
+
+    /*********************************************************************************
+     * isLiveCell
+     *********************************************************************************
+     * Determines whether a cell of the tracked board lies in a window someone can
+     * still complete. A stone on a dead cell changes nothing but the turn, and as
+     * an extra stone never hurts its owner here, searches can skip such moves.
+     *
+     * @param cell - The cell index (row*size+col).
+     * @return result - Whether or not any open window passes through the cell.
+     ********************************************************************************/
+    public boolean isLiveCell(int cell) {
+        return this.openWindows.isLiveCell(cell);
+    }
+
+    /*********************************************************************************
+     * isWinningMove
+     *********************************************************************************
+     * Determines whether or not playing an empty cell of the tracked board
+     * completes a window for the player.
+     *
+     * @param cell - The cell index (row*size+col).
+     * @param player - X_CODE or O_CODE.
+     * @return result - Whether or not the move wins.
+     ********************************************************************************/
+    public boolean isWinningMove(int cell, byte player) {
+        int threat = this.table.threatClass(player);
+        for (int w : this.windowsThroughCell[cell])
+            if (this.table.getLineClass(this.codes[w]) == threat)
+                return true;
+        return false;
+    }
+
+    /*********************************************************************************
+     * evaluate
+     *********************************************************************************
+     * Scores the tracked board (see sync) for the player to move: one table lookup
+     * per window.
+     *
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @return score - The score of the position.
+     ********************************************************************************/
+    public double evaluate(byte mover) {
+        double[] weight = this.classWeight[mover-1];
+        double score = 0;
+        for (int code : this.codes)
+            score += weight[this.table.getLineClass(code)];
+        return score;
+    }
+
+    /*********************************************************************************
+     * evaluateAfter
+     *********************************************************************************
+     * Scores the tracked board after the mover plays the given (empty) cell, for
+     * the opponent, who is then to move. Only the windows through the cell are
+     * looked up again.
+     *
+     * @param base - evaluate(opponent) for the tracked board.
+     * @param cell - The cell index (row*size+col) of the move.
+     * @param mover - The player making the move.
+     * @return score - The opponent's score after the move.
+     ********************************************************************************/
+    public double evaluateAfter(double base, int cell, byte mover) {
+        double[] weight = this.classWeight[(mover == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE)-1];
+        int[] through = this.windowsThroughCell[cell];
+        int[] powers = this.powersThroughCell[cell];
+        double score = base;
+        for (int i = 0; i < through.length; i++) {
+            int code = this.codes[through[i]];
+            score += weight[this.table.getLineClass(code+mover*powers[i])]-weight[this.table.getLineClass(code)];
+        }
+        return score;
+    }
+
+    /*********************************************************************************
+     * evaluateBatch
+     *********************************************************************************
+     * Scores every position of a batch for its player to move, the same as
+     * evaluate(board, mover) for each one. The batch is walked one window at a
+     * time: the window's code is built for all positions in a loop over contiguous
+     * cell arrays, then all codes are looked up, so the inner loops carry no
+     * per-position branches or object references.
+     *
+     * @param batch - The positions.
+     * @param scores - Receives the score of position i at index i.
+     ********************************************************************************/
+    public void evaluateBatch(PositionBatch batch, double[] scores) {
+        if (batch.getSize()*batch.getSize() != this.tracked.length)
+            throw new IllegalArgumentException("The batch is for a different board size.");
+        int count = batch.getCount();
+        if (scores.length < count)
+            throw new IllegalArgumentException("Expected room for "+count+" scores, got "+scores.length+".");
+        if (this.batchCodes == null || this.batchCodes.length < count) {
+            this.batchCodes = new int[batch.getCapacity()];
+            this.batchOffsets = new int[batch.getCapacity()];
+        }
+        int[] codes = this.batchCodes;
+        int[] offsets = this.batchOffsets;
+        byte[] cells = batch.getCells();
+        byte[] movers = batch.getMovers();
+        byte[] lineClass = this.table.getLineClasses();
+        double[] weight = this.moverClassWeight;
+        int capacity = batch.getCapacity();
+        int classes = PatternTable.classCount(this.connections);
+
+        for (int p = 0; p < count; p++) {
+            offsets[p] = (movers[p]-1)*classes;
+            scores[p] = 0;
+        }
+        for (int[] window : this.windows) {
+            int start = window[window.length-1]*capacity;
+            for (int p = 0; p < count; p++)
+                codes[p] = cells[start+p];
+            for (int i = window.length-2; i >= 0; i--) {
+                start = window[i]*capacity;
+                for (int p = 0; p < count; p++)
+                    codes[p] = codes[p]*3+cells[start+p];
+            }
+            if (lineClass == null) {
+                for (int p = 0; p < count; p++)
+                    scores[p] += weight[offsets[p]+this.table.getLineClass(codes[p])];
+                continue;
+            }
+            for (int p = 0; p < count; p++)
+                scores[p] += weight[offsets[p]+lineClass[codes[p]]];
+        }
+    }
+
+    /*********************************************************************************
+     * findWinningCell
+     *********************************************************************************
+     * Looks for a window of the tracked board that the player completes with one
+     * more cell.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @return cell - The cell index (row*size+col) that wins, or -1.
+     ********************************************************************************/
+    public int findWinningCell(byte player) {
+        int threat = this.table.threatClass(player);
+        for (int w = 0; w < this.codes.length; w++)
+            if (this.table.getLineClass(this.codes[w]) == threat)
+                return this.windows[w][this.table.getFirstEmpty(this.codes[w])];
+        return -1;
+    }
+
+    /*********************************************************************************
+     * featureCount
+     *********************************************************************************
+     * Returns the number of features (and weights) for a number of connections.
+     *
+     * @param connections - The number of connections to win the game.
+     * @return count - 2*(connections-1).
+     ********************************************************************************/
+    public static int featureCount(int connections) {
+        return 2*(connections-1);
+    }
+
+    /*********************************************************************************
+     * defaultWeights
+     *********************************************************************************
+     * Returns hand-picked weights, used until tuned weights are exported: each
+     * extra cell in a window is worth about three times as much, and the
+     * opponent's windows slightly more than the mover's own.
+     *
+     * @param connections - The number of connections to win the game.
+     * @return weights - The default weights.
+     ********************************************************************************/
+    public static double[] defaultWeights(int connections) {
+        double[] weights = new double[featureCount(connections)];
+        double value = 0.01;
+        for (int c = 1; c < connections; c++) {
+            weights[c-1] = value;
+            weights[connections-1+c-1] = -1.2*value;
+            value *= 3;
+        }
+        return weights;
+    }
+
+    /*********************************************************************************
+     * weightsFor
+     *********************************************************************************
+     * Returns the loaded weights for a number of connections, or the defaults.
+     *
+     * @param connections - The number of connections to win the game.
+     * @return weights - The weights to use.
+     ********************************************************************************/
+    public static double[] weightsFor(int connections) {
+        double[] weights = loadWeights().get(connections);
+        return weights != null ? weights.clone() : defaultWeights(connections);
+    }
+
+    /*********************************************************************************
+     * readWeights
+     *********************************************************************************
+     * Reads a weights file: one line per number of connections, holding the
+     * connections followed by its weights. Blank lines and lines starting with #
+     * are skipped.
+     *
+     * @param file - The weights file.
+     * @return weights - The weights by connections.
+     ********************************************************************************/
+    public static Map<Integer, double[]> readWeights(File file) throws IOException {
+        Map<Integer, double[]> result = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] parts = line.split("\\s+");
+                int connections = Integer.parseInt(parts[0]);
+                double[] weights = new double[parts.length-1];
+                for (int i = 0; i < weights.length; i++)
+                    weights[i] = Double.parseDouble(parts[i+1]);
+                if (weights.length != featureCount(connections))
+                    throw new IOException("Wrong number of weights for "+connections+" connections.");
+                result.put(connections, weights);
+            }
+        }
+        return result;
+    }
+
+    /*********************************************************************************
+     * writeWeights
+     *********************************************************************************
+     * Stores weights for one number of connections in a weights file, keeping the
+     * lines for other connections that are already in it.
+     *
+     * @param file - The weights file.
+     * @param connections - The number of connections the weights are for.
+     * @param weights - The weights.
+     ********************************************************************************/
+    public static void writeWeights(File file, int connections, double[] weights) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (file.exists()) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null)
+                    if (!line.trim().startsWith(connections+" "))
+                        lines.add(line);
+            }
+        } else {
+            lines.add("# Evaluation weights: connections, then mover windows with 1..k-1 cells,");
+            lines.add("# then opponent windows with 1..k-1 cells.");
+        }
+        StringBuilder entry = new StringBuilder().append(connections);
+        for (double weight : weights)
+            entry.append(' ').append((float) weight);
+        lines.add(entry.toString());
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            for (String line : lines)
+                out.write(line+"\n");
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * code
+     *********************************************************************************
+     * Computes the pattern code of a window: each cell's byte code times 3^offset.
+     ********************************************************************************/
+    private int code(byte[] board, int[] window) {
+        int code = 0;
+        for (int i = window.length-1; i >= 0; i--)
+            code = code*3+board[window[i]];
+        return code;
+    }
+
+    /*********************************************************************************
+     * buildClassTables
+     *********************************************************************************
+     * Maps every window class to its feature and weight, for each player to move.
+     * Empty and dead windows map to the unused feature slot and weight 0, so no
+     * lookup has to branch on the class.
+     ********************************************************************************/
+    private void buildClassTables() {
+        int classes = PatternTable.classCount(this.connections);
+        this.classFeature = new int[2][classes];
+        this.classWeight = new double[2][classes];
+        this.moverClassWeight = new double[2*classes];
+        for (int mover = 0; mover < 2; mover++) {
+            for (int lineClass = 0; lineClass < classes; lineClass++) {
+                int feature = this.featureCount;
+                if (lineClass >= 1 && lineClass <= this.connections) {
+                    //X cells only.
+                    int count = Math.min(lineClass, this.connections-1);
+                    feature = mover == 0 ? count-1 : this.connections-1+count-1;
+                } else if (lineClass > this.connections && lineClass <= 2*this.connections) {
+                    //O cells only.
+                    int count = Math.min(lineClass-this.connections, this.connections-1);
+                    feature = mover == 1 ? count-1 : this.connections-1+count-1;
+                }
+                this.classFeature[mover][lineClass] = feature;
+                this.classWeight[mover][lineClass] = feature < this.featureCount ? this.weights[feature] : 0;
+                this.moverClassWeight[mover*classes+lineClass] = this.classWeight[mover][lineClass];
+            }
+        }
+    }
+
+    /*********************************************************************************
+     * loadWeights
+     *********************************************************************************
+     * Loads the weights file once. A missing or unreadable file leaves every number
+     * of connections on the default weights.
+     ********************************************************************************/
+    private static Map<Integer, double[]> loadWeights() {
+        Map<Integer, double[]> weights = loadedWeights;
+        if (weights != null)
+            return weights;
+        synchronized (Evaluator.class) {
+            if (loadedWeights == null) {
+                File file = new File(System.getProperty(WEIGHTS_PROPERTY, DEFAULT_WEIGHTS_FILE));
+                try {
+                    loadedWeights = file.exists() ? readWeights(file) : new HashMap<>();
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println("Could not read evaluation weights from "+file+": "+ex.getMessage());
+                    loadedWeights = new HashMap<>();
+                }
+            }
+            return loadedWeights;
+        }
+    }
+
+    /*********************************************************************************
+     * update
+     *********************************************************************************
+     * Changes one cell of the tracked board: adds the change of its code to the
+     * windows through it, and moves the cell between players in the open windows
+     * (see OpenWindows, which the game's dead draw check uses as well).
+     *
+     * @param cell - The cell index (row*size+col).
+     * @param code - The cell's new byte code.
+     ********************************************************************************/
+    private void update(int cell, byte code) {
+        byte old = this.tracked[cell];
+        int change = code-old;
+        int[] through = this.windowsThroughCell[cell];
+        int[] powers = this.powersThroughCell[cell];
+        for (int i = 0; i < through.length; i++)
+            this.codes[through[i]] += change*powers[i];
+        if (old != Cell.EMPTY_CODE)
+            this.openWindows.clear(old, cell/this.size, cell%this.size);
+        if (code != Cell.EMPTY_CODE)
+            this.openWindows.set(code, cell/this.size, cell%this.size);
+        this.tracked[cell] = code;
+    }
+
+    /*********************************************************************************
+     * buildWindows
+     *********************************************************************************
+     * Lists the cells of every window that could hold a win.
+     ********************************************************************************/
+    private static int[][] buildWindows(int size, int connections) {
+        List<int[]> result = new ArrayList<>();
+        for (int[] line : ThreatSearch.buildLines(size, connections))
+            for (int start = 0; start+connections <= line.length; start++) {
+                int[] window = new int[connections];
+                System.arraycopy(line, start, window, 0, connections);
+                result.add(window);
+            }
+        return result.toArray(new int[0][]);
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getWeights
+     *********************************************************************************
+     * Returns a copy of the weights in use.
+     * @return weights - The weights.
+     ********************************************************************************/
+    public double[] getWeights() {
+        return this.weights.clone();
+    }
+
+    /*********************************************************************************
+     * getConnections
+     *********************************************************************************
+     * Returns the number of connections the evaluator was created for.
+     * @return connections - The number of connections to win the game.
+     ********************************************************************************/
+    public int getConnections() {
+        return this.connections;
+    }
+}
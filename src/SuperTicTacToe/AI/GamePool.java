@@ -0,0 +1,204 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+public class GamePool {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Idle games (and idle AIs) kept per size and connections; more are dropped.
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private static final ThreadLocal<GamePool> POOLS = ThreadLocal.withInitial(GamePool::new);
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    //Searched linearly: a thread rarely plays more than a few board shapes, and a
+    //list avoids boxing a key on every lookup.
+    private ArrayList<Slot> slots;
+    private int maxIdle;
+    private long created;
+    private long reused;
+
+    //================================================================================
+    // Classes
+    //================================================================================
+    private static final class Slot {
+        private final int size;
+        private final int connections;
+        private final ArrayDeque<SuperTicTacToeGame> games = new ArrayDeque<>();
+        private final ArrayDeque<AI> ais = new ArrayDeque<>();
+
+        private Slot(int size, int connections) {
+            this.size = size;
+            this.connections = connections;
+        }
+    }
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * GamePool - Constructor
+     *********************************************************************************
+     * Creates an empty pool. A pool is not thread safe; threads normally use their
+     * own pool through get().
+     ********************************************************************************/
+    public GamePool() {
+        this.slots = new ArrayList<>();
+        this.maxIdle = DEFAULT_MAX_IDLE;
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * get
+     *********************************************************************************
+     * Returns the calling thread's pool. Every thread has its own, so acquiring
+     * and releasing never waits on another thread.
+     *
+     * @return pool - This thread's pool.
+     ********************************************************************************/
+    public static GamePool get() {
+        return POOLS.get();
+    }
+
+    /*********************************************************************************
+     * acquireGame
+     *********************************************************************************
+     * Returns an empty, unmonitored game without a move stream or move log, reusing
+     * a released one when there is one.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param starter - The starting player.
+     * @return game - A game ready for its first move.
+     ********************************************************************************/
+    public SuperTicTacToeGame acquireGame(int size, int connections, char starter) {
+        SuperTicTacToeGame game = slot(size, connections).games.pollLast();
+        if (game == null) {
+            this.created++;
+            return new SuperTicTacToeGame(size, connections, starter);
+        }
+        this.reused++;
+        game.reset(starter);
+        return game;
+    }
+
+    /*********************************************************************************
+     * acquireAI
+     *********************************************************************************
+     * Returns an AI for the game's size and connections, reusing a released one
+     * when there is one (see AI.reuse). The AI starts with an empty board.
+     *
+     * @param game - The game the AI will play.
+     * @param aiValue - The cell value the AI plays.
+     * @param config - The budgets to play with.
+     * @return ai - An AI in the state of a newly constructed one.
+     ********************************************************************************/
+    public AI acquireAI(SuperTicTacToeGame game, Cell aiValue, AIConfig config) {
+        AI ai = slot(game.getSize(), game.getConnections()).ais.pollLast();
+        if (ai == null) {
+            this.created++;
+            return new AI(game, aiValue, config);
+        }
+        this.reused++;
+        ai.reuse(aiValue, config);
+        return ai;
+    }
+
+    /*********************************************************************************
+     * release
+     *********************************************************************************
+     * Hands a game back to the pool. The caller must not use it afterwards. The game
+     * stops publishing to its move stream, and its game in the move log is ended,
+     * so the next game played on it is neither seen by spectators nor recovered
+     * as this one.
+     *
+     * @param game - The game to release.
+     ********************************************************************************/
+    public void release(SuperTicTacToeGame game) {
+        game.setMonitored(false);
+        game.setMoveStream(null);
+        game.setMoveLog(null);
+        ArrayDeque<SuperTicTacToeGame> games = slot(game.getSize(), game.getConnections()).games;
+        if (games.size() < this.maxIdle)
+            games.addLast(game);
+    }
+
+    /*********************************************************************************
+     * release
+     *********************************************************************************
+     * Hands an AI back to the pool. The caller must not use it afterwards.
+     *
+     * @param ai - The AI to release.
+     ********************************************************************************/
+    public void release(AI ai) {
+        ArrayDeque<AI> ais = slot(ai.getSize(), ai.getConnections()).ais;
+        if (ais.size() < this.maxIdle)
+            ais.addLast(ai);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * slot
+     *********************************************************************************
+     * Returns the idle objects of one size and connections, adding them if needed.
+     ********************************************************************************/
+    private Slot slot(int size, int connections) {
+        for (int i = 0; i < this.slots.size(); i++) {
+            Slot slot = this.slots.get(i);
+            if (slot.size == size && slot.connections == connections)
+                return slot;
+        }
+        Slot slot = new Slot(size, connections);
+        this.slots.add(slot);
+        return slot;
+    }
+
+    //================================================================================
+    // Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setMaxIdle
+     *********************************************************************************
+     * Sets how many idle games, and how many idle AIs, are kept per size and
+     * connections.
+     *
+     * @param maxIdle - The most idle objects of each kind.
+     ********************************************************************************/
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getCreated
+     *********************************************************************************
+     * Returns the number of games and AIs the pool had to construct.
+     * @return created - The number of new objects.
+     ********************************************************************************/
+    public long getCreated() {
+        return this.created;
+    }
+
+    /*********************************************************************************
+     * getReused
+     *********************************************************************************
+     * Returns the number of games and AIs handed out again after a release.
+     * @return reused - The number of reused objects.
+     ********************************************************************************/
+    public long getReused() {
+        return this.reused;
+    }
+}
@@ -0,0 +1,290 @@
+package SuperTicTacToe.AI;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public abstract class IterativeSearch {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Score of a win on the move; wins further away score one less per ply.
+    public static final double WIN_SCORE = 1e6;
+    public static final double WIN_THRESHOLD = WIN_SCORE/2;
+
+    //Nodes between two looks at the clock.
+    private static final int CLOCK_INTERVAL = 1024;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    //Columns of the board, to turn cell indices (row*width+col) into points.
+    private int width;
+    private int maxDepth;
+    private long nodeLimit;
+    private long nodes;
+    private boolean aborted;
+    //System.nanoTime() value at which the analysis stops, or Long.MAX_VALUE for none.
+    private long deadline;
+    //Set from another thread to stop the running search (see cancel).
+    private volatile boolean cancelled;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * IterativeSearch - Constructor
+     *********************************************************************************
+     * Prepares the game-independent root of a search that ranks several moves at
+     * once. The game is seen only through the position methods a subclass
+     * implements: rootMoves, emptyCells and searchRoot, all on the position the
+     * subclass loaded before calling analyze.
+     *
+     * @param width - The number of columns of the board.
+     * @param maxDepth - The deepest depth the iterations go to by default.
+     ********************************************************************************/
+    protected IterativeSearch(int width, int maxDepth) {
+        this.width = width;
+        this.maxDepth = maxDepth;
+        this.nodeLimit = Long.MAX_VALUE;
+        this.deadline = Long.MAX_VALUE;
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * cancel
+     *********************************************************************************
+     * Stops the search running on another thread as soon as it next looks at the
+     * clock. The next search starts uncancelled.
+     ********************************************************************************/
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    //================================================================================
+    // Position Methods
+    //================================================================================
+    /*********************************************************************************
+     * rootMoves
+     *********************************************************************************
+     * Lists the moves of the loaded position that the analysis searches.
+     *
+     * @return moves - The root moves, as cell indices.
+     ********************************************************************************/
+    protected abstract int[] rootMoves();
+
+    /*********************************************************************************
+     * emptyCells
+     *********************************************************************************
+     * Counts the empty cells of the loaded position, the deepest any iteration can
+     * go.
+     *
+     * @return empty - The number of empty cells.
+     ********************************************************************************/
+    protected abstract int emptyCells();
+
+    /*********************************************************************************
+     * searchRoot
+     *********************************************************************************
+     * Searches root moves of the loaded position one after another to a fixed
+     * depth. Until count moves have been searched the window is open; after that a
+     * move only has to beat the count-th best score so far (see kthBest), and a
+     * move that does not is marked inexact. Searches count their nodes with
+     * countNode and stop once it says so.
+     *
+     * @param moves - The root moves, as cell indices, most promising first.
+     * @param depth - The depth in plies, counting the root move.
+     * @param count - The number of moves whose scores must be exact.
+     * @param scores - Receives the score of moves[i] at index i.
+     * @param exact - Receives whether or not scores[i] is exact.
+     * @param lines - Receives the principal variation of moves[i] at index i.
+     * @return completed - The number of moves searched before stopping.
+     ********************************************************************************/
+    protected abstract int searchRoot(int[] moves, int depth, int count, double[] scores, boolean[] exact,
+                                      int[][] lines);
+
+    //================================================================================
+    // Protected Methods
+    //================================================================================
+    /*********************************************************************************
+     * iterate
+     *********************************************************************************
+     * Ranks the loaded position's best moves by iterative deepening. Every depth
+     * searches each root move once (see searchRoot), so moves outside the top
+     * count are cut off as in a single-best-move search. Root moves are tried in
+     * the order of the previous depth's scores. The listener, if any, hears about
+     * every completed depth. Once the deadline or node limit is hit, the results
+     * of the last completed depth are returned (or the moves searched so far, if
+     * not even the first depth completed).
+     *
+     * @param count - The number of moves to rank.
+     * @param listener - Receives the results of each depth, or null.
+     * @return lines - Up to count moves, best first.
+     ********************************************************************************/
+    protected List<MoveAnalysis> iterate(int count, AnalysisListener listener) {
+        if (count < 1)
+            throw new IllegalArgumentException("At least one move must be asked for.");
+        startSearch();
+        int[] root = rootMoves();
+        int rootCount = root.length;
+        int empty = emptyCells();
+        List<MoveAnalysis> result = new ArrayList<>();
+        for (int depth = 1; depth <= Math.min(this.maxDepth, empty) && rootCount > 0; depth++) {
+            double[] scores = new double[rootCount];
+            boolean[] exact = new boolean[rootCount];
+            int[][] lines = new int[rootCount][];
+            int searched = searchRoot(root, depth, count, scores, exact, lines);
+            if (this.aborted && !result.isEmpty())
+                break;
+
+            Integer[] ranked = new Integer[searched];
+            for (int i = 0; i < searched; i++)
+                ranked[i] = i;
+            Arrays.sort(ranked, (a, b) -> scores[a] != scores[b]
+                    ? Double.compare(scores[b], scores[a]) : Boolean.compare(exact[b], exact[a]));
+            result = new ArrayList<>();
+            for (int r = 0; r < Math.min(count, ranked.length); r++)
+                result.add(toAnalysis(root[ranked[r]], scores[ranked[r]], depth, lines[ranked[r]]));
+            if (this.aborted)
+                break;
+            if (listener != null)
+                listener.depthCompleted(depth, result);
+
+            //The next depth tries the moves in the order of this depth's scores.
+            int[] reordered = new int[rootCount];
+            for (int r = 0; r < rootCount; r++)
+                reordered[r] = root[ranked[r]];
+            root = reordered;
+            //A forced result for the best move will not change at a greater depth.
+            if (Math.abs(scores[ranked[0]]) >= WIN_THRESHOLD)
+                break;
+        }
+        return result;
+    }
+
+    /*********************************************************************************
+     * startSearch
+     *********************************************************************************
+     * Resets the node count, the abort flag and any cancel of a new search.
+     ********************************************************************************/
+    protected void startSearch() {
+        this.nodes = 0;
+        this.aborted = false;
+        this.cancelled = false;
+    }
+
+    /*********************************************************************************
+     * countNode
+     *********************************************************************************
+     * Counts a node, looking at the clock every CLOCK_INTERVAL nodes.
+     *
+     * @return aborted - Whether or not the search must stop (see isAborted).
+     ********************************************************************************/
+    protected boolean countNode() {
+        if ((++this.nodes & (CLOCK_INTERVAL-1)) == 0 && pastDeadline())
+            this.aborted = true;
+        if (this.nodes >= this.nodeLimit)
+            this.aborted = true;
+        return this.aborted;
+    }
+
+    /*********************************************************************************
+     * isAborted
+     *********************************************************************************
+     * Returns whether or not the search hit the deadline or node limit, or was
+     * cancelled, since it started.
+     *
+     * @return aborted - Whether or not the search stopped early.
+     ********************************************************************************/
+    protected boolean isAborted() {
+        return this.aborted;
+    }
+
+    /*********************************************************************************
+     * kthBest
+     *********************************************************************************
+     * Returns the k-th highest of the first n scores.
+     ********************************************************************************/
+    protected static double kthBest(double[] scores, int n, int k) {
+        double[] values = Arrays.copyOf(scores, n);
+        Arrays.sort(values);
+        return values[n-k];
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * toAnalysis
+     *********************************************************************************
+     * Converts a root move, its score and its variation to a MoveAnalysis.
+     ********************************************************************************/
+    private MoveAnalysis toAnalysis(int cell, double score, int depth, int[] line) {
+        List<Point> variation = new ArrayList<>(line.length);
+        for (int move : line)
+            variation.add(new Point(move/this.width, move%this.width));
+        return new MoveAnalysis(new Point(cell/this.width, cell%this.width), score, depth, variation);
+    }
+
+    /*********************************************************************************
+     * pastDeadline
+     *********************************************************************************
+     * Returns whether or not the search was cancelled, or a deadline is set and
+     * has passed.
+     ********************************************************************************/
+    private boolean pastDeadline() {
+        return this.cancelled || (this.deadline != Long.MAX_VALUE && System.nanoTime()-this.deadline >= 0);
+    }
+
+    //================================================================================
+    // Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setMaxDepth
+     *********************************************************************************
+     * Sets the deepest depth the iterations go to.
+     *
+     * @param maxDepth - The maximum depth in plies.
+     ********************************************************************************/
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /*********************************************************************************
+     * setNodeLimit
+     *********************************************************************************
+     * Sets the most nodes an analysis may search.
+     *
+     * @param nodeLimit - The node limit, or Long.MAX_VALUE for none.
+     ********************************************************************************/
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /*********************************************************************************
+     * setDeadline
+     *********************************************************************************
+     * Sets the System.nanoTime() value at which analyses stop.
+     *
+     * @param deadline - The deadline, or Long.MAX_VALUE for none.
+     ********************************************************************************/
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getNodes
+     *********************************************************************************
+     * Returns the number of nodes the last analysis searched.
+     * @return nodes - The number of nodes.
+     ********************************************************************************/
+    public long getNodes() {
+        return this.nodes;
+    }
+}
@@ -0,0 +1,127 @@
+package SuperTicTacToe.AI;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+
+public final class MoveAnalysis {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final Point move;
+    private final double score;
+    private final int depth;
+    private final List<Point> variation;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * MoveAnalysis - Constructor
+     *********************************************************************************
+     * Creates one line of an analysis.
+     *
+     * @param move - The move.
+     * @param score - The score of the move for the side playing it.
+     * @param depth - The depth the move was searched to, in plies.
+     * @param variation - The principal variation, starting with the move.
+     ********************************************************************************/
+    public MoveAnalysis(Point move, double score, int depth, List<Point> variation) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.variation = Collections.unmodifiableList(variation);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * isForcedWin
+     *********************************************************************************
+     * Determines whether or not the search found a forced win behind the move.
+     *
+     * @return result - Whether or not the move wins by force.
+     ********************************************************************************/
+    public boolean isForcedWin() {
+        return this.score >= MultiPvSearch.WIN_THRESHOLD;
+    }
+
+    /*********************************************************************************
+     * isForcedLoss
+     *********************************************************************************
+     * Determines whether or not the search found a forced loss behind the move.
+     *
+     * @return result - Whether or not the move loses by force.
+     ********************************************************************************/
+    public boolean isForcedLoss() {
+        return this.score <= -MultiPvSearch.WIN_THRESHOLD;
+    }
+
+    /*********************************************************************************
+     * toString
+     *********************************************************************************
+     * Formats the line as "row,col score (depth n): row,col row,col ...".
+     *
+     * @return text - The formatted line.
+     ********************************************************************************/
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.move.x).append(',').append(this.move.y).append(' ');
+        if (isForcedWin())
+            sb.append("win");
+        else if (isForcedLoss())
+            sb.append("loss");
+        else
+            sb.append(String.format("%+.3f", this.score));
+        sb.append(" (depth ").append(this.depth).append("):");
+        for (Point p : this.variation)
+            sb.append(' ').append(p.x).append(',').append(p.y);
+        return sb.toString();
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getMove
+     *********************************************************************************
+     * Returns the move.
+     * @return move - The move as a (row, col) point.
+     ********************************************************************************/
+    public Point getMove() {
+        return new Point(this.move);
+    }
+
+    /*********************************************************************************
+     * getScore
+     *********************************************************************************
+     * Returns the score of the move for the side playing it: an evaluator score
+     * (see Evaluator.evaluate), or beyond +/-WIN_THRESHOLD for a forced result.
+     * @return score - The score.
+     ********************************************************************************/
+    public double getScore() {
+        return this.score;
+    }
+
+    /*********************************************************************************
+     * getDepth
+     *********************************************************************************
+     * Returns the depth the move was searched to.
+     * @return depth - The depth in plies.
+     ********************************************************************************/
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /*********************************************************************************
+     * getVariation
+     *********************************************************************************
+     * Returns the principal variation: the move and the expected replies.
+     * @return variation - The moves, in order, as (row, col) points.
+     ********************************************************************************/
+    public List<Point> getVariation() {
+        return this.variation;
+    }
+}
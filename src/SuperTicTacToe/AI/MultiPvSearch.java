@@ -0,0 +1,381 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MultiPvSearch extends IterativeSearch {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Depth searched when there is no deadline to stop the iterations.
+    public static final int DEFAULT_MAX_DEPTH = 4;
+
+    private static final int TABLE_BITS = 16;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private Evaluator evaluator;
+    private byte[] cells;
+    //Random key of each player on each cell: [player code-1][cell].
+    private long[][] zobrist;
+    //Best move found in each position, by hash, shared by every root move and
+    //depth of an analysis so each search starts with the move that worked before.
+    private long[] tableKeys;
+    private int[] tableMoves;
+    //Hash of the board being analyzed and the player to move on it.
+    private long rootHash;
+    private byte rootMover;
+
+    //Principal variation of each ply (triangular table) and scratch move lists.
+    private int[][] pv;
+    private int[] pvLength;
+    private int[][] candidates;
+    private double[][] orderScores;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * MultiPvSearch - Constructor
+     *********************************************************************************
+     * Prepares an alpha-beta search that ranks several moves at once, for boards
+     * of the given size and connections.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public MultiPvSearch(int size, int connections) {
+        super(size, DEFAULT_MAX_DEPTH);
+        int cellCount = size*size;
+        this.size = size;
+        this.evaluator = new Evaluator(size, connections);
+        this.cells = new byte[cellCount];
+        this.zobrist = new long[2][cellCount];
+        Random random = new Random(0x5EED);
+        for (int cell = 0; cell < cellCount; cell++) {
+            this.zobrist[0][cell] = random.nextLong();
+            this.zobrist[1][cell] = random.nextLong();
+        }
+        this.tableKeys = new long[1 << TABLE_BITS];
+        this.tableMoves = new int[1 << TABLE_BITS];
+        this.pv = new int[cellCount+1][cellCount+1];
+        this.pvLength = new int[cellCount+1];
+        this.candidates = new int[cellCount+1][cellCount];
+        this.orderScores = new double[cellCount+1][cellCount];
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * analyze
+     *********************************************************************************
+     * Ranks the mover's best moves by iterative deepening (see
+     * IterativeSearch.iterate). The best-move table is kept across root moves and
+     * depths.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @param count - The number of moves to rank.
+     * @param listener - Receives the results of each depth, or null.
+     * @return lines - Up to count moves, best first.
+     ********************************************************************************/
+    public List<MoveAnalysis> analyze(byte[] board, byte mover, int count, AnalysisListener listener) {
+        this.rootHash = load(board);
+        this.rootMover = mover;
+        return iterate(count, listener);
+    }
+
+    /*********************************************************************************
+     * searchMoves
+     *********************************************************************************
+     * Searches root moves one after another to a fixed depth. Until count moves
+     * have been searched the window is open; after that a move only has to beat
+     * the count-th best score so far, and a move that does not is marked inexact
+     * (its score is only an upper bound). This is the root of every depth of
+     * analyze, and is also used on its own by callers that split the root moves
+     * between several searches. The best-move table is kept between calls. Stops
+     * early at the deadline, the node limit, or a call to cancel.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @param moves - The root moves, as cell indices, most promising first.
+     * @param depth - The depth in plies, counting the root move.
+     * @param count - The number of moves whose scores must be exact.
+     * @param scores - Receives the score of moves[i] at index i.
+     * @param exact - Receives whether or not scores[i] is exact.
+     * @param lines - Receives the principal variation of moves[i] at index i.
+     * @return completed - The number of moves searched before stopping.
+     ********************************************************************************/
+    public int searchMoves(byte[] board, byte mover, int[] moves, int depth, int count,
+                           double[] scores, boolean[] exact, int[][] lines) {
+        startSearch();
+        return searchMoves(load(board), mover, moves, depth, count, scores, exact, lines);
+    }
+
+    /*********************************************************************************
+     * rootMoves
+     *********************************************************************************
+     * Lists the moves an analysis of the board would search at the root: the empty
+     * cells next to a taken cell, or the center cell on an empty board.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @return moves - The root moves, as cell indices.
+     ********************************************************************************/
+    public int[] rootMoves(byte[] board) {
+        System.arraycopy(board, 0, this.cells, 0, this.cells.length);
+        return rootMoves();
+    }
+
+    //================================================================================
+    // Position Methods
+    //================================================================================
+    /*********************************************************************************
+     * rootMoves
+     *********************************************************************************
+     * Lists the root moves of the board in the search (see rootMoves(byte[])).
+     *
+     * @return moves - The root moves, as cell indices.
+     ********************************************************************************/
+    @Override
+    protected int[] rootMoves() {
+        return Arrays.copyOf(this.candidates[0], generate(0));
+    }
+
+    /*********************************************************************************
+     * emptyCells
+     *********************************************************************************
+     * Counts the empty cells of the board in the search.
+     *
+     * @return empty - The number of empty cells.
+     ********************************************************************************/
+    @Override
+    protected int emptyCells() {
+        int empty = 0;
+        for (byte cell : this.cells)
+            if (cell == Cell.EMPTY_CODE)
+                empty++;
+        return empty;
+    }
+
+    /*********************************************************************************
+     * searchRoot
+     *********************************************************************************
+     * Searches root moves of the board being analyzed (see searchMoves).
+     *
+     * @return completed - The number of moves searched before stopping.
+     ********************************************************************************/
+    @Override
+    protected int searchRoot(int[] moves, int depth, int count, double[] scores, boolean[] exact, int[][] lines) {
+        return searchMoves(this.rootHash, this.rootMover, moves, depth, count, scores, exact, lines);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * searchMoves
+     *********************************************************************************
+     * Searches root moves of the board in the search, without resetting the
+     * counters (see searchMoves(byte[], ...)).
+     *
+     * @param hash - The Zobrist hash of the board.
+     * @return completed - The number of moves searched before stopping.
+     ********************************************************************************/
+    private int searchMoves(long hash, byte mover, int[] moves, int depth, int count,
+                            double[] scores, boolean[] exact, int[][] lines) {
+        byte opponent = mover == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+        for (int i = 0; i < moves.length; i++) {
+            int cell = moves[i];
+            if (this.evaluator.isWinningMove(cell, mover)) {
+                scores[i] = WIN_SCORE-1;
+                exact[i] = true;
+                lines[i] = new int[] {cell};
+                continue;
+            }
+            double alpha = i < count ? Double.NEGATIVE_INFINITY : kthBest(scores, i, count);
+            play(cell, mover);
+            double score = -negamax(depth-1, 1, Double.NEGATIVE_INFINITY, -alpha, opponent,
+                    hash^this.zobrist[mover-1][cell]);
+            undo(cell);
+            if (isAborted())
+                return i;
+            scores[i] = score;
+            exact[i] = score > alpha;
+            lines[i] = new int[this.pvLength[1]];
+            lines[i][0] = cell;
+            System.arraycopy(this.pv[1], 1, lines[i], 1, this.pvLength[1]-1);
+        }
+        return moves.length;
+    }
+
+    /*********************************************************************************
+     * load
+     *********************************************************************************
+     * Copies the board into the search.
+     *
+     * @return hash - The Zobrist hash of the board.
+     ********************************************************************************/
+    private long load(byte[] board) {
+        System.arraycopy(board, 0, this.cells, 0, this.cells.length);
+        this.evaluator.sync(this.cells);
+        long hash = 0;
+        for (int cell = 0; cell < this.cells.length; cell++)
+            if (this.cells[cell] != Cell.EMPTY_CODE)
+                hash ^= this.zobrist[this.cells[cell]-1][cell];
+        return hash;
+    }
+
+    /*********************************************************************************
+     * negamax
+     *********************************************************************************
+     * Alpha-beta search to a fixed depth, scored for the player to move. The move
+     * from the best-move table is tried first, then the rest in order of the
+     * evaluator's score after the move. The principal variation is left in
+     * pv[ply].
+     *
+     * @return score - The score for the mover, or 0 if the search was aborted.
+     ********************************************************************************/
+    private double negamax(int depth, int ply, double alpha, double beta, byte mover, long hash) {
+        this.pvLength[ply] = ply;
+        if (countNode())
+            return 0;
+        byte opponent = mover == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+        if (this.evaluator.isDeadDraw())
+            return 0;
+        if (depth == 0)
+            return this.evaluator.evaluate(mover);
+
+        int count = generate(ply);
+        if (count == 0)
+            return 0;
+        int[] moves = this.candidates[ply];
+        for (int i = 0; i < count; i++) {
+            if (this.evaluator.isWinningMove(moves[i], mover)) {
+                this.pv[ply][ply] = moves[i];
+                this.pvLength[ply] = ply+1;
+                return WIN_SCORE-ply-1;
+            }
+        }
+        orderMoves(ply, count, mover, opponent, hash);
+
+        int slot = (int) (hash & ((1 << TABLE_BITS)-1));
+        double best = Double.NEGATIVE_INFINITY;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            play(cell, mover);
+            double score = -negamax(depth-1, ply+1, -beta, -alpha, opponent, hash^this.zobrist[mover-1][cell]);
+            undo(cell);
+            if (isAborted())
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = cell;
+                if (score > alpha) {
+                    alpha = score;
+                    this.pv[ply][ply] = cell;
+                    System.arraycopy(this.pv[ply+1], ply+1, this.pv[ply], ply+1, this.pvLength[ply+1]-ply-1);
+                    this.pvLength[ply] = this.pvLength[ply+1];
+                }
+            }
+            if (alpha >= beta)
+                break;
+        }
+        this.tableKeys[slot] = hash;
+        this.tableMoves[slot] = bestMove;
+        return best;
+    }
+
+    /*********************************************************************************
+     * orderMoves
+     *********************************************************************************
+     * Sorts the moves of a ply: the table move first, then by how little each one
+     * leaves the opponent. Insertion sort, as the lists are short.
+     ********************************************************************************/
+    private void orderMoves(int ply, int count, byte mover, byte opponent, long hash) {
+        int[] moves = this.candidates[ply];
+        double[] keys = this.orderScores[ply];
+        int slot = (int) (hash & ((1 << TABLE_BITS)-1));
+        int tableMove = this.tableKeys[slot] == hash ? this.tableMoves[slot] : -1;
+        double base = this.evaluator.evaluate(opponent);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            double key = move == tableMove ? Double.NEGATIVE_INFINITY : this.evaluator.evaluateAfter(base, move, mover);
+            int j = i;
+            while (j > 0 && keys[j-1] > key) {
+                keys[j] = keys[j-1];
+                moves[j] = moves[j-1];
+                j--;
+            }
+            keys[j] = key;
+            moves[j] = move;
+        }
+    }
+
+    /*********************************************************************************
+     * generate
+     *********************************************************************************
+     * Lists the empty cells next to a taken cell into candidates[ply], or the
+     * center cell on an empty board. Below the root, dead cells (see
+     * Evaluator.isLiveCell) are dropped as long as a live one is left.
+     *
+     * @return count - The number of candidates.
+     ********************************************************************************/
+    private int generate(int ply) {
+        int[] moves = this.candidates[ply];
+        int count = 0;
+        boolean anyTaken = false;
+        for (int cell = 0; cell < this.cells.length; cell++) {
+            if (this.cells[cell] != Cell.EMPTY_CODE) {
+                anyTaken = true;
+                continue;
+            }
+            int row = cell/this.size;
+            int col = cell%this.size;
+            boolean neighbor = false;
+            for (int r = Math.max(0, row-1); r <= Math.min(this.size-1, row+1) && !neighbor; r++)
+                for (int c = Math.max(0, col-1); c <= Math.min(this.size-1, col+1); c++)
+                    if (this.cells[r*this.size+c] != Cell.EMPTY_CODE) {
+                        neighbor = true;
+                        break;
+                    }
+            if (neighbor)
+                moves[count++] = cell;
+        }
+        if (!anyTaken)
+            moves[count++] = (this.size/2)*this.size+this.size/2;
+        if (ply == 0)
+            return count;
+        int live = 0;
+        for (int i = 0; i < count; i++)
+            if (this.evaluator.isLiveCell(moves[i]))
+                moves[live++] = moves[i];
+        return live > 0 ? live : count;
+    }
+
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Places the mover on a cell of the search board.
+     ********************************************************************************/
+    private void play(int cell, byte mover) {
+        this.cells[cell] = mover;
+        this.evaluator.set(cell, mover);
+    }
+
+    /*********************************************************************************
+     * undo
+     *********************************************************************************
+     * Empties a cell of the search board again.
+     ********************************************************************************/
+    private void undo(int cell) {
+        this.cells[cell] = Cell.EMPTY_CODE;
+        this.evaluator.set(cell, Cell.EMPTY_CODE);
+    }
+}
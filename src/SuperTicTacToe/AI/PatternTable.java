@@ -0,0 +1,213 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PatternTable {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //3^15 patterns is the largest table built (about 14 MB per table). Longer
+    //windows are classified directly from their codes, which fit in an int up to
+    //3^19.
+    public static final int MAX_TABLE_CONNECTIONS = 15;
+    public static final int MAX_CONNECTIONS = 19;
+
+    private static final Map<Integer, PatternTable> TABLES = new ConcurrentHashMap<>();
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final int connections;
+    //powers[i] = 3^i, the weight of the i-th cell of a window in its pattern code.
+    private final int[] powers;
+    //Class of every pattern (see classOf), and the offset of its first empty cell.
+    //Both null above MAX_TABLE_CONNECTIONS.
+    private final byte[] lineClass;
+    private final byte[] firstEmpty;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * PatternTable - Constructor
+     *********************************************************************************
+     * Classifies all 3^connections patterns of a window. A pattern code is the sum
+     * of each cell's byte code (see Cell.toByte) times 3^offset, so it can be
+     * updated in place when a single cell changes. Above MAX_TABLE_CONNECTIONS no
+     * table is built and every lookup decodes the pattern instead.
+     *
+     * @param connections - The number of cells in a window.
+     ********************************************************************************/
+    private PatternTable(int connections) {
+        this.connections = connections;
+        this.powers = new int[connections];
+        int patterns = 1;
+        for (int i = 0; i < connections; i++) {
+            this.powers[i] = patterns;
+            patterns *= 3;
+        }
+        if (connections > MAX_TABLE_CONNECTIONS) {
+            this.lineClass = null;
+            this.firstEmpty = null;
+            return;
+        }
+        this.lineClass = new byte[patterns];
+        this.firstEmpty = new byte[patterns];
+        for (int code = 0; code < patterns; code++) {
+            int xs = 0;
+            int os = 0;
+            int empty = -1;
+            int rest = code;
+            for (int i = 0; i < connections; i++) {
+                int value = rest%3;
+                rest /= 3;
+                if (value == Cell.X_CODE)
+                    xs++;
+                else if (value == Cell.O_CODE)
+                    os++;
+                else if (empty < 0)
+                    empty = i;
+            }
+            this.lineClass[code] = (byte) classOf(connections, xs, os);
+            this.firstEmpty[code] = (byte) empty;
+        }
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * forConnections
+     *********************************************************************************
+     * Returns the table for a number of connections, building it the first time it
+     * is asked for. Windows too long for a table get one that decodes each lookup.
+     *
+     * @param connections - The number of cells in a window.
+     * @return table - The shared pattern table.
+     ********************************************************************************/
+    public static PatternTable forConnections(int connections) {
+        if (connections < 1 || connections > MAX_CONNECTIONS)
+            throw new IllegalArgumentException("Patterns are supported for 1 to "+MAX_CONNECTIONS+" connections.");
+        return TABLES.computeIfAbsent(connections, PatternTable::new);
+    }
+
+    /*********************************************************************************
+     * classOf
+     *********************************************************************************
+     * Numbers the classes of a window: 0 is empty, 1..k hold 1..k X cells and no O
+     * cells, k+1..2k hold 1..k O cells and no X cells, and 2k+1 is dead (both).
+     *
+     * @param connections - The number of cells in a window (k).
+     * @param xs - The number of X cells.
+     * @param os - The number of O cells.
+     * @return lineClass - The class number.
+     ********************************************************************************/
+    public static int classOf(int connections, int xs, int os) {
+        if (xs > 0 && os > 0)
+            return 2*connections+1;
+        if (os > 0)
+            return connections+os;
+        return xs;
+    }
+
+    /*********************************************************************************
+     * classCount
+     *********************************************************************************
+     * Returns the number of window classes for a number of connections.
+     *
+     * @param connections - The number of cells in a window.
+     * @return count - 2*connections+2.
+     ********************************************************************************/
+    public static int classCount(int connections) {
+        return 2*connections+2;
+    }
+
+    /*********************************************************************************
+     * threatClass
+     *********************************************************************************
+     * Returns the class of a window that a player completes with one more cell.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @return lineClass - The class with connections-1 of the player's cells.
+     ********************************************************************************/
+    public int threatClass(byte player) {
+        return player == Cell.X_CODE ? this.connections-1 : 2*this.connections-1;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getLineClass
+     *********************************************************************************
+     * Returns the class of a pattern.
+     * @param code - The pattern code.
+     * @return lineClass - The class number (see classOf).
+     ********************************************************************************/
+    public int getLineClass(int code) {
+        if (this.lineClass != null)
+            return this.lineClass[code];
+        int xs = 0;
+        int os = 0;
+        for (int i = 0; i < this.connections; i++) {
+            int value = code%3;
+            code /= 3;
+            if (value == Cell.X_CODE)
+                xs++;
+            else if (value == Cell.O_CODE)
+                os++;
+        }
+        return classOf(this.connections, xs, os);
+    }
+
+    /*********************************************************************************
+     * getLineClasses
+     *********************************************************************************
+     * Returns the class table itself, for loops that look up many codes at once.
+     * @return lineClass - The class of every pattern code, or null if there is no
+     *                     table (see getLineClass).
+     ********************************************************************************/
+    byte[] getLineClasses() {
+        return this.lineClass;
+    }
+
+    /*********************************************************************************
+     * getFirstEmpty
+     *********************************************************************************
+     * Returns the offset within the window of the first empty cell of a pattern.
+     * @param code - The pattern code.
+     * @return offset - The offset, or -1 if the window is full.
+     ********************************************************************************/
+    public int getFirstEmpty(int code) {
+        if (this.firstEmpty != null)
+            return this.firstEmpty[code];
+        for (int i = 0; i < this.connections; i++, code /= 3)
+            if (code%3 == Cell.EMPTY_CODE)
+                return i;
+        return -1;
+    }
+
+    /*********************************************************************************
+     * getPower
+     *********************************************************************************
+     * Returns the weight of a window offset in pattern codes.
+     * @param offset - The offset of the cell within the window.
+     * @return power - 3^offset.
+     ********************************************************************************/
+    public int getPower(int offset) {
+        return this.powers[offset];
+    }
+
+    /*********************************************************************************
+     * getConnections
+     *********************************************************************************
+     * Returns the number of cells in a window.
+     * @return connections - The number of connections.
+     ********************************************************************************/
+    public int getConnections() {
+        return this.connections;
+    }
+}
@@ -0,0 +1,180 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+public class PositionBatch {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int capacity;
+    private int count;
+    //Cell-major board codes: cell c of position p is at c*capacity+p, so the same
+    //cell of every position in the batch is contiguous.
+    private byte[] cells;
+    private byte[] movers;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * PositionBatch - Constructor
+     *********************************************************************************
+     * Creates an empty batch of positions on boards of one size, laid out as one
+     * primitive array per cell (structure of arrays) so a whole batch can be
+     * evaluated in a single pass (see Evaluator.evaluateBatch).
+     *
+     * @param size - The size of the game boards.
+     * @param capacity - The most positions the batch holds.
+     ********************************************************************************/
+    public PositionBatch(int size, int capacity) {
+        if (size < 1 || capacity < 1)
+            throw new IllegalArgumentException("Size and capacity must be positive.");
+        this.size = size;
+        this.capacity = capacity;
+        this.cells = new byte[size*size*capacity];
+        this.movers = new byte[capacity];
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * add
+     *********************************************************************************
+     * Copies a position into the batch.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @return index - The index of the position in the batch.
+     ********************************************************************************/
+    public int add(byte[] board, byte mover) {
+        if (board.length != this.size*this.size)
+            throw new IllegalArgumentException("Expected a board of "+this.size*this.size+" cells, got "+board.length+".");
+        if (isFull())
+            throw new IllegalStateException("The batch is full.");
+        int index = this.count++;
+        for (int cell = 0; cell < board.length; cell++)
+            this.cells[cell*this.capacity+index] = board[cell];
+        this.movers[index] = mover;
+        return index;
+    }
+
+    /*********************************************************************************
+     * add
+     *********************************************************************************
+     * Copies the current position of a game into the batch.
+     *
+     * @param game - The game.
+     * @return index - The index of the position in the batch.
+     ********************************************************************************/
+    public int add(SuperTicTacToeGame game) {
+        if (game.getSize() != this.size)
+            throw new IllegalArgumentException("Expected a "+this.size+"x"+this.size+" game.");
+        if (isFull())
+            throw new IllegalStateException("The batch is full.");
+        int index = this.count++;
+        for (int cell = 0; cell < this.size*this.size; cell++)
+            this.cells[cell*this.capacity+index] = game.getCell(cell);
+        this.movers[index] = game.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+        return index;
+    }
+
+    /*********************************************************************************
+     * clear
+     *********************************************************************************
+     * Empties the batch so it can be filled again. Old cells are overwritten by
+     * add, so nothing is cleared.
+     ********************************************************************************/
+    public void clear() {
+        this.count = 0;
+    }
+
+    /*********************************************************************************
+     * isFull
+     *********************************************************************************
+     * Determines whether or not the batch is at capacity.
+     *
+     * @return result - Whether or not no more positions fit.
+     ********************************************************************************/
+    public boolean isFull() {
+        return this.count >= this.capacity;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getCell
+     *********************************************************************************
+     * Returns the byte code of one cell of one position.
+     * @param index - The index of the position.
+     * @param cell - The cell index (row*size+col).
+     * @return code - The cell's byte code.
+     ********************************************************************************/
+    public byte getCell(int index, int cell) {
+        return this.cells[cell*this.capacity+index];
+    }
+
+    /*********************************************************************************
+     * getMover
+     *********************************************************************************
+     * Returns the player to move in one position.
+     * @param index - The index of the position.
+     * @return mover - X_CODE or O_CODE.
+     ********************************************************************************/
+    public byte getMover(int index) {
+        return this.movers[index];
+    }
+
+    /*********************************************************************************
+     * getCount
+     *********************************************************************************
+     * Returns the number of positions in the batch.
+     * @return count - The number of positions.
+     ********************************************************************************/
+    public int getCount() {
+        return this.count;
+    }
+
+    /*********************************************************************************
+     * getCapacity
+     *********************************************************************************
+     * Returns the most positions the batch holds.
+     * @return capacity - The capacity.
+     ********************************************************************************/
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /*********************************************************************************
+     * getSize
+     *********************************************************************************
+     * Returns the size of the game boards.
+     * @return size - The size of the game boards.
+     ********************************************************************************/
+    public int getSize() {
+        return this.size;
+    }
+
+    /*********************************************************************************
+     * getCells
+     *********************************************************************************
+     * Returns the cell-major cell array itself, for the evaluator's batch loop.
+     * @return cells - The cells, c*capacity+p for cell c of position p.
+     ********************************************************************************/
+    byte[] getCells() {
+        return this.cells;
+    }
+
+    /*********************************************************************************
+     * getMovers
+     *********************************************************************************
+     * Returns the mover array itself, for the evaluator's batch loop.
+     * @return movers - The player to move in each position.
+     ********************************************************************************/
+    byte[] getMovers() {
+        return this.movers;
+    }
+}
@@ -0,0 +1,365 @@
+package SuperTicTacToe.AI;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PositionCache {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //File of the shared cache, and the log2 of its bucket count. No file, no cache.
+    public static final String CACHE_PROPERTY = "supertictactoe.cache";
+    public static final String CACHE_BITS_PROPERTY = "supertictactoe.cache.bits";
+    public static final int DEFAULT_BUCKET_BITS = 18;
+    //Seconds between two flushes of the shared cache to disk.
+    public static final int FLUSH_SECONDS = 5;
+
+    //Header: magic, version, bucket bits, and the number of AIStatus values.
+    //Entries store AIStatus ordinals, so bump the version whenever AIStatus
+    //changes.
+    private static final int MAGIC = 0x53545443;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    //A slot is key (8 bytes), move (2), depth (1), strategy (1), score (4); four
+    //slots make a 64 byte bucket, one cache line.
+    private static final int SLOT_BYTES = 16;
+    private static final int BUCKET_SLOTS = 4;
+    private static final int BUCKET_BYTES = SLOT_BYTES*BUCKET_SLOTS;
+    private static final int LOCK_STRIPES = 1024;
+
+    private static PositionCache shared;
+    private static boolean sharedOpened;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    //Held while this process owns the file. Null if another process does, in
+    //which case the file was mapped privately and nothing is written back.
+    private FileLock lock;
+    private ByteBuffer buffer;
+    private int bucketMask;
+    private Object[] locks;
+    private ScheduledExecutorService flusher;
+
+    private LongAdder probes;
+    private LongAdder hits;
+    private LongAdder stores;
+
+    //================================================================================
+    // Classes
+    //================================================================================
+    public static final class Entry {
+        //Best move in the canonical orientation (see SymmetricHash), or -1.
+        public final int move;
+        //How much effort the entry is worth; deeper entries replace shallower ones.
+        public final int depth;
+        //AIStatus ordinal of the strategy that chose the move.
+        public final int strategy;
+        public final float score;
+
+        private Entry(int move, int depth, int strategy, float score) {
+            this.move = move;
+            this.depth = depth;
+            this.strategy = strategy;
+            this.score = score;
+        }
+    }
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * PositionCache - Constructor
+     *********************************************************************************
+     * Opens (or creates) a cache file of 2^bucketBits buckets and maps it into
+     * memory. A file written with another layout is cleared. If another process
+     * already has the file open, its entries are read but this process's stores
+     * stay in memory.
+     *
+     * @param file - The cache file.
+     * @param bucketBits - The log2 of the number of buckets.
+     ********************************************************************************/
+    public PositionCache(File file, int bucketBits) throws IOException {
+        if (bucketBits < 1 || bucketBits > 24)
+            throw new IllegalArgumentException("Bucket bits must be between 1 and 24.");
+        this.file = file;
+        this.bucketMask = (1 << bucketBits)-1;
+        long length = HEADER_BYTES+(long) BUCKET_BYTES*(1 << bucketBits);
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = this.raf.getChannel();
+        try {
+            this.lock = this.channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            this.lock = null;
+        }
+
+        boolean valid = this.channel.size() == length;
+        if (this.lock != null) {
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (!valid || !headerMatches(bucketBits)) {
+                for (long i = 0; i < length; i += 8)
+                    this.buffer.putLong((int) i, 0);
+                this.buffer.putInt(0, MAGIC);
+                this.buffer.putInt(4, VERSION);
+                this.buffer.putInt(8, bucketBits);
+                this.buffer.putInt(12, AIStatus.values().length);
+            }
+        } else if (valid) {
+            this.buffer = this.channel.map(FileChannel.MapMode.PRIVATE, 0, length);
+            if (!headerMatches(bucketBits))
+                this.buffer = ByteBuffer.allocate((int) length);
+        } else {
+            this.buffer = ByteBuffer.allocate((int) length);
+        }
+
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            this.locks[i] = new Object();
+        this.probes = new LongAdder();
+        this.hits = new LongAdder();
+        this.stores = new LongAdder();
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * shared
+     *********************************************************************************
+     * Returns the process-wide cache at the file named by the supertictactoe.cache
+     * system property, opening it the first time. The shared cache is flushed
+     * every FLUSH_SECONDS and closed when the JVM exits.
+     *
+     * @return cache - The shared cache, or null if the property is not set or the
+     *                 file cannot be opened.
+     ********************************************************************************/
+    public static synchronized PositionCache shared() {
+        if (sharedOpened)
+            return shared;
+        sharedOpened = true;
+        String path = System.getProperty(CACHE_PROPERTY);
+        if (path == null || path.isEmpty())
+            return null;
+        try {
+            int bits = Integer.getInteger(CACHE_BITS_PROPERTY, DEFAULT_BUCKET_BITS);
+            PositionCache cache = new PositionCache(new File(path), bits);
+            cache.startFlushing(FLUSH_SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(cache::close, "PositionCache-close"));
+            shared = cache;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Could not open position cache "+path+": "+ex.getMessage());
+        }
+        return shared;
+    }
+
+    /*********************************************************************************
+     * get
+     *********************************************************************************
+     * Looks up a position.
+     *
+     * @param key - The canonical key (see SymmetricHash.key), never zero.
+     * @return entry - The stored entry, or null if there is none.
+     ********************************************************************************/
+    public Entry get(long key) {
+        this.probes.increment();
+        int bucket = bucketOffset(key);
+        synchronized (lockFor(key)) {
+            for (int s = 0; s < BUCKET_SLOTS; s++) {
+                int slot = bucket+s*SLOT_BYTES;
+                if (this.buffer.getLong(slot) == key) {
+                    this.hits.increment();
+                    return new Entry(this.buffer.getShort(slot+8), this.buffer.get(slot+10) & 0xFF,
+                            this.buffer.get(slot+11) & 0xFF, this.buffer.getFloat(slot+12));
+                }
+            }
+        }
+        return null;
+    }
+
+    /*********************************************************************************
+     * put
+     *********************************************************************************
+     * Stores a position. An existing entry for the key is only replaced by one of
+     * at least the same depth; otherwise an empty slot of the bucket is used, or
+     * the slot with the least depth is overwritten.
+     *
+     * @param key - The canonical key (see SymmetricHash.key), never zero.
+     * @param move - The best move in the canonical orientation, or -1.
+     * @param depth - The effort behind the entry, 0 to 255.
+     * @param strategy - The AIStatus ordinal of the strategy behind the move.
+     * @param score - The score of the move.
+     ********************************************************************************/
+    public void put(long key, int move, int depth, int strategy, float score) {
+        int bucket = bucketOffset(key);
+        synchronized (lockFor(key)) {
+            int target = -1;
+            int shallowest = Integer.MAX_VALUE;
+            for (int s = 0; s < BUCKET_SLOTS; s++) {
+                int slot = bucket+s*SLOT_BYTES;
+                long stored = this.buffer.getLong(slot);
+                if (stored == key) {
+                    if ((this.buffer.get(slot+10) & 0xFF) > depth)
+                        return;
+                    target = slot;
+                    break;
+                }
+                int slotDepth = stored == 0 ? -1 : this.buffer.get(slot+10) & 0xFF;
+                if (slotDepth < shallowest) {
+                    shallowest = slotDepth;
+                    target = slot;
+                }
+            }
+            this.buffer.putLong(target, key);
+            this.buffer.putShort(target+8, (short) move);
+            this.buffer.put(target+10, (byte) Math.min(depth, 255));
+            this.buffer.put(target+11, (byte) strategy);
+            this.buffer.putFloat(target+12, score);
+        }
+        this.stores.increment();
+    }
+
+    /*********************************************************************************
+     * flush
+     *********************************************************************************
+     * Writes changed pages to disk. Lookups and stores carry on meanwhile.
+     ********************************************************************************/
+    public void flush() {
+        if (this.lock != null)
+            ((MappedByteBuffer) this.buffer).force();
+    }
+
+    /*********************************************************************************
+     * startFlushing
+     *********************************************************************************
+     * Flushes the cache on a background thread every given number of seconds.
+     *
+     * @param seconds - The time between flushes.
+     ********************************************************************************/
+    public synchronized void startFlushing(int seconds) {
+        if (this.flusher != null)
+            return;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "PositionCache-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /*********************************************************************************
+     * close
+     *********************************************************************************
+     * Stops the background flushes, flushes once more and releases the file.
+     ********************************************************************************/
+    public synchronized void close() {
+        if (this.flusher != null)
+            this.flusher.shutdownNow();
+        try {
+            flush();
+            if (this.lock != null)
+                this.lock.release();
+            this.raf.close();
+        } catch (IOException ex) {
+            System.err.println("Could not close position cache "+this.file+": "+ex.getMessage());
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * headerMatches
+     *********************************************************************************
+     * Determines whether the mapped header was written by this version, with the
+     * same bucket count and AIStatus values.
+     ********************************************************************************/
+    private boolean headerMatches(int bucketBits) {
+        return this.buffer.getInt(0) == MAGIC && this.buffer.getInt(4) == VERSION
+                && this.buffer.getInt(8) == bucketBits && this.buffer.getInt(12) == AIStatus.values().length;
+    }
+
+    /*********************************************************************************
+     * bucketOffset
+     *********************************************************************************
+     * Returns the file offset of a key's bucket.
+     ********************************************************************************/
+    private int bucketOffset(long key) {
+        return HEADER_BYTES+bucketIndex(key)*BUCKET_BYTES;
+    }
+
+    /*********************************************************************************
+     * bucketIndex
+     *********************************************************************************
+     * Returns the number of a key's bucket.
+     ********************************************************************************/
+    private int bucketIndex(long key) {
+        return (int) (key^(key >>> 32)) & this.bucketMask;
+    }
+
+    /*********************************************************************************
+     * lockFor
+     *********************************************************************************
+     * Returns the lock stripe guarding a key's bucket. Keys in the same bucket
+     * always share a stripe.
+     ********************************************************************************/
+    private Object lockFor(long key) {
+        return this.locks[bucketIndex(key) & (LOCK_STRIPES-1)];
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getProbes
+     *********************************************************************************
+     * Returns the number of lookups since the cache was opened.
+     * @return probes - The number of lookups.
+     ********************************************************************************/
+    public long getProbes() {
+        return this.probes.sum();
+    }
+
+    /*********************************************************************************
+     * getHits
+     *********************************************************************************
+     * Returns the number of lookups that found an entry.
+     * @return hits - The number of hits.
+     ********************************************************************************/
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /*********************************************************************************
+     * getStores
+     *********************************************************************************
+     * Returns the number of entries stored since the cache was opened.
+     * @return stores - The number of stores.
+     ********************************************************************************/
+    public long getStores() {
+        return this.stores.sum();
+    }
+
+    /*********************************************************************************
+     * isWritable
+     *********************************************************************************
+     * Determines whether or not stores reach the file (false while another process
+     * owns it).
+     * @return result - Whether or not this process owns the file.
+     ********************************************************************************/
+    public boolean isWritable() {
+        return this.lock != null;
+    }
+}
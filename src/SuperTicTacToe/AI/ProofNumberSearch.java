@@ -0,0 +1,584 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ProofNumberSearch {
+    //================================================================================
+    // Constants
+    //================================================================================
+    public static final int INFINITY = Integer.MAX_VALUE/2;
+    //Bounds of defaultTableBits: 1.25 MB and 80 MB.
+    private static final int MIN_TABLE_BITS = 16;
+    private static final int MAX_TABLE_BITS = 22;
+
+    //Returned by generateMoves instead of a move count when the node is decided.
+    private static final int MOVER_WINS = -1;
+    private static final int MOVER_LOSES = -2;
+
+    //Results of solve, from the point of view of the player to move.
+    public enum Result {
+        WIN,
+        LOSS,
+        DRAW,
+        UNKNOWN
+    }
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int connections;
+    private int cellCount;
+    private SuperTicTacToeGame game;
+
+    //Zobrist keys for each of the 8 board symmetries: [symmetry][cell*2+player].
+    //The position key is the smallest of the 8 hashes, so mirrored and rotated
+    //positions share a table entry.
+    private long[][] zobrist;
+    private long[] hashes;
+
+    //Node table: two-way buckets in flat primitive arrays.
+    private long[] keys;
+    private int[] phis;
+    private int[] deltas;
+    private int[] work;
+    private int mask;
+
+    private byte attacker;
+    private long nodes;
+    private long probes;
+    private long hits;
+    private long nodeLimit;
+    //System.nanoTime() value at which a proof stops, or Long.MAX_VALUE for none.
+    private long deadline;
+    private boolean timedOut;
+    private long nextClockCheck;
+    private int[][] children;
+    //Every window of connections cells along a row, column, or diagonal.
+    private int[][] windows;
+    private int[] marks;
+    private int generation;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * ProofNumberSearch - Constructor
+     *********************************************************************************
+     * Creates a solver with a node table of 2^tableBits entries. The table never
+     * grows; once it is full, entries with the least work behind them are replaced.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param tableBits - log2 of the number of node table entries.
+     ********************************************************************************/
+    public ProofNumberSearch(int size, int connections, int tableBits) {
+        this.size = size;
+        this.connections = connections;
+        this.cellCount = size*size;
+        int entries = 1 << tableBits;
+        this.keys = new long[entries];
+        this.phis = new int[entries];
+        this.deltas = new int[entries];
+        this.work = new int[entries];
+        this.mask = entries-2;
+        this.hashes = new long[8];
+        this.children = new int[this.cellCount+1][this.cellCount];
+        this.nodeLimit = Long.MAX_VALUE;
+        this.deadline = Long.MAX_VALUE;
+        this.windows = buildWindows(size, connections);
+        this.marks = new int[this.cellCount];
+
+        Random random = new Random(0x5eed);
+        long[] base = new long[this.cellCount*2];
+        for (int i = 0; i < base.length; i++)
+            base[i] = random.nextLong() | 1L;
+        this.zobrist = new long[8][this.cellCount*2];
+        for (int s = 0; s < 8; s++)
+            for (int cell = 0; cell < this.cellCount; cell++) {
+                int mapped = transform(s, cell);
+                this.zobrist[s][cell*2] = base[mapped*2];
+                this.zobrist[s][cell*2+1] = base[mapped*2+1];
+            }
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * solve
+     *********************************************************************************
+     * Determines whether the player to move wins, loses, or draws with perfect play.
+     * First tries to prove a win for the player to move, then a win for the
+     * opponent; if neither can be proven, the position is a draw. Returns UNKNOWN if
+     * the node limit or deadline runs out first.
+     *
+     * @param position - The position to solve. It is not modified.
+     * @return result - The game theoretic value for the player to move.
+     ********************************************************************************/
+    public Result solve(SuperTicTacToeGame position) {
+        if (position.getSize() != this.size || position.getConnections() != this.connections)
+            throw new IllegalArgumentException("The solver was created for a different board.");
+        this.nodes = 0;
+        this.probes = 0;
+        this.hits = 0;
+        if (position.getGameStatus() != GameStatus.IN_PROGRESS) {
+            if (position.getGameStatus() == GameStatus.CATS)
+                return Result.DRAW;
+            //The player who just moved has won.
+            return Result.LOSS;
+        }
+        byte mover = position.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+        byte opponent = mover == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+
+        int proven = prove(position, mover);
+        if (proven > 0)
+            return Result.WIN;
+        if (proven == 0) {
+            proven = prove(position, opponent);
+            if (proven > 0)
+                return Result.LOSS;
+            if (proven == 0)
+                return Result.DRAW;
+        }
+        return Result.UNKNOWN;
+    }
+
+    /*********************************************************************************
+     * findWinningMove
+     *********************************************************************************
+     * Returns a move that keeps a proven win for the player to move, or -1 if a win
+     * cannot be proven within the node limit and deadline.
+     *
+     * @param position - The position to search. It is not modified.
+     * @return move - The cell index (row*size+col) of the winning move, or -1.
+     ********************************************************************************/
+    public int findWinningMove(SuperTicTacToeGame position) {
+        this.nodes = 0;
+        this.probes = 0;
+        this.hits = 0;
+        if (position.getGameStatus() != GameStatus.IN_PROGRESS)
+            return -1;
+        byte mover = position.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+        if (prove(position, mover) <= 0)
+            return -1;
+        //The root is proven, so some child has a disproof (delta == 0) for the defender.
+        for (int cell = 0; cell < this.cellCount; cell++) {
+            if (this.game.getCell(cell) != Cell.EMPTY_CODE)
+                continue;
+            this.game.select(cell/this.size, cell%this.size);
+            boolean winning = this.game.getGameStatus() != GameStatus.IN_PROGRESS
+                    && this.game.getGameStatus() != GameStatus.CATS;
+            this.game.undo();
+            if (winning)
+                return cell;
+            int entry = find(childKey(cell, mover));
+            if (entry >= 0 && this.deltas[entry] == 0)
+                return cell;
+        }
+        return -1;
+    }
+
+    /*********************************************************************************
+     * clear
+     *********************************************************************************
+     * Empties the node table.
+     ********************************************************************************/
+    public void clear() {
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.work, 0);
+    }
+
+    /*********************************************************************************
+     * defaultTableBits
+     *********************************************************************************
+     * Returns a node table size for solving boards of the given size: one bit per
+     * cell past the third, between 2^16 and 2^22 entries. A table too small for
+     * the proof evicts nodes that df-pn then proves again, and the solve stops
+     * making progress: 5x5 k=4 takes 7.4 seconds with 2^22 entries, and does not
+     * finish in 150 seconds with 2^21.
+     *
+     * @param size - The size of the game board.
+     * @return tableBits - log2 of the number of node table entries.
+     ********************************************************************************/
+    public static int defaultTableBits(int size) {
+        return Math.max(MIN_TABLE_BITS, Math.min(MAX_TABLE_BITS, size*size-3));
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * prove
+     *********************************************************************************
+     * Runs df-pn from the position with the given attacker.
+     *
+     * @return result - 1 if the attacker wins, 0 if it does not, -1 if unresolved.
+     ********************************************************************************/
+    private int prove(SuperTicTacToeGame position, byte attacker) {
+        clear();
+        this.timedOut = false;
+        this.nextClockCheck = this.nodes;
+        this.attacker = attacker;
+        this.game = position.fork();
+        this.game.setLineMaskWinCheck(true);
+        this.game.setDeadDrawCheck(true);
+        Arrays.fill(this.hashes, 0L);
+        for (int cell = 0; cell < this.cellCount; cell++)
+            if (this.game.getCell(cell) != Cell.EMPTY_CODE)
+                toggle(cell, this.game.getCell(cell));
+
+        byte mover = this.game.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+        mid(INFINITY, INFINITY, 0);
+        int entry = find(key());
+        if (entry < 0)
+            return -1;
+        //phi/delta are from the mover's point of view.
+        int proof = mover == attacker ? this.phis[entry] : this.deltas[entry];
+        int disproof = mover == attacker ? this.deltas[entry] : this.phis[entry];
+        if (proof == 0)
+            return 1;
+        if (disproof == 0)
+            return 0;
+        return -1;
+    }
+
+    /*********************************************************************************
+     * mid
+     *********************************************************************************
+     * Multiple iterative deepening step of df-pn, in negamax form: phi is the
+     * mover's proof number (reaching its goal), delta its disproof number. The
+     * attacker's goal is to win; the defender's goal is to not lose. Child
+     * thresholds use the 1+epsilon rule, which cuts down on re-expansions.
+     *
+     * @param thPhi - The phi threshold.
+     * @param thDelta - The delta threshold.
+     * @param ply - The search depth, used to pick a child buffer.
+     ********************************************************************************/
+    private void mid(int thPhi, int thDelta, int ply) {
+        this.nodes++;
+        long key = key();
+        byte mover = this.game.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+
+        int[] moves = this.children[ply];
+        int moveCount = generateMoves(mover, moves);
+        if (moveCount == MOVER_WINS) {
+            store(key, 0, INFINITY, Integer.MAX_VALUE);
+            return;
+        }
+        if (moveCount == MOVER_LOSES) {
+            store(key, INFINITY, 0, Integer.MAX_VALUE);
+            return;
+        }
+
+        int nodeWork = 0;
+        while (true) {
+            int phi = INFINITY;
+            int delta = 0;
+            int maxPhi = 0;
+            int best = -1;
+            int bestDelta = INFINITY;
+            int secondDelta = INFINITY;
+            int bestPhi = 0;
+            for (int i = 0; i < moveCount; i++) {
+                int entry = find(childKey(moves[i], mover));
+                int childPhi = entry < 0 ? 1 : this.phis[entry];
+                int childDelta = entry < 0 ? 1 : this.deltas[entry];
+                phi = Math.min(phi, childDelta);
+                maxPhi = Math.max(maxPhi, childPhi);
+                if (childPhi > 0) delta++;
+                if (childDelta < bestDelta) {
+                    secondDelta = bestDelta;
+                    bestDelta = childDelta;
+                    bestPhi = childPhi;
+                    best = moves[i];
+                } else if (childDelta < secondDelta) {
+                    secondDelta = childDelta;
+                }
+            }
+            delta = maxPhi == 0 ? 0 : Math.min(INFINITY, maxPhi+delta-1);
+            if (phi >= thPhi || delta >= thDelta || this.nodes >= this.nodeLimit || outOfTime()) {
+                store(key, phi, delta, nodeWork);
+                return;
+            }
+
+            int childThPhi = thDelta-delta+bestPhi;
+            int childThDelta = thPhi;
+            if (secondDelta < INFINITY)
+                childThDelta = Math.min(thPhi, secondDelta+1+secondDelta/4);
+            long before = this.nodes;
+            this.game.select(best/this.size, best%this.size);
+            toggle(best, mover);
+            mid(childThPhi, childThDelta, ply+1);
+            toggle(best, mover);
+            this.game.undo();
+            nodeWork += (int) Math.min(Integer.MAX_VALUE/4, this.nodes-before);
+        }
+    }
+
+    /*********************************************************************************
+     * outOfTime
+     *********************************************************************************
+     * Returns whether or not the deadline has passed. The clock is only read every
+     * 1024 nodes, and once the deadline has passed the answer sticks until the next
+     * proof.
+     ********************************************************************************/
+    private boolean outOfTime() {
+        if (!this.timedOut && this.deadline != Long.MAX_VALUE && this.nodes >= this.nextClockCheck) {
+            this.nextClockCheck = this.nodes+1024;
+            this.timedOut = System.nanoTime()-this.deadline >= 0;
+        }
+        return this.timedOut;
+    }
+
+    /*********************************************************************************
+     * generateMoves
+     *********************************************************************************
+     * Classifies the position by its winning windows and lists the moves worth
+     * searching. The mover wins outright with a winning cell of its own. It loses
+     * if the opponent has two winning cells, and must block if the opponent has
+     * one. A position in which the attacker has no window left without a defender
+     * cell is decided: the attacker can no longer win.
+     *
+     * @param mover - The player to move.
+     * @param moves - Receives the moves to search.
+     * @return moveCount - The number of moves, or MOVER_WINS / MOVER_LOSES.
+     ********************************************************************************/
+    private int generateMoves(byte mover, int[] moves) {
+        byte defender = this.attacker == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+        int mark = ++this.generation;
+        int opponentWins = 0;
+        int block = -1;
+        boolean attackerOpen = false;
+        for (int[] window : this.windows) {
+            int movers = 0;
+            int opponents = 0;
+            int empty = -1;
+            for (int cell : window) {
+                byte value = this.game.getCell(cell);
+                if (value == Cell.EMPTY_CODE)
+                    empty = cell;
+                else if (value == mover)
+                    movers++;
+                else
+                    opponents++;
+            }
+            int defenderCount = mover == defender ? movers : opponents;
+            attackerOpen |= defenderCount == 0;
+            if (opponents == 0 && movers == window.length-1)
+                return MOVER_WINS;
+            if (movers == 0 && opponents == window.length-1 && this.marks[empty] != mark) {
+                this.marks[empty] = mark;
+                opponentWins++;
+                block = empty;
+            }
+        }
+        if (!attackerOpen)
+            return mover == this.attacker ? MOVER_LOSES : MOVER_WINS;
+        if (opponentWins > 1)
+            return MOVER_LOSES;
+        if (opponentWins == 1) {
+            moves[0] = block;
+            return 1;
+        }
+        int moveCount = 0;
+        for (int cell = 0; cell < this.cellCount; cell++)
+            if (this.game.getCell(cell) == Cell.EMPTY_CODE)
+                moves[moveCount++] = cell;
+        return moveCount;
+    }
+
+    /*********************************************************************************
+     * find
+     *********************************************************************************
+     * Returns the table index holding the key, or -1.
+     ********************************************************************************/
+    private int find(long key) {
+        int index = (int) (key ^ (key >>> 32)) & this.mask;
+        this.probes++;
+        if (this.keys[index] == key) {
+            this.hits++;
+            return index;
+        }
+        if (this.keys[index+1] == key) {
+            this.hits++;
+            return index+1;
+        }
+        return -1;
+    }
+
+    /*********************************************************************************
+     * store
+     *********************************************************************************
+     * Stores a node, replacing the entry of its bucket with the least work.
+     ********************************************************************************/
+    private void store(long key, int phi, int delta, int nodeWork) {
+        int index = (int) (key ^ (key >>> 32)) & this.mask;
+        if (this.keys[index] != key && (this.keys[index+1] == key || this.work[index+1] <= this.work[index]))
+            index++;
+        this.keys[index] = key;
+        this.phis[index] = phi;
+        this.deltas[index] = delta;
+        //Solved nodes are the most valuable to keep.
+        this.work[index] = phi == 0 || delta == 0 ? Integer.MAX_VALUE : Math.max(nodeWork, 1);
+    }
+
+    /*********************************************************************************
+     * toggle
+     *********************************************************************************
+     * Adds or removes a player's cell from all 8 symmetric hashes.
+     ********************************************************************************/
+    private void toggle(int cell, byte player) {
+        int offset = cell*2+(player == Cell.X_CODE ? 0 : 1);
+        for (int s = 0; s < 8; s++)
+            this.hashes[s] ^= this.zobrist[s][offset];
+    }
+
+    /*********************************************************************************
+     * key
+     *********************************************************************************
+     * Returns the canonical key of the current position. (Never zero, which marks
+     * an empty table slot.)
+     ********************************************************************************/
+    private long key() {
+        long min = Long.MAX_VALUE;
+        for (int s = 0; s < 8; s++)
+            min = Math.min(min, this.hashes[s]);
+        return min == 0 ? 1 : min;
+    }
+
+    /*********************************************************************************
+     * childKey
+     *********************************************************************************
+     * Returns the canonical key of the position after the mover plays the cell,
+     * without playing it.
+     ********************************************************************************/
+    private long childKey(int cell, byte mover) {
+        int offset = cell*2+(mover == Cell.X_CODE ? 0 : 1);
+        long min = Long.MAX_VALUE;
+        for (int s = 0; s < 8; s++)
+            min = Math.min(min, this.hashes[s] ^ this.zobrist[s][offset]);
+        return min == 0 ? 1 : min;
+    }
+
+    /*********************************************************************************
+     * buildWindows
+     *********************************************************************************
+     * Lists the cells of every window that could hold a win.
+     ********************************************************************************/
+    private static int[][] buildWindows(int size, int connections) {
+        int[][] lines = ThreatSearch.buildLines(size, connections);
+        int count = 0;
+        for (int[] line : lines)
+            count += line.length-connections+1;
+        int[][] result = new int[count][];
+        int next = 0;
+        for (int[] line : lines)
+            for (int start = 0; start+connections <= line.length; start++)
+                result[next++] = Arrays.copyOfRange(line, start, start+connections);
+        return result;
+    }
+
+    /*********************************************************************************
+     * transform
+     *********************************************************************************
+     * Maps a cell through one of the 8 symmetries of the square board.
+     ********************************************************************************/
+    private int transform(int symmetry, int cell) {
+        int row = cell/this.size;
+        int col = cell%this.size;
+        int last = this.size-1;
+        for (int r = 0; r < (symmetry & 3); r++) {
+            int rotated = col;
+            col = last-row;
+            row = rotated;
+        }
+        if ((symmetry & 4) != 0)
+            col = last-col;
+        return row*this.size+col;
+    }
+
+    //================================================================================
+    // Getter/Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setNodeLimit
+     *********************************************************************************
+     * Sets the maximum number of nodes a single proof may visit.
+     * @param nodeLimit - The node limit.
+     ********************************************************************************/
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /*********************************************************************************
+     * setDeadline
+     *********************************************************************************
+     * Sets the System.nanoTime() value at which a proof gives up, as if it had run
+     * out of nodes. Long.MAX_VALUE removes the deadline.
+     * @param deadline - The deadline in System.nanoTime() units.
+     ********************************************************************************/
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /*********************************************************************************
+     * getNodes
+     *********************************************************************************
+     * Returns the number of nodes visited by the last solve.
+     * @return nodes - The number of nodes visited.
+     ********************************************************************************/
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /*********************************************************************************
+     * getTableProbes
+     *********************************************************************************
+     * Returns the number of node table lookups made by the last solve.
+     * @return probes - The number of lookups.
+     ********************************************************************************/
+    public long getTableProbes() {
+        return this.probes;
+    }
+
+    /*********************************************************************************
+     * getTableHits
+     *********************************************************************************
+     * Returns the number of node table lookups by the last solve that found their
+     * entry.
+     * @return hits - The number of lookups that hit.
+     ********************************************************************************/
+    public long getTableHits() {
+        return this.hits;
+    }
+
+    /*********************************************************************************
+     * getTableBytes
+     *********************************************************************************
+     * Returns the memory used by the node table.
+     * @return bytes - The size of the node table in bytes.
+     ********************************************************************************/
+    public long getTableBytes() {
+        return (long) this.keys.length*(8+4+4+4);
+    }
+
+    /*********************************************************************************
+     * getTableEntries
+     *********************************************************************************
+     * Returns the number of occupied node table entries.
+     * @return entries - The number of occupied entries.
+     ********************************************************************************/
+    public int getTableEntries() {
+        int used = 0;
+        for (long key : this.keys)
+            if (key != 0)
+                used++;
+        return used;
+    }
+}
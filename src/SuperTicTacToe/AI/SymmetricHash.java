@@ -0,0 +1,139 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+
+import java.util.Random;
+
+public class SymmetricHash {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int cellCount;
+    //Zobrist keys for each of the 8 board symmetries: [symmetry][cell*2+player].
+    private long[][] zobrist;
+    //cells[symmetry][cell] is where the symmetry moves the cell, and inverse undoes it.
+    private int[][] cells;
+    private int[][] inverse;
+    //Mixed into every key: the board shape, and the side to move when it is O.
+    private long salt;
+    private long oToMove;
+    //Symmetry that produced the last canonical key.
+    private int symmetry;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * SymmetricHash - Constructor
+     *********************************************************************************
+     * Prepares canonical position keys for boards of the given size and
+     * connections. The keys are the same in every run, so they can be stored.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public SymmetricHash(int size, int connections) {
+        this.size = size;
+        this.cellCount = size*size;
+        Random random = new Random(0x5eedL*31+size*64+connections);
+        long[] base = new long[this.cellCount*2];
+        for (int i = 0; i < base.length; i++)
+            base[i] = random.nextLong();
+        this.salt = random.nextLong();
+        this.oToMove = random.nextLong();
+        this.zobrist = new long[8][this.cellCount*2];
+        this.cells = new int[8][this.cellCount];
+        this.inverse = new int[8][this.cellCount];
+        for (int s = 0; s < 8; s++)
+            for (int cell = 0; cell < this.cellCount; cell++) {
+                int mapped = transform(s, cell);
+                this.cells[s][cell] = mapped;
+                this.inverse[s][mapped] = cell;
+                this.zobrist[s][cell*2] = base[mapped*2];
+                this.zobrist[s][cell*2+1] = base[mapped*2+1];
+            }
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * key
+     *********************************************************************************
+     * Returns the canonical key of a position: the smallest of its 8 symmetric
+     * hashes, so positions that are rotations or reflections of each other share
+     * a key. Never zero. The symmetry used is kept for toCanonical and
+     * fromCanonical.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @return key - The canonical key.
+     ********************************************************************************/
+    public long key(byte[] board, byte mover) {
+        long[] hashes = new long[8];
+        for (int cell = 0; cell < this.cellCount; cell++) {
+            if (board[cell] == Cell.EMPTY_CODE)
+                continue;
+            int offset = cell*2+(board[cell] == Cell.X_CODE ? 0 : 1);
+            for (int s = 0; s < 8; s++)
+                hashes[s] ^= this.zobrist[s][offset];
+        }
+        long min = Long.MAX_VALUE;
+        for (int s = 0; s < 8; s++)
+            if (hashes[s] < min) {
+                min = hashes[s];
+                this.symmetry = s;
+            }
+        long key = min^this.salt^(mover == Cell.O_CODE ? this.oToMove : 0);
+        return key == 0 ? 1 : key;
+    }
+
+    /*********************************************************************************
+     * toCanonical
+     *********************************************************************************
+     * Maps a cell of the position last passed to key into the canonical
+     * orientation.
+     *
+     * @param cell - The cell index (row*size+col).
+     * @return cell - The cell in the canonical orientation.
+     ********************************************************************************/
+    public int toCanonical(int cell) {
+        return this.cells[this.symmetry][cell];
+    }
+
+    /*********************************************************************************
+     * fromCanonical
+     *********************************************************************************
+     * Maps a cell of the canonical orientation back onto the position last passed
+     * to key.
+     *
+     * @param cell - The cell in the canonical orientation.
+     * @return cell - The cell index (row*size+col).
+     ********************************************************************************/
+    public int fromCanonical(int cell) {
+        return this.inverse[this.symmetry][cell];
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * transform
+     *********************************************************************************
+     * Maps a cell through one of the 8 symmetries of the square board.
+     ********************************************************************************/
+    private int transform(int symmetry, int cell) {
+        int row = cell/this.size;
+        int col = cell%this.size;
+        int last = this.size-1;
+        for (int r = 0; r < (symmetry & 3); r++) {
+            int rotated = col;
+            col = last-row;
+            row = rotated;
+        }
+        if ((symmetry & 4) != 0)
+            col = last-col;
+        return row*this.size+col;
+    }
+}
@@ -0,0 +1,561 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ThreatSearch {
+    //================================================================================
+    // Constants
+    //================================================================================
+    public static final int DEFAULT_MAX_DEPTH = 10;
+    public static final int DEFAULT_NODE_LIMIT = 10000;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int connections;
+    //Cell indices of every line (row, column, diagonal, anti diagonal) that is long
+    //enough to hold a win.
+    private int[][] lines;
+    //Indices (into lines) of the lines through each cell.
+    private int[][] linesThroughCell;
+
+    private byte[] cells;
+    private int maxDepth;
+    private int depthLimit;
+    //Deepest depth limit tried by the last public search.
+    private int depthReached;
+    private int nodeLimit;
+    private long budget;
+    private long nodes;
+    private boolean aborted;
+    //System.nanoTime() value at which searches stop, or Long.MAX_VALUE for none.
+    private long deadline;
+
+    //Forcing sequence found by the last search: attacker and defender moves, in order.
+    private int[] sequence;
+    private int sequenceLength;
+    private int[] line;
+    private int lineLength;
+
+    //Scratch space, so a search does not allocate. Marks are compared against a
+    //generation counter instead of being cleared between scans.
+    private int[] marks;
+    private int generation;
+    private int[][] candidates;
+    private int[] counterThreats;
+    private int[] winningCells;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * ThreatSearch - Constructor
+     *********************************************************************************
+     * Prepares a threat-space search for boards of the given size and connections.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public ThreatSearch(int size, int connections) {
+        this.size = size;
+        this.connections = connections;
+        this.lines = buildLines(size, connections);
+        this.linesThroughCell = buildLinesThroughCell(size, this.lines);
+        this.cells = new byte[size*size];
+        this.marks = new int[size*size];
+        this.counterThreats = new int[size*size];
+        this.winningCells = new int[size*size];
+        this.maxDepth = DEFAULT_MAX_DEPTH;
+        this.nodeLimit = DEFAULT_NODE_LIMIT;
+        this.deadline = Long.MAX_VALUE;
+        this.candidates = new int[this.maxDepth+1][size*size];
+        this.sequence = new int[2*this.maxDepth+2];
+        this.line = new int[2*this.maxDepth+2];
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * findForcedWin
+     *********************************************************************************
+     * Searches for a sequence of forcing moves with which the attacker wins no
+     * matter how the defender replies. Every attacker move must threaten to win on
+     * the next move (or block the defender's only threat), so the defender's replies
+     * are restricted to the blocking cell. The sequence ends once the attacker has
+     * two separate winning cells (a fork) or an immediate win. The depth limit is
+     * raised one attacker move at a time, so the shortest sequence is found first.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param attacker - X_CODE or O_CODE.
+     * @return move - The first move of the forcing sequence, or -1 if none was found.
+     ********************************************************************************/
+    public int findForcedWin(byte[] board, byte attacker) {
+        this.depthReached = 0;
+        return findForcedWin(board, attacker, this.nodeLimit);
+    }
+
+    /*********************************************************************************
+     * findForcedWin
+     *********************************************************************************
+     * Same as findForcedWin(board, attacker), with its own node budget.
+     ********************************************************************************/
+    private int findForcedWin(byte[] board, byte attacker, long budget) {
+        this.budget = budget;
+        System.arraycopy(board, 0, this.cells, 0, this.cells.length);
+        this.nodes = 0;
+        this.aborted = false;
+        this.sequenceLength = 0;
+        for (this.depthLimit = 1; this.depthLimit <= this.maxDepth && !this.aborted; this.depthLimit++) {
+            this.depthReached = Math.max(this.depthReached, this.depthLimit);
+            this.lineLength = 0;
+            if (attack(attacker, 0, -1))
+                return this.sequence[0];
+        }
+        return -1;
+    }
+
+    /*********************************************************************************
+     * findForkBlock
+     *********************************************************************************
+     * Looks for a move that takes away the opponent's forced win. The cells of the
+     * opponent's forcing sequence are tried first, then moves that create a threat
+     * of our own (forcing the opponent to answer instead of attacking). The first
+     * one after which the opponent no longer has a forced win is returned. If none
+     * of them work, the remaining empty cells are tried, and otherwise the first
+     * move of the opponent's sequence is returned. The node limit and deadline
+     * cover all of these searches together.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte). Cells are
+     *              tried on this array and restored before returning.
+     * @param player - The player to move, X_CODE or O_CODE.
+     * @return move - The pre-empting move, or -1 if the opponent has no forced win.
+     ********************************************************************************/
+    public int findForkBlock(byte[] board, byte player) {
+        byte opponent = player == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+        if (findForcedWin(board, opponent) < 0)
+            return -1;
+        long totalNodes = this.nodes;
+        int[] threatCells = Arrays.copyOf(this.sequence, this.sequenceLength);
+        int threatLength = this.sequenceLength;
+
+        int fallback = threatCells[0];
+        System.arraycopy(board, 0, this.cells, 0, this.cells.length);
+        int counterCount = collectThreatMoves(player, this.counterThreats);
+        //After the likely candidates, any other empty cell is tried while the node
+        //budget lasts.
+        int total = threatLength+counterCount+board.length;
+        for (int i = 0; i < total; i++) {
+            int cell;
+            if (i < threatLength) {
+                cell = threatCells[i];
+            } else if (i < threatLength+counterCount) {
+                cell = this.counterThreats[i-threatLength];
+                if (contains(threatCells, cell))
+                    continue;
+            } else {
+                cell = i-threatLength-counterCount;
+                if (contains(threatCells, cell) || contains(this.counterThreats, counterCount, cell))
+                    continue;
+            }
+            if (board[cell] != Cell.EMPTY_CODE)
+                continue;
+            if (totalNodes >= this.nodeLimit || pastDeadline())
+                break;
+            board[cell] = player;
+            int refutation = findForcedWin(board, opponent, this.nodeLimit-totalNodes);
+            board[cell] = Cell.EMPTY_CODE;
+            totalNodes += this.nodes;
+            if (refutation < 0 && !this.aborted) {
+                fallback = cell;
+                break;
+            }
+        }
+        //Report the opponent's sequence, which is what the block was chosen against.
+        System.arraycopy(threatCells, 0, this.sequence, 0, threatLength);
+        this.sequenceLength = threatLength;
+        this.nodes = totalNodes;
+        return fallback;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * attack
+     *********************************************************************************
+     * One attacker node of the threat-space search. On success, the forcing
+     * sequence from this node onwards is left in the sequence array.
+     * Below the root, the attacker's single threat has just been blocked and the
+     * defender had no threat of its own, so the attacker cannot win immediately and
+     * any defender threat runs through the defender's reply. Only the lines through
+     * the last move are scanned for threats.
+     *
+     * @param attacker - The attacking player's code.
+     * @param depth - The number of attacker moves already played.
+     * @param lastReply - The defender's last reply, or -1 at the root.
+     * @return result - Whether or not the attacker has a forced win from here.
+     ********************************************************************************/
+    private boolean attack(byte attacker, int depth, int lastReply) {
+        byte defender = attacker == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+
+        if (depth == 0) {
+            int win = firstWinningCell(attacker);
+            if (win >= 0) {
+                this.line[this.lineLength++] = win;
+                saveSequence();
+                this.lineLength--;
+                return true;
+            }
+        }
+        if (depth >= this.depthLimit || this.nodes >= this.budget || this.aborted) {
+            this.aborted |= this.nodes >= this.budget;
+            return false;
+        }
+        //Each node scans whole lines, so reading the clock here is comparatively free.
+        if (pastDeadline()) {
+            this.aborted = true;
+            return false;
+        }
+
+        int[] moves = this.candidates[depth];
+        int moveCount;
+        int defenderWins = countWinningCells(defender, moves, lastReply);
+        if (defenderWins > 1)
+            return false;
+        //A defender threat must be blocked; otherwise any threat-making move is a candidate.
+        if (defenderWins == 0)
+            moveCount = collectThreatMoves(attacker, moves);
+        else
+            moveCount = 1;
+
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves[i];
+            this.nodes++;
+            this.cells[move] = attacker;
+            this.line[this.lineLength++] = move;
+
+            int threats = countWinningCells(attacker, this.winningCells, move);
+            if (threats >= 2) {
+                //Fork: the defender cannot block both cells.
+                this.line[this.lineLength++] = this.winningCells[0];
+                saveSequence();
+                this.lineLength -= 2;
+                this.cells[move] = Cell.EMPTY_CODE;
+                return true;
+            } else if (threats == 1) {
+                int reply = this.winningCells[0];
+                this.cells[reply] = defender;
+                this.line[this.lineLength++] = reply;
+                boolean won = attack(attacker, depth+1, reply);
+                this.lineLength--;
+                this.cells[reply] = Cell.EMPTY_CODE;
+                if (won) {
+                    this.lineLength--;
+                    this.cells[move] = Cell.EMPTY_CODE;
+                    return true;
+                }
+            }
+            this.lineLength--;
+            this.cells[move] = Cell.EMPTY_CODE;
+        }
+        return false;
+    }
+
+    /*********************************************************************************
+     * pastDeadline
+     *********************************************************************************
+     * Returns whether or not a deadline is set and has passed.
+     ********************************************************************************/
+    private boolean pastDeadline() {
+        return this.deadline != Long.MAX_VALUE && System.nanoTime()-this.deadline >= 0;
+    }
+
+    /*********************************************************************************
+     * saveSequence
+     *********************************************************************************
+     * Keeps the current line as the forcing sequence.
+     ********************************************************************************/
+    private void saveSequence() {
+        System.arraycopy(this.line, 0, this.sequence, 0, this.lineLength);
+        this.sequenceLength = this.lineLength;
+    }
+
+    /*********************************************************************************
+     * countWinningCells
+     *********************************************************************************
+     * Counts the distinct empty cells that would complete a line for the player.
+     *
+     * @param player - The player's code.
+     * @param out - Receives the winning cells.
+     * @param through - Only scan the lines through this cell, or -1 for all lines.
+     * @return count - The number of distinct winning cells.
+     ********************************************************************************/
+    private int countWinningCells(byte player, int[] out, int through) {
+        int mark = ++this.generation;
+        int count = 0;
+        int lineCount = through < 0 ? this.lines.length : this.linesThroughCell[through].length;
+        for (int l = 0; l < lineCount; l++) {
+            int[] cellsOfLine = this.lines[through < 0 ? l : this.linesThroughCell[through][l]];
+            int own = 0;
+            int other = 0;
+            for (int i = 0; i < cellsOfLine.length; i++) {
+                byte value = this.cells[cellsOfLine[i]];
+                own += value == player ? 1 : 0;
+                other += value != player && value != Cell.EMPTY_CODE ? 1 : 0;
+                if (i >= this.connections) {
+                    byte leaving = this.cells[cellsOfLine[i-this.connections]];
+                    own -= leaving == player ? 1 : 0;
+                    other -= leaving != player && leaving != Cell.EMPTY_CODE ? 1 : 0;
+                }
+                if (i >= this.connections-1 && other == 0 && own == this.connections-1) {
+                    int empty = emptyInWindow(cellsOfLine, i);
+                    if (this.marks[empty] != mark) {
+                        this.marks[empty] = mark;
+                        out[count++] = empty;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /*********************************************************************************
+     * firstWinningCell
+     *********************************************************************************
+     * Returns an empty cell that would complete a line for the player, or -1.
+     ********************************************************************************/
+    private int firstWinningCell(byte player) {
+        for (int[] cellsOfLine : this.lines) {
+            int own = 0;
+            int other = 0;
+            for (int i = 0; i < cellsOfLine.length; i++) {
+                byte value = this.cells[cellsOfLine[i]];
+                own += value == player ? 1 : 0;
+                other += value != player && value != Cell.EMPTY_CODE ? 1 : 0;
+                if (i >= this.connections) {
+                    byte leaving = this.cells[cellsOfLine[i-this.connections]];
+                    own -= leaving == player ? 1 : 0;
+                    other -= leaving != player && leaving != Cell.EMPTY_CODE ? 1 : 0;
+                }
+                if (i >= this.connections-1 && other == 0 && own == this.connections-1)
+                    return emptyInWindow(cellsOfLine, i);
+            }
+        }
+        return -1;
+    }
+
+    /*********************************************************************************
+     * collectThreatMoves
+     *********************************************************************************
+     * Collects the empty cells that would leave the player one move from a win:
+     * the empty cells of windows holding connections-2 of the player's cells and
+     * none of the opponent's.
+     *
+     * @param player - The player's code.
+     * @param out - Receives the candidate cells.
+     * @return count - The number of candidate cells.
+     ********************************************************************************/
+    private int collectThreatMoves(byte player, int[] out) {
+        int mark = ++this.generation;
+        int count = 0;
+        for (int[] cellsOfLine : this.lines) {
+            int own = 0;
+            int other = 0;
+            for (int i = 0; i < cellsOfLine.length; i++) {
+                byte value = this.cells[cellsOfLine[i]];
+                own += value == player ? 1 : 0;
+                other += value != player && value != Cell.EMPTY_CODE ? 1 : 0;
+                if (i >= this.connections) {
+                    byte leaving = this.cells[cellsOfLine[i-this.connections]];
+                    own -= leaving == player ? 1 : 0;
+                    other -= leaving != player && leaving != Cell.EMPTY_CODE ? 1 : 0;
+                }
+                if (i >= this.connections-1 && other == 0 && own == this.connections-2) {
+                    for (int j = i-this.connections+1; j <= i; j++) {
+                        int cell = cellsOfLine[j];
+                        if (this.cells[cell] == Cell.EMPTY_CODE && this.marks[cell] != mark) {
+                            this.marks[cell] = mark;
+                            out[count++] = cell;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /*********************************************************************************
+     * contains
+     *********************************************************************************
+     * Determines whether or not a (short) array holds the given cell.
+     ********************************************************************************/
+    private static boolean contains(int[] array, int cell) {
+        return contains(array, array.length, cell);
+    }
+
+    private static boolean contains(int[] array, int length, int cell) {
+        for (int i = 0; i < length; i++)
+            if (array[i] == cell)
+                return true;
+        return false;
+    }
+
+    /*********************************************************************************
+     * emptyInWindow
+     *********************************************************************************
+     * Returns the first empty cell of the window ending at the given line position.
+     ********************************************************************************/
+    private int emptyInWindow(int[] cellsOfLine, int end) {
+        for (int j = end-this.connections+1; j <= end; j++)
+            if (this.cells[cellsOfLine[j]] == Cell.EMPTY_CODE)
+                return cellsOfLine[j];
+        return -1;
+    }
+
+    /*********************************************************************************
+     * buildLines
+     *********************************************************************************
+     * Lists the cell indices of every row, column, diagonal, and anti diagonal that
+     * is at least as long as the connections to win.
+     ********************************************************************************/
+    static int[][] buildLines(int size, int connections) {
+        List<int[]> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int[] row = new int[size];
+            int[] col = new int[size];
+            for (int j = 0; j < size; j++) {
+                row[j] = i*size+j;
+                col[j] = j*size+i;
+            }
+            result.add(row);
+            result.add(col);
+        }
+        for (int d = -(size-1); d <= size-1; d++) {
+            int length = size-Math.abs(d);
+            if (length < connections)
+                continue;
+            int[] diag = new int[length];
+            int[] anti = new int[length];
+            int startRow = Math.max(d, 0);
+            int startCol = Math.max(-d, 0);
+            for (int j = 0; j < length; j++) {
+                diag[j] = (startRow+j)*size+startCol+j;
+                anti[j] = (startRow+j)*size+(size-1-startCol-j);
+            }
+            result.add(diag);
+            result.add(anti);
+        }
+        return result.toArray(new int[0][]);
+    }
+
+    /*********************************************************************************
+     * buildLinesThroughCell
+     *********************************************************************************
+     * Lists, for every cell, the indices of the lines passing through it.
+     ********************************************************************************/
+    static int[][] buildLinesThroughCell(int size, int[][] lines) {
+        int[] counts = new int[size*size];
+        for (int[] cellsOfLine : lines)
+            for (int cell : cellsOfLine)
+                counts[cell]++;
+        int[][] result = new int[size*size][];
+        for (int i = 0; i < result.length; i++)
+            result[i] = new int[counts[i]];
+        for (int l = 0; l < lines.length; l++)
+            for (int cell : lines[l])
+                result[cell][--counts[cell]] = l;
+        return result;
+    }
+
+    //================================================================================
+    // Getter/Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setLimits
+     *********************************************************************************
+     * Sets the maximum number of attacker moves in a forcing sequence and the
+     * maximum number of nodes a single search may visit.
+     *
+     * @param maxDepth - The maximum number of attacker moves.
+     * @param nodeLimit - The maximum number of nodes.
+     ********************************************************************************/
+    public void setLimits(int maxDepth, int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+        //Reapplying the same depth (as every AI.reuse does) keeps the buffers.
+        if (this.candidates != null && this.maxDepth == maxDepth)
+            return;
+        this.maxDepth = maxDepth;
+        this.candidates = new int[maxDepth+1][this.size*this.size];
+        this.sequence = new int[2*maxDepth+2];
+        this.line = new int[2*maxDepth+2];
+    }
+
+    /*********************************************************************************
+     * setDeadline
+     *********************************************************************************
+     * Sets the System.nanoTime() value at which searches give up, as if they had
+     * run out of nodes. Long.MAX_VALUE removes the deadline.
+     *
+     * @param deadline - The deadline in System.nanoTime() units.
+     ********************************************************************************/
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /*********************************************************************************
+     * getSequence
+     *********************************************************************************
+     * Returns the forcing sequence found by the last search, attacker and defender
+     * moves alternating, ending with the winning cell.
+     * @return sequence - Cell indices (row*size+col) of the sequence.
+     ********************************************************************************/
+    public int[] getSequence() {
+        return Arrays.copyOf(this.sequence, this.sequenceLength);
+    }
+
+    /*********************************************************************************
+     * getSequenceLength
+     *********************************************************************************
+     * Returns the number of moves in the forcing sequence found by the last search.
+     * @return sequenceLength - The number of moves, including the winning move.
+     ********************************************************************************/
+    public int getSequenceLength() {
+        return this.sequenceLength;
+    }
+
+    /*********************************************************************************
+     * getDepthReached
+     *********************************************************************************
+     * Returns the deepest depth limit (in attacker moves) tried by the last search.
+     * @return depthReached - The deepest depth limit.
+     ********************************************************************************/
+    public int getDepthReached() {
+        return this.depthReached;
+    }
+
+    /*********************************************************************************
+     * getNodes
+     *********************************************************************************
+     * Returns the number of attacker moves tried by the last search.
+     * @return nodes - The number of nodes searched.
+     ********************************************************************************/
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    /*********************************************************************************
+     * wasAborted
+     *********************************************************************************
+     * Returns whether or not the last search ran into the node limit or deadline.
+     * @return aborted - Whether or not the node limit or deadline was reached.
+     ********************************************************************************/
+    public boolean wasAborted() {
+        return this.aborted;
+    }
+}
@@ -0,0 +1,113 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.Cell;
+
+public class TimeManager {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Share of the move time given to a quiet position in the opening or endgame,
+    //and the most that board fill and volatility can each add to it.
+    private static final double BASE_SHARE = 0.3;
+    private static final double FILL_SHARE = 0.4;
+    private static final double VOLATILITY_SHARE = 0.3;
+    //The rest of the move time is left for the cheap strategies, the clock checks
+    //that land just past a deadline, and the board copies around the searches.
+    private static final double MAX_SHARE = 0.9;
+    //Time always left over, up to half the move time. A short move time needs
+    //more than its share: on a busy core the thread can lose a scheduler slice
+    //(4 ms at 250 Hz) near the deadline, and the steps after the searches still
+    //have to run once it is back.
+    private static final long RESERVE_NANOS = 2000000;
+    //Number of live windows at which a position counts as fully volatile.
+    private static final int VOLATILE_WINDOWS = 4;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int connections;
+    //Every row, column, diagonal, and anti diagonal long enough to hold a win.
+    private int[][] lines;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * TimeManager - Constructor
+     *********************************************************************************
+     * Prepares a time manager for boards of the given size and connections.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public TimeManager(int size, int connections) {
+        this.connections = connections;
+        this.lines = ThreatSearch.buildLines(size, connections);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * allocate
+     *********************************************************************************
+     * Decides how much of the move time to spend on a position. Quiet positions in
+     * the opening (little to search) and near the end (few empty cells) get the
+     * base share. The share grows towards the middle of the game, and with the
+     * number of windows one move or two away from a win. The result never exceeds
+     * 90% of the move time, nor the move time less a fixed reserve of 2 ms (at
+     * most half the move time), which keeps the whole move within the move time.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param moveTimeNanos - The most time the move may take.
+     * @return allocation - The time to spend on this move, in nanoseconds.
+     ********************************************************************************/
+    public long allocate(byte[] board, long moveTimeNanos) {
+        int filled = 0;
+        for (byte cell : board)
+            if (cell != Cell.EMPTY_CODE)
+                filled++;
+        double fill = (double) filled/board.length;
+        //1 at a half full board, 0 at an empty or full one.
+        double phase = 4*fill*(1-fill);
+        double volatility = Math.min(1.0, (double) countLiveWindows(board)/VOLATILE_WINDOWS);
+        double share = BASE_SHARE+FILL_SHARE*phase+VOLATILITY_SHARE*volatility;
+        long reserve = Math.min(RESERVE_NANOS, moveTimeNanos/2);
+        return Math.min((long) (moveTimeNanos*Math.min(MAX_SHARE, share)), moveTimeNanos-reserve);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * countLiveWindows
+     *********************************************************************************
+     * Counts the windows of connections cells that hold only one player's cells and
+     * at most two empty cells (at least two of that player's cells on small boards).
+     ********************************************************************************/
+    private int countLiveWindows(byte[] board) {
+        int needed = Math.max(2, this.connections-2);
+        int live = 0;
+        for (int[] line : this.lines) {
+            int xs = 0;
+            int os = 0;
+            for (int i = 0; i < line.length; i++) {
+                byte added = board[line[i]];
+                if (added == Cell.X_CODE)
+                    xs++;
+                else if (added == Cell.O_CODE)
+                    os++;
+                if (i >= this.connections) {
+                    byte removed = board[line[i-this.connections]];
+                    if (removed == Cell.X_CODE)
+                        xs--;
+                    else if (removed == Cell.O_CODE)
+                        os--;
+                }
+                if (i >= this.connections-1 && (xs == 0) != (os == 0) && xs+os >= needed)
+                    live++;
+            }
+        }
+        return live;
+    }
+}
@@ -0,0 +1,345 @@
+package SuperTicTacToe.AI;
+
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.UltimateTicTacToeGame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class UltimateSearch extends IterativeSearch {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Depth searched when there is no deadline to stop the iterations.
+    public static final int DEFAULT_MAX_DEPTH = 6;
+
+    private static final int TABLE_BITS = 16;
+    private static final int FULL = 0x1FF;
+    private static final int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+
+    //Evaluation, in hundredths: a line holding one or two of a player's cells and
+    //none of the opponent's, per sub-board and on the macro board. Sub-boards
+    //count for the number of macro lines through them.
+    private static final int[] LINE_VALUE = {0, 1, 6};
+    private static final int[] MACRO_LINE_VALUE = {0, 25, 120};
+    private static final int[] MACRO_WEIGHT = {3, 2, 3, 2, 4, 2, 3, 2, 3};
+    private static final int FREE_MOVE_VALUE = 8;
+
+    //Indexed by own bits | opponent bits << 9 of a 3x3 board: the empty cells that
+    //would complete a line for the first player, and the board's line score for
+    //the first player.
+    private static final short[] THREATS = new short[1 << 18];
+    private static final byte[] SUB_SCORE = new byte[1 << 18];
+
+    static {
+        for (int index = 0; index < THREATS.length; index++) {
+            int own = index & FULL;
+            int other = index >>> 9;
+            if ((own & other) != 0)
+                continue;
+            int threats = 0;
+            int score = 0;
+            for (int line : LINES) {
+                int mine = Integer.bitCount(own & line);
+                int theirs = Integer.bitCount(other & line);
+                if (mine == 2 && theirs == 0)
+                    threats |= line & ~own;
+                if (theirs == 0 && mine < 3)
+                    score += LINE_VALUE[mine];
+                if (mine == 0 && theirs < 3)
+                    score -= LINE_VALUE[theirs];
+            }
+            THREATS[index] = (short) threats;
+            SUB_SCORE[index] = (byte) score;
+        }
+    }
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private UltimateTicTacToeGame game;
+    //Random key of each player on each cell, and of each active board (plus any).
+    private long[][] zobrist;
+    private long[] activeKeys;
+    //Best move found in each position, by hash, kept across root moves and depths.
+    private long[] tableKeys;
+    private int[] tableMoves;
+    //Hash of the position being analyzed.
+    private long rootHash;
+
+    //Principal variation of each ply (triangular table) and scratch move lists.
+    private int[][] pv;
+    private int[] pvLength;
+    private int[][] candidates;
+    private int[][] orderKeys;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * UltimateSearch - Constructor
+     *********************************************************************************
+     * Prepares an alpha-beta search for Ultimate Tic Tac Toe that ranks several
+     * moves at once, with the same interface as MultiPvSearch.
+     ********************************************************************************/
+    public UltimateSearch() {
+        super(UltimateTicTacToeGame.SIZE, DEFAULT_MAX_DEPTH);
+        int cells = UltimateTicTacToeGame.CELL_COUNT;
+        Random random = new Random(0x5EED);
+        this.zobrist = new long[2][cells];
+        for (int cell = 0; cell < cells; cell++) {
+            this.zobrist[0][cell] = random.nextLong();
+            this.zobrist[1][cell] = random.nextLong();
+        }
+        this.activeKeys = new long[10];
+        for (int i = 0; i < this.activeKeys.length; i++)
+            this.activeKeys[i] = random.nextLong();
+        this.tableKeys = new long[1 << TABLE_BITS];
+        this.tableMoves = new int[1 << TABLE_BITS];
+        this.pv = new int[cells+1][cells+1];
+        this.pvLength = new int[cells+1];
+        this.candidates = new int[cells+1][cells];
+        this.orderKeys = new int[cells+1][cells];
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * analyze
+     *********************************************************************************
+     * Ranks the current player's best moves by iterative deepening (see
+     * IterativeSearch.iterate), as MultiPvSearch.analyze does for the plain game.
+     * The search plays on a fork, so the game passed in is left untouched.
+     *
+     * @param game - The position to analyze.
+     * @param count - The number of moves to rank.
+     * @param listener - Receives the results of each depth, or null.
+     * @return lines - Up to count moves, best first, as rows and columns of the
+     *                 full 9x9 board.
+     ********************************************************************************/
+    public List<MoveAnalysis> analyze(UltimateTicTacToeGame game, int count, AnalysisListener listener) {
+        this.game = game.fork();
+        long hash = 0;
+        for (int ply = 0; ply < game.getPly(); ply++) {
+            int cell = game.getMove(ply);
+            hash ^= this.zobrist[game.getCell(cell)-1][cell];
+        }
+        this.rootHash = hash;
+        return iterate(count, listener);
+    }
+
+    //================================================================================
+    // Position Methods
+    //================================================================================
+    /*********************************************************************************
+     * rootMoves
+     *********************************************************************************
+     * Lists the legal moves of the position being analyzed.
+     *
+     * @return moves - The root moves, as cell indices.
+     ********************************************************************************/
+    @Override
+    protected int[] rootMoves() {
+        return Arrays.copyOf(this.candidates[0], this.game.legalMoves(this.candidates[0]));
+    }
+
+    /*********************************************************************************
+     * emptyCells
+     *********************************************************************************
+     * Counts the empty cells of the position being analyzed.
+     *
+     * @return empty - The number of empty cells.
+     ********************************************************************************/
+    @Override
+    protected int emptyCells() {
+        return UltimateTicTacToeGame.CELL_COUNT-this.game.getPly();
+    }
+
+    /*********************************************************************************
+     * searchRoot
+     *********************************************************************************
+     * Searches root moves of the position being analyzed one after another to a
+     * fixed depth (see IterativeSearch.searchRoot).
+     *
+     * @return completed - The number of moves searched before stopping.
+     ********************************************************************************/
+    @Override
+    protected int searchRoot(int[] moves, int depth, int count, double[] scores, boolean[] exact, int[][] lines) {
+        int player = this.game.getCurrentPlayer() == 'x' ? 0 : 1;
+        for (int i = 0; i < moves.length; i++) {
+            int cell = moves[i];
+            double alpha = i < count ? Double.NEGATIVE_INFINITY : kthBest(scores, i, count);
+            this.game.play(cell);
+            double score;
+            this.pvLength[1] = 1;
+            if (this.game.getGameStatus() != GameStatus.IN_PROGRESS)
+                score = terminalScore(0);
+            else
+                score = -negamax(depth-1, 1, Double.NEGATIVE_INFINITY, -alpha,
+                        this.rootHash^this.zobrist[player][cell]);
+            this.game.undo();
+            if (isAborted())
+                return i;
+            scores[i] = score;
+            exact[i] = score > alpha;
+            lines[i] = new int[this.pvLength[1]];
+            lines[i][0] = cell;
+            System.arraycopy(this.pv[1], 1, lines[i], 1, this.pvLength[1]-1);
+        }
+        return moves.length;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * negamax
+     *********************************************************************************
+     * Alpha-beta search to a fixed depth, scored for the player to move, on a game
+     * that is still in progress. The principal variation is left in pv[ply].
+     *
+     * @return score - The score for the mover, or 0 if the search was aborted.
+     ********************************************************************************/
+    private double negamax(int depth, int ply, double alpha, double beta, long hash) {
+        this.pvLength[ply] = ply;
+        if (countNode())
+            return 0;
+        if (depth == 0)
+            return evaluate();
+
+        long key = hash^this.activeKeys[this.game.getActiveBoard()+1];
+        int count = this.game.legalMoves(this.candidates[ply]);
+        orderMoves(ply, count, key);
+        int player = this.game.getCurrentPlayer() == 'x' ? 0 : 1;
+        int[] moves = this.candidates[ply];
+
+        double best = Double.NEGATIVE_INFINITY;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            this.game.play(cell);
+            double score;
+            if (this.game.getGameStatus() != GameStatus.IN_PROGRESS) {
+                score = terminalScore(ply);
+                this.pvLength[ply+1] = ply+1;
+            } else {
+                score = -negamax(depth-1, ply+1, -beta, -alpha, hash^this.zobrist[player][cell]);
+            }
+            this.game.undo();
+            if (isAborted())
+                return 0;
+            if (score > best) {
+                best = score;
+                bestMove = cell;
+                if (score > alpha) {
+                    alpha = score;
+                    this.pv[ply][ply] = cell;
+                    System.arraycopy(this.pv[ply+1], ply+1, this.pv[ply], ply+1, this.pvLength[ply+1]-ply-1);
+                    this.pvLength[ply] = this.pvLength[ply+1];
+                }
+            }
+            if (alpha >= beta)
+                break;
+        }
+        int slot = (int) (key & ((1 << TABLE_BITS)-1));
+        this.tableKeys[slot] = key;
+        this.tableMoves[slot] = bestMove;
+        return best;
+    }
+
+    /*********************************************************************************
+     * terminalScore
+     *********************************************************************************
+     * Scores a finished game for the player who made the last move at the given
+     * ply: a win, sooner being better, or a draw.
+     ********************************************************************************/
+    private double terminalScore(int ply) {
+        return this.game.getGameStatus() == GameStatus.CATS ? 0 : WIN_SCORE-ply-1;
+    }
+
+    /*********************************************************************************
+     * orderMoves
+     *********************************************************************************
+     * Sorts the moves of a ply: the table move first, then moves that win a
+     * sub-board, then moves that block one, and last the moves that send the
+     * opponent to a board they can win or let them play anywhere. Insertion sort,
+     * as the lists are short.
+     ********************************************************************************/
+    private void orderMoves(int ply, int count, long key) {
+        int[] moves = this.candidates[ply];
+        int[] keys = this.orderKeys[ply];
+        int slot = (int) (key & ((1 << TABLE_BITS)-1));
+        int tableMove = this.tableKeys[slot] == key ? this.tableMoves[slot] : -1;
+        boolean x = this.game.getCurrentPlayer() == 'x';
+        int closed = this.game.getClosed();
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int sortKey;
+            if (move == tableMove) {
+                sortKey = Integer.MIN_VALUE;
+            } else {
+                int board = UltimateTicTacToeGame.boardOf(move);
+                int bit = 1 << UltimateTicTacToeGame.bitOf(move);
+                int target = UltimateTicTacToeGame.bitOf(move);
+                int own = x ? this.game.getXBits(board) : this.game.getOBits(board);
+                int other = x ? this.game.getOBits(board) : this.game.getXBits(board);
+                sortKey = 0;
+                if ((THREATS[own | other << 9] & bit) != 0)
+                    sortKey -= 8;
+                else if ((THREATS[other | own << 9] & bit) != 0)
+                    sortKey -= 4;
+                if ((closed & (1 << target)) != 0) {
+                    sortKey += 6;
+                } else {
+                    int targetOwn = x ? this.game.getXBits(target) : this.game.getOBits(target);
+                    int targetOther = x ? this.game.getOBits(target) : this.game.getXBits(target);
+                    if (target == board)
+                        targetOwn |= bit;
+                    if (THREATS[targetOther | targetOwn << 9] != 0)
+                        sortKey += 3;
+                }
+            }
+            int j = i;
+            while (j > 0 && keys[j-1] > sortKey) {
+                keys[j] = keys[j-1];
+                moves[j] = moves[j-1];
+                j--;
+            }
+            keys[j] = sortKey;
+            moves[j] = move;
+        }
+    }
+
+    /*********************************************************************************
+     * evaluate
+     *********************************************************************************
+     * Scores the position for the player to move: the open sub-boards' line scores
+     * weighted by the macro lines through them, the macro lines each player can
+     * still complete, and a bonus for being free to play anywhere.
+     ********************************************************************************/
+    private double evaluate() {
+        int macroX = this.game.getMacroX();
+        int macroO = this.game.getMacroO();
+        int closed = this.game.getClosed();
+        int score = 0;
+        for (int open = ~closed & FULL; open != 0; open &= open-1) {
+            int board = Integer.numberOfTrailingZeros(open);
+            score += SUB_SCORE[this.game.getXBits(board) | this.game.getOBits(board) << 9]*MACRO_WEIGHT[board];
+        }
+        int blocksX = macroO | (closed & ~macroX);
+        int blocksO = macroX | (closed & ~macroO);
+        for (int line : LINES) {
+            if ((line & blocksX) == 0)
+                score += MACRO_LINE_VALUE[Integer.bitCount(line & macroX)];
+            if ((line & blocksO) == 0)
+                score -= MACRO_LINE_VALUE[Integer.bitCount(line & macroO)];
+        }
+        if (this.game.getCurrentPlayer() == 'o')
+            score = -score;
+        if (this.game.getActiveBoard() == UltimateTicTacToeGame.ANY_BOARD)
+            score += FREE_MOVE_VALUE;
+        return score/100.0;
+    }
+}
@@ -0,0 +1,302 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIStatus;
+import SuperTicTacToe.AI.Evaluator;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BatchAnalyzer {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int threads;
+    private int batchSize;
+    private AtomicLong positions;
+    private AtomicLong games;
+
+    //Marks the end of the archive for the writer thread.
+    private static final Future<List<String>> END_OF_INPUT = CompletableFuture.completedFuture(null);
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * BatchAnalyzer - Constructor
+     *********************************************************************************
+     * Creates an analyzer that evaluates games on the given number of threads, in
+     * batches of the given number of games.
+     *
+     * @param threads - The number of evaluator threads.
+     * @param batchSize - The number of games handed to a thread at once.
+     ********************************************************************************/
+    public BatchAnalyzer(int threads, int batchSize) {
+        if (threads < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Threads and batch size must be positive.");
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.positions = new AtomicLong();
+        this.games = new AtomicLong();
+    }
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Annotates a game archive. Usage:
+     *     BatchAnalyzer [input|-] [output|-] [--threads n] [--batch n]
+     * Progress and throughput are reported on standard error.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        String input = "-";
+        String output = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batch = 64;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    if (positional++ == 0)
+                        input = args[i];
+                    else
+                        output = args[i];
+                    break;
+            }
+        }
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(threads, batch);
+        long start = System.nanoTime();
+        try (BufferedReader in = new BufferedReader(input.equals("-")
+                     ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                     : new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8), 1 << 16);
+             Writer out = new BufferedWriter(output.equals("-")
+                     ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                     : new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8), 1 << 16)) {
+            analyzer.run(in, out);
+        }
+        double seconds = (System.nanoTime()-start)/1e9;
+        System.err.printf("%d games, %d positions in %.2fs (%.0f positions/sec, %d threads)%n",
+                analyzer.getGames(), analyzer.getPositions(), seconds,
+                analyzer.getPositions()/seconds, threads);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Streams the archive through the evaluator pool and writes one annotated line
+     * per input line, in input order. Only a bounded number of batches are in flight
+     * at once: when the writer falls behind, the reader blocks, so memory use does
+     * not depend on the size of the archive.
+     *
+     * @param in - The game archive, one game per line.
+     * @param out - Where the annotated games are written.
+     ********************************************************************************/
+    public void run(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        BlockingQueue<Future<List<String>>> inFlight = new ArrayBlockingQueue<>(this.threads*2);
+        WriterTask writer = new WriterTask(inFlight, out);
+        Thread writerThread = new Thread(writer, "BatchAnalyzer-writer");
+        writerThread.start();
+
+        try {
+            List<String> batch = new ArrayList<>(this.batchSize);
+            String line;
+            while ((line = in.readLine()) != null && writer.error == null) {
+                batch.add(line);
+                if (batch.size() >= this.batchSize) {
+                    submit(pool, inFlight, batch);
+                    batch = new ArrayList<>(this.batchSize);
+                }
+            }
+            if (!batch.isEmpty())
+                submit(pool, inFlight, batch);
+            inFlight.put(END_OF_INPUT);
+            writerThread.join();
+        } finally {
+            pool.shutdownNow();
+            //Stops the writer if reading failed before END_OF_INPUT was queued.
+            writerThread.interrupt();
+        }
+        if (writer.error != null)
+            throw writer.error;
+    }
+
+    /*********************************************************************************
+     * annotate
+     *********************************************************************************
+     * Replays a single archive line and annotates every move with the AI's choice
+     * for that position. Each annotation reads "STRATEGY:row,col:score", where the
+     * strategy is the AIStatus behind the AI's move and the score is the
+     * Evaluator's score of the position for the player to move. It ends in "!"
+     * when the played move was a blunder: the AI had a winning move and it was not
+     * played, or the AI had to block and the opponent could win immediately
+     * afterwards.
+     * Lines that cannot be replayed are returned as a "#" comment.
+     *
+     * @param line - The archive line.
+     * @return annotated - The archive line followed by " |" and the annotations.
+     ********************************************************************************/
+    public String annotate(String line) {
+        if (line.trim().isEmpty() || line.startsWith("#"))
+            return line;
+        try {
+            GameRecord record = GameRecord.parse(line);
+            SuperTicTacToeGame game = record.newGame();
+            AI xAI = new AI(game, Cell.X);
+            AI oAI = new AI(game, Cell.O);
+            xAI.setVerbose(false);
+            oAI.setVerbose(false);
+            Evaluator evaluator = new Evaluator(record.getSize(), record.getConnections());
+
+            StringBuilder sb = new StringBuilder(line.length()*3);
+            sb.append(record).append(" |");
+            AIStatus previousStrategy = null;
+            boolean previousMatched = true;
+            int previousLength = 0;
+            for (int ply = 0; ply < record.getMoveCount(); ply++) {
+                if (game.getGameStatus() != GameStatus.IN_PROGRESS)
+                    throw new IllegalArgumentException("Move "+(ply+1)+" was played after the game ended.");
+                AI ai = game.getCurrentPlayer() == 'x' ? xAI : oAI;
+                byte mover = game.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+                double score = evaluator.evaluate(mover);
+                Point choice = ai.think(game.getBoard());
+                AIStatus strategy = ai.getLastStrategy();
+
+                //A missed block only shows once the opponent can finish the line.
+                if (previousStrategy == AIStatus.BLOCKING && !previousMatched && strategy == AIStatus.ENDGAME)
+                    sb.insert(previousLength, '!');
+
+                int move = record.getMove(ply);
+                int row = move/record.getSize();
+                int col = move%record.getSize();
+                game.select(row, col);
+                evaluator.set(move, mover);
+                this.positions.incrementAndGet();
+
+                boolean matched = choice.x == row && choice.y == col;
+                sb.append(' ').append(strategy).append(':').append(choice.x).append(',').append(choice.y)
+                        .append(':').append(String.format(Locale.ROOT, "%+.2f", score));
+                if (strategy == AIStatus.ENDGAME && game.getGameStatus() == GameStatus.IN_PROGRESS)
+                    sb.append('!');
+                previousStrategy = strategy;
+                previousMatched = matched;
+                previousLength = sb.length();
+            }
+            this.games.incrementAndGet();
+            return sb.toString();
+        } catch (RuntimeException ex) {
+            return "# "+ex.getMessage()+": "+line;
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * submit
+     *********************************************************************************
+     * Hands a batch to the pool and queues its result for the writer. Blocks while
+     * the in-flight queue is full.
+     ********************************************************************************/
+    private void submit(ExecutorService pool, BlockingQueue<Future<List<String>>> inFlight,
+                        List<String> batch) throws InterruptedException {
+        inFlight.put(pool.submit(() -> {
+            List<String> annotated = new ArrayList<>(batch.size());
+            for (String line : batch)
+                annotated.add(annotate(line));
+            return annotated;
+        }));
+    }
+
+    //================================================================================
+    // Writer Task
+    //================================================================================
+    /*********************************************************************************
+     * WriterTask
+     *********************************************************************************
+     * Waits on each batch in submission order and writes it out, which keeps the
+     * output in input order regardless of which thread finished first.
+     ********************************************************************************/
+    private static class WriterTask implements Runnable {
+        private BlockingQueue<Future<List<String>>> inFlight;
+        private Writer out;
+        private volatile IOException error;
+
+        WriterTask(BlockingQueue<Future<List<String>>> inFlight, Writer out) {
+            this.inFlight = inFlight;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Future<List<String>> next;
+                //Keeps draining after a failure so the reader never blocks on a full queue.
+                while ((next = this.inFlight.take()) != END_OF_INPUT) {
+                    if (this.error != null)
+                        continue;
+                    try {
+                        for (String line : next.get()) {
+                            this.out.write(line);
+                            this.out.write('\n');
+                        }
+                    } catch (IOException ex) {
+                        this.error = ex;
+                    } catch (ExecutionException ex) {
+                        this.error = new IOException("Analysis failed.", ex.getCause());
+                    }
+                }
+                if (this.error == null)
+                    this.out.flush();
+            } catch (IOException ex) {
+                this.error = ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getPositions
+     *********************************************************************************
+     * Returns the number of positions evaluated so far.
+     * @return positions - The number of positions evaluated.
+     ********************************************************************************/
+    public long getPositions() {
+        return this.positions.get();
+    }
+
+    /*********************************************************************************
+     * getGames
+     *********************************************************************************
+     * Returns the number of games fully annotated so far.
+     * @return games - The number of games annotated.
+     ********************************************************************************/
+    public long getGames() {
+        return this.games.get();
+    }
+}
@@ -0,0 +1,153 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.MoveAnalysis;
+import SuperTicTacToe.AI.MultiPvSearch;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.Distributed.SearchCoordinator;
+import SuperTicTacToe.Distributed.SearchWorker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class DistributedBenchmark {
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Compares an in-process analysis with one split across worker processes on
+     * this machine. Usage:
+     *     DistributedBenchmark [--workers n] [--size n] [--connections k]
+     *                          [--depth d] [--count n] [--opening plies] [--seed s]
+     * The workers are started as child JVMs with the same class path and stopped
+     * at the end. Both analyses search the same random position to the same depth
+     * without a deadline, after a warm-up run each; the times, nodes and speedup
+     * are printed, along with both best moves.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        int workers = Runtime.getRuntime().availableProcessors();
+        int size = 14;
+        int connections = 5;
+        int depth = 4;
+        int count = 3;
+        int openingPlies = 12;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--count":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--opening":
+                    openingPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        byte[] board = randomPosition(size, openingPlies, new Random(seed));
+        byte mover = openingPlies%2 == 0 ? Cell.X_CODE : Cell.O_CODE;
+        System.out.printf("%dx%d k=%d, %d opening plies, depth %d, %d workers, %d CPUs%n",
+                size, size, connections, openingPlies, depth, workers, Runtime.getRuntime().availableProcessors());
+
+        MultiPvSearch search = new MultiPvSearch(size, connections);
+        search.setMaxDepth(depth);
+        search.analyze(board, mover, count, null);
+        long start = System.nanoTime();
+        List<MoveAnalysis> local = search.analyze(board, mover, count, null);
+        long localNanos = System.nanoTime()-start;
+        long localNodes = search.getNodes();
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            List<InetSocketAddress> addresses = new ArrayList<>();
+            for (int w = 0; w < workers; w++)
+                addresses.add(startWorker(processes));
+            try (SearchCoordinator coordinator = new SearchCoordinator(addresses)) {
+                coordinator.analyze(board, mover, connections, count, depth, Long.MAX_VALUE, null);
+                start = System.nanoTime();
+                List<MoveAnalysis> distributed = coordinator.analyze(board, mover, connections, count, depth,
+                        Long.MAX_VALUE, null);
+                long distributedNanos = System.nanoTime()-start;
+
+                System.out.printf("%-12s %10.1f ms %12d nodes  best %s%n", "in process",
+                        localNanos/1e6, localNodes, local.isEmpty() ? "-" : local.get(0));
+                System.out.printf("%-12s %10.1f ms %12d nodes  best %s%n", "distributed",
+                        distributedNanos/1e6, coordinator.getNodes(), distributed.isEmpty() ? "-" : distributed.get(0));
+                System.out.printf("Speedup %.2fx%n", (double) localNanos/distributedNanos);
+            }
+        } finally {
+            for (Process process : processes)
+                process.destroy();
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * startWorker
+     *********************************************************************************
+     * Starts a SearchWorker JVM on a free port and waits for it to listen.
+     *
+     * @return address - The worker's address.
+     ********************************************************************************/
+    private static InetSocketAddress startWorker(List<Process> processes) throws IOException {
+        String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SearchWorker.class.getName(), "--port", "0")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        processes.add(process);
+        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line = out.readLine();
+        if (line == null || !line.startsWith("SearchWorker listening on "))
+            throw new IOException("The search worker did not start: "+line);
+        int port = Integer.parseInt(line.substring(line.lastIndexOf(' ')+1));
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    /*********************************************************************************
+     * randomPosition
+     *********************************************************************************
+     * Plays random moves near the center, alternating X and O, with no check for
+     * wins, so the position is mid-game but rarely decided.
+     ********************************************************************************/
+    private static byte[] randomPosition(int size, int plies, Random random) {
+        byte[] board = new byte[size*size];
+        int low = size/4;
+        int span = Math.max(1, size-2*low);
+        for (int ply = 0; ply < plies && ply < span*span; ply++) {
+            int cell;
+            do {
+                cell = (low+random.nextInt(span))*size+low+random.nextInt(span);
+            } while (board[cell] != Cell.EMPTY_CODE);
+            board[cell] = ply%2 == 0 ? Cell.X_CODE : Cell.O_CODE;
+        }
+        return board;
+    }
+}
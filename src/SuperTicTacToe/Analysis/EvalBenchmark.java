@@ -0,0 +1,131 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.Evaluator;
+import SuperTicTacToe.AI.PositionBatch;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class EvalBenchmark {
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Compares evaluation throughput one position at a time with batched
+     * evaluation. Usage:
+     *     EvalBenchmark [size] [connections] [positions] [batch size] [rounds]
+     * Positions are taken from random games. Three paths are timed over the same
+     * positions: reading each game's Cell[][] board into bytes and evaluating it,
+     * evaluating prepared byte boards one at a time, and packing the byte boards
+     * into PositionBatches and evaluating each batch at once. Every path's best
+     * round is printed in positions/sec.
+     ********************************************************************************/
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        List<Cell[][]> boards = new ArrayList<>(count);
+        byte[][] flat = new byte[count][];
+        byte[] movers = new byte[count];
+        randomPositions(size, connections, count, new Random(1), boards, flat, movers);
+
+        Evaluator evaluator = new Evaluator(size, connections);
+        PositionBatch batch = new PositionBatch(size, batchSize);
+        double[] batchScores = new double[batchSize];
+        double[] scores = new double[count];
+        double[] check = new double[count];
+        byte[] scratch = new byte[size*size];
+        long bestBoards = Long.MAX_VALUE;
+        long bestSingle = Long.MAX_VALUE;
+        long bestBatch = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                Cell[][] board = boards.get(i);
+                for (int row = 0; row < size; row++)
+                    for (int col = 0; col < size; col++)
+                        scratch[row*size+col] = board[row][col].toByte();
+                scores[i] = evaluator.evaluate(scratch, movers[i]);
+            }
+            bestBoards = Math.min(bestBoards, System.nanoTime()-start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++)
+                scores[i] = evaluator.evaluate(flat[i], movers[i]);
+            bestSingle = Math.min(bestSingle, System.nanoTime()-start);
+
+            start = System.nanoTime();
+            for (int from = 0; from < count; from += batchSize) {
+                batch.clear();
+                int to = Math.min(count, from+batchSize);
+                for (int i = from; i < to; i++)
+                    batch.add(flat[i], movers[i]);
+                evaluator.evaluateBatch(batch, batchScores);
+                System.arraycopy(batchScores, 0, check, from, to-from);
+            }
+            bestBatch = Math.min(bestBatch, System.nanoTime()-start);
+        }
+
+        for (int i = 0; i < count; i++)
+            if (Math.abs(scores[i]-check[i]) > 1e-9)
+                throw new IllegalStateException("Batched score of position "+i+" differs: "+check[i]+" vs "+scores[i]+".");
+        System.out.printf("%dx%d k=%d, %d positions, batches of %d, best of %d rounds%n",
+                size, size, connections, count, batchSize, rounds);
+        report("Cell[][] one at a time", count, bestBoards);
+        report("byte[] one at a time", count, bestSingle);
+        report("batched", count, bestBatch);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * randomPositions
+     *********************************************************************************
+     * Plays random games and collects every position reached while one is in
+     * progress, until count positions have been collected.
+     ********************************************************************************/
+    private static void randomPositions(int size, int connections, int count, Random random,
+                                        List<Cell[][]> boards, byte[][] flat, byte[] movers) {
+        int collected = 0;
+        while (collected < count) {
+            SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, 'x');
+            while (collected < count && game.getGameStatus() == GameStatus.IN_PROGRESS) {
+                Cell[][] board = game.getBoard();
+                Cell[][] copy = new Cell[size][];
+                for (int row = 0; row < size; row++)
+                    copy[row] = board[row].clone();
+                boards.add(copy);
+                flat[collected] = new byte[size*size];
+                for (int cell = 0; cell < size*size; cell++)
+                    flat[collected][cell] = game.getCell(cell);
+                movers[collected] = game.getCurrentPlayer() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+                collected++;
+
+                int cell;
+                do {
+                    cell = random.nextInt(size*size);
+                } while (game.getCell(cell) != Cell.EMPTY_CODE);
+                game.select(cell/size, cell%size);
+            }
+        }
+    }
+
+    /*********************************************************************************
+     * report
+     *********************************************************************************
+     * Prints one path's throughput.
+     ********************************************************************************/
+    private static void report(String path, int count, long nanos) {
+        System.out.printf("%-24s %10.1f ms %14.0f positions/sec%n", path, nanos/1e6, count/(nanos/1e9));
+    }
+}
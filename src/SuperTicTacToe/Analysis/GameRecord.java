@@ -0,0 +1,166 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.SuperTicTacToeGame;
+
+public class GameRecord {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int connections;
+    private char starter;
+    //Cell indices (row*size+col) of every move, in order.
+    private int[] moves;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * GameRecord - Constructor
+     *********************************************************************************
+     * Creates a record of a played game.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param starter - The starting player ('x'/'o').
+     * @param moves - The cell indices of every move, in order.
+     ********************************************************************************/
+    public GameRecord(int size, int connections, char starter, int[] moves) {
+        this.size = size;
+        this.connections = connections;
+        this.starter = starter;
+        this.moves = moves;
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * parse
+     *********************************************************************************
+     * Parses a single line of a game archive. A line holds the board size, the
+     * connections to win, the starting player, then every move as "row,col":
+     *     7 4 x 3,3 3,4 2,2 ...
+     *
+     * @param line - The archive line.
+     * @return record - The parsed game record.
+     ********************************************************************************/
+    public static GameRecord parse(String line) throws IllegalArgumentException {
+        String[] data = line.trim().split("\\s+");
+        if (data.length < 3)
+            throw new IllegalArgumentException("Expected \"size connections starter moves...\": "+line);
+        try {
+            int size = Integer.parseInt(data[0]);
+            int connections = Integer.parseInt(data[1]);
+            char starter = Character.toLowerCase(data[2].charAt(0));
+            if (starter != 'x' && starter != 'o')
+                throw new IllegalArgumentException("Unknown starting player \""+data[2]+"\".");
+
+            int[] moves = new int[data.length-3];
+            for (int i = 0; i < moves.length; i++) {
+                String[] pos = data[i+3].split(",");
+                int row = Integer.parseInt(pos[0]);
+                int col = Integer.parseInt(pos[1]);
+                if (row < 0 || col < 0 || row >= size || col >= size)
+                    throw new IllegalArgumentException("Move \""+data[i+3]+"\" is off the board.");
+                moves[i] = row*size+col;
+            }
+            return new GameRecord(size, connections, starter, moves);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Malformed game record: "+line, ex);
+        }
+    }
+
+    /*********************************************************************************
+     * of
+     *********************************************************************************
+     * Records the moves currently on the board of a game.
+     *
+     * @param game - The game to record.
+     * @return record - The game record.
+     ********************************************************************************/
+    public static GameRecord of(SuperTicTacToeGame game) {
+        int[] moves = new int[game.getPly()];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = game.getMove(i);
+        return new GameRecord(game.getSize(), game.getConnections(), game.getStarter(), moves);
+    }
+
+    /*********************************************************************************
+     * newGame
+     *********************************************************************************
+     * Creates an empty game with this record's size, connections, and starter.
+     *
+     * @return game - A new game, ready to replay the record's moves.
+     ********************************************************************************/
+    public SuperTicTacToeGame newGame() {
+        return new SuperTicTacToeGame(this.size, this.connections, this.starter);
+    }
+
+    /*********************************************************************************
+     * toString
+     *********************************************************************************
+     * Formats the record in the archive line format understood by parse.
+     ********************************************************************************/
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.size).append(' ').append(this.connections).append(' ').append(this.starter);
+        for (int move : this.moves)
+            sb.append(' ').append(move/this.size).append(',').append(move%this.size);
+        return sb.toString();
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getSize
+     *********************************************************************************
+     * Returns the width (and height) of the board.
+     * @return size - The size of the game board.
+     ********************************************************************************/
+    public int getSize() {
+        return this.size;
+    }
+
+    /*********************************************************************************
+     * getConnections
+     *********************************************************************************
+     * Returns the connections to win.
+     * @return connections - The connections to win the game.
+     ********************************************************************************/
+    public int getConnections() {
+        return this.connections;
+    }
+
+    /*********************************************************************************
+     * getStarter
+     *********************************************************************************
+     * Returns the player that started the game.
+     * @return starter - The starting player ('x'/'o').
+     ********************************************************************************/
+    public char getStarter() {
+        return this.starter;
+    }
+
+    /*********************************************************************************
+     * getMoveCount
+     *********************************************************************************
+     * Returns the number of moves in the record.
+     * @return moveCount - The number of moves.
+     ********************************************************************************/
+    public int getMoveCount() {
+        return this.moves.length;
+    }
+
+    /*********************************************************************************
+     * getMove
+     *********************************************************************************
+     * Returns the cell index (row*size+col) of the move at the given ply.
+     * @return index - The cell index of the move.
+     ********************************************************************************/
+    public int getMove(int ply) {
+        return this.moves[ply];
+    }
+}
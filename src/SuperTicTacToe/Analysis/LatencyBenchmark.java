@@ -0,0 +1,143 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.Difficulty;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.awt.*;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LatencyBenchmark {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Warm-up rounds (an EASY and a MEDIUM game each) in a row without compiling
+    //that end the warm-up, and the most rounds played.
+    private static final int QUIET_ROUNDS = 5;
+    private static final int MAX_WARMUP_ROUNDS = 100;
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Measures how long the AI takes per move at each difficulty level while
+     * several games run at once. Usage:
+     *     LatencyBenchmark [size] [connections] [threads] [games per thread]
+     * Each thread plays AI-vs-AI games; the latency of every move is recorded and
+     * the percentiles are printed next to the difficulty's move time. Timing
+     * starts once the JIT has stopped compiling (see warmUp): on a single core,
+     * the compiler thread takes whole scheduler slices from the move being timed.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 14;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+
+        System.out.printf("%d warm-up rounds%n", warmUp(size, connections));
+        System.out.printf("%8s %8s %8s %10s %10s %10s %10s%n",
+                "level", "budget", "moves", "p50 ms", "p99 ms", "max ms", "over");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Difficulty difficulty : Difficulty.values()) {
+                List<Future<long[]>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++)
+                    results.add(pool.submit(() -> play(size, connections, difficulty, games)));
+                long[] latencies = new long[0];
+                for (Future<long[]> result : results) {
+                    long[] more = result.get();
+                    int old = latencies.length;
+                    latencies = Arrays.copyOf(latencies, old+more.length);
+                    System.arraycopy(more, 0, latencies, old, more.length);
+                }
+                report(difficulty, latencies);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * warmUp
+     *********************************************************************************
+     * Plays EASY and MEDIUM games until QUIET_ROUNDS rounds of them in a row go
+     * by without the JIT compiling anything, or for MAX_WARMUP_ROUNDS rounds.
+     * (HARD runs the same code with larger budgets.) Without compilation time
+     * monitoring, all rounds are played.
+     *
+     * @return rounds - The number of rounds played.
+     ********************************************************************************/
+    private static int warmUp(int size, int connections) {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean monitored = jit != null && jit.isCompilationTimeMonitoringSupported();
+        int quiet = 0;
+        int round = 0;
+        while (round < MAX_WARMUP_ROUNDS && quiet < QUIET_ROUNDS) {
+            long before = monitored ? jit.getTotalCompilationTime() : -1;
+            play(size, connections, Difficulty.EASY, 1);
+            play(size, connections, Difficulty.MEDIUM, 1);
+            round++;
+            quiet = monitored && jit.getTotalCompilationTime() == before ? quiet+1 : 0;
+        }
+        return round;
+    }
+
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Plays AI-vs-AI games and returns the latency of every move in nanoseconds.
+     ********************************************************************************/
+    private static long[] play(int size, int connections, Difficulty difficulty, int games) {
+        long[] latencies = new long[games*size*size];
+        int count = 0;
+        for (int g = 0; g < games; g++) {
+            SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, 'x');
+            AI xAI = new AI(game, Cell.X);
+            AI oAI = new AI(game, Cell.O);
+            xAI.setVerbose(false);
+            oAI.setVerbose(false);
+            xAI.setDifficulty(difficulty);
+            oAI.setDifficulty(difficulty);
+            while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+                AI ai = game.getCurrentPlayer() == 'x' ? xAI : oAI;
+                Point move = ai.think(game.getBoard());
+                latencies[count++] = ai.getLastThinkNanos();
+                game.select(move.x, move.y);
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /*********************************************************************************
+     * report
+     *********************************************************************************
+     * Prints the latency percentiles and the number of moves over the budget.
+     ********************************************************************************/
+    private static void report(Difficulty difficulty, long[] latencies) {
+        Arrays.sort(latencies);
+        long budget = difficulty.getMoveTimeMillis()*1000000L;
+        int over = 0;
+        for (long latency : latencies)
+            if (latency > budget)
+                over++;
+        System.out.printf("%8s %6dms %8d %10.2f %10.2f %10.2f %10d%n",
+                difficulty, difficulty.getMoveTimeMillis(), latencies.length,
+                latencies[latencies.length/2]/1e6,
+                latencies[(int) (latencies.length*0.99)]/1e6,
+                latencies[latencies.length-1]/1e6, over);
+    }
+}
@@ -0,0 +1,220 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.MoveLog;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class LogBenchmark {
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Measures what a MoveLog costs sustained move throughput, and checks that
+     * recovery rebuilds the live games. Usage:
+     *     LogBenchmark [--size n] [--connections k] [--games n] [--threads n]
+     *                  [--moves n] [--rounds n] [--sync] [--file path]
+     * Each thread plays random moves (with undos) round robin over its share of
+     * the games, without a log and then with one, alternating for the given
+     * number of rounds; the median of each is reported. With --sync every move
+     * waits until it is on disk, as a server acknowledging moves would; the
+     * waiting threads share group commits. Afterwards the log is copied, as if
+     * the process died there, and a new MoveLog recovers the copy.
+     ********************************************************************************/
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int size = 14;
+        int connections = 5;
+        int games = 256;
+        int threads = 4;
+        int moves = 1000000;
+        int rounds = 5;
+        boolean sync = false;
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"), "LogBenchmark.log");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--moves":
+                    moves = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--sync":
+                    sync = true;
+                    break;
+                case "--file":
+                    file = Paths.get(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("%dx%d k=%d, %d games on %d threads, %d moves, %d rounds%s%n", size, size,
+                connections, games, threads, moves, rounds, sync ? ", each waiting for disk" : "");
+        Files.deleteIfExists(file);
+        List<SuperTicTacToeGame> all = new ArrayList<>();
+        for (int g = 0; g < games; g++)
+            all.add(new SuperTicTacToeGame(size, connections, g%2 == 0 ? 'x' : 'o'));
+        //Let the JIT compile both paths before timing.
+        try (MoveLog warmup = new MoveLog(file)) {
+            for (int round = 0; round < 4; round++) {
+                for (SuperTicTacToeGame game : all)
+                    game.setMoveLog(round%2 == 0 ? null : warmup);
+                run(all, threads, moves/8, null, round);
+            }
+            for (SuperTicTacToeGame game : all)
+                game.setMoveLog(null);
+        }
+        Files.deleteIfExists(file);
+
+        //Alternating rounds keeps drift in the machine's speed out of the comparison.
+        MoveLog log = new MoveLog(file);
+        double[] plainRounds = new double[rounds];
+        double[] loggedRounds = new double[rounds];
+        long commits = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (SuperTicTacToeGame game : all)
+                game.setMoveLog(null);
+            plainRounds[round] = run(all, threads, moves, null, 10+2*round);
+            for (SuperTicTacToeGame game : all)
+                game.setMoveLog(log);
+            log.awaitDurable();
+            long before = log.getCommits();
+            loggedRounds[round] = run(all, threads, moves, sync ? log : null, 11+2*round);
+            commits += log.getCommits()-before;
+        }
+        log.awaitDurable();
+        double plain = median(plainRounds);
+        double logged = median(loggedRounds);
+
+        //Recover from a copy taken now, without closing the log.
+        Path copy = file.resolveSibling(file.getFileName()+".recovered");
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        long bytes = Files.size(copy);
+        long start = System.nanoTime();
+        MoveLog recovery = new MoveLog(copy);
+        double recoverMillis = (System.nanoTime()-start)/1e6;
+        Map<Integer, SuperTicTacToeGame> recovered = recovery.getRecoveredGames();
+        recovery.close();
+        log.close();
+
+        int live = 0;
+        int matched = 0;
+        for (SuperTicTacToeGame game : all) {
+            if (game.getGameStatus() != GameStatus.IN_PROGRESS)
+                continue;
+            live++;
+            SuperTicTacToeGame copyGame = recovered.get(game.getMoveLogId());
+            if (copyGame != null && copyGame.getCurrentPlayer() == game.getCurrentPlayer()
+                    && Arrays.equals(copyGame.snapshot().copyCells(), game.snapshot().copyCells()))
+                matched++;
+        }
+        System.out.printf("without log %10.0f moves/s (median)%n", plain);
+        System.out.printf("with log    %10.0f moves/s (median)  (%+.1f%%)%n", logged, 100*(logged/plain-1));
+        System.out.printf("%d group commits, %.1f moves each%n", commits,
+                commits == 0 ? 0.0 : (double) moves*rounds/commits);
+        System.out.printf("recovered %d/%d in-progress games from %.1f MB in %.1f ms%n",
+                matched, live, bytes/1e6, recoverMillis);
+        Files.deleteIfExists(copy);
+        if (matched != live || recovered.size() != live)
+            System.exit(1);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Plays the moves spread over the threads, each owning every threads-th game.
+     *
+     * @param log - The log to wait on after each move, or null to not wait.
+     * @return throughput - Moves (selects, undos and resets) per second.
+     ********************************************************************************/
+    private static double run(List<SuperTicTacToeGame> games, int threads, int moves, MoveLog log, int seed)
+            throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            List<SuperTicTacToeGame> mine = new ArrayList<>();
+            for (int g = t; g < games.size(); g += threads)
+                mine.add(games.get(g));
+            Random random = new Random(seed*1000+t);
+            int share = moves/threads;
+            Thread worker = new Thread(() -> {
+                for (int m = 0; m < share; m++) {
+                    play(mine.get(m%mine.size()), random);
+                    if (log != null) {
+                        try {
+                            log.awaitDurable();
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                }
+            }, "LogBenchmark-"+t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers)
+            worker.join();
+        return moves/((System.nanoTime()-start)/1e9);
+    }
+
+    /*********************************************************************************
+     * median
+     *********************************************************************************
+     * Returns the median of the values (the upper one for an even count).
+     ********************************************************************************/
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length/2];
+    }
+
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Makes one random move, undoing one move in eight and resetting finished games.
+     ********************************************************************************/
+    private static void play(SuperTicTacToeGame game, Random random) {
+        if (game.getGameStatus() != GameStatus.IN_PROGRESS) {
+            game.reset();
+        } else if (game.getPly() > 0 && random.nextInt(8) == 0) {
+            game.undo();
+        } else {
+            int size = game.getSize();
+            int cells = size*size;
+            int cell = random.nextInt(cells);
+            while (game.getCell(cell) != Cell.EMPTY_CODE)
+                cell = cell+1 == cells ? 0 : cell+1;
+            game.select(cell/size, cell%size);
+        }
+    }
+}
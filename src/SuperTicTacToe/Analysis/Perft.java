@@ -0,0 +1,310 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+import SuperTicTacToe.UltimateTicTacToeGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Perft {
+    //================================================================================
+    // Known Counts
+    //================================================================================
+    //Move sequences of each length for 3x3 with 3 connections, where finished games
+    //are not continued. Depth 9 plus the games that end early sum to the well known
+    //255,168 complete games of tic tac toe.
+    private static final long[] KNOWN_3X3_K3 = {
+            1, 9, 72, 504, 3024, 15120, 54720, 148176, 200448, 127872
+    };
+    //Move sequences of each length for Ultimate Tic Tac Toe (see
+    //UltimateTicTacToeGame). No game ends this early, so these only check the
+    //send-to-board rule.
+    private static final long[] KNOWN_ULTIMATE = {
+            1, 81, 720, 6336, 55080, 473256, 4020960, 33782544, 281067408
+    };
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int threads;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * Perft - Constructor
+     *********************************************************************************
+     * Creates a perft runner which splits the root moves over the given number of
+     * threads.
+     *
+     * @param threads - The number of worker threads.
+     ********************************************************************************/
+    public Perft(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Threads must be positive.");
+        this.threads = threads;
+    }
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Counts every continuation up to the given depth and reports the counts, the
+     * nodes per second, and whether they match the known counts. Usage:
+     *     Perft size connections depth [--threads n] [--divide]
+     *     Perft ultimate depth [--threads n] [--divide]
+     * The second form counts Ultimate Tic Tac Toe moves on the 9x9 board.
+     * Exits with status 1 if a known count does not match.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        boolean ultimate = args.length >= 2 && args[0].equals("ultimate");
+        if (args.length < 3 && !ultimate) {
+            System.err.println("Usage: Perft size connections depth [--threads n] [--divide]");
+            System.err.println("       Perft ultimate depth [--threads n] [--divide]");
+            System.exit(2);
+        }
+        int size = ultimate ? UltimateTicTacToeGame.SIZE : Integer.parseInt(args[0]);
+        int connections = ultimate ? 3 : Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[ultimate ? 1 : 2]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean divide = false;
+        for (int i = ultimate ? 2 : 3; i < args.length; i++) {
+            if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--divide"))
+                divide = true;
+        }
+
+        Perft perft = new Perft(threads);
+        boolean allMatched = true;
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long[] counts = ultimate ? perft.run(new UltimateTicTacToeGame('x'), d)
+                    : perft.run(new SuperTicTacToeGame(size, connections, 'x'), d);
+            double seconds = (System.nanoTime()-start)/1e9;
+
+            long leaves = 0;
+            for (long c : counts)
+                leaves += c;
+            long known = ultimate ? knownUltimateCount(d) : knownCount(size, connections, d);
+            String check = known < 0 ? "" : (known == leaves ? "  ok" : "  MISMATCH (expected "+known+")");
+            allMatched &= known < 0 || known == leaves;
+            System.out.printf("perft(%d) = %d  %.3fs  %.0f nodes/sec%s%n",
+                    d, leaves, seconds, leaves/Math.max(seconds, 1e-9), check);
+
+            if (divide && d == depth)
+                for (int i = 0; i < counts.length; i++)
+                    if (counts[i] > 0)
+                        System.out.printf("  %d,%d: %d%n", i/size, i%size, counts[i]);
+        }
+        if (!allMatched)
+            System.exit(1);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Counts the move sequences of exactly the given length from the game's current
+     * position, not continuing past finished games. Each root move is searched on
+     * its own fork of the game, so the game passed in is left untouched. The forks
+     * only end games on a win or a full board (see setDeadDrawCheck).
+     *
+     * @param game - The position to count from.
+     * @param depth - The number of moves in each sequence.
+     * @return counts - The count below each root move, indexed by cell.
+     ********************************************************************************/
+    public long[] run(SuperTicTacToeGame game, int depth) throws InterruptedException {
+        int cells = game.getSize()*game.getSize();
+        long[] counts = new long[cells];
+        if (depth <= 0 || game.getGameStatus() != GameStatus.IN_PROGRESS)
+            return counts;
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < cells; i++) {
+                if (game.getCell(i) != Cell.EMPTY_CODE)
+                    continue;
+                final int root = i;
+                SuperTicTacToeGame fork = game.fork();
+                //Dead draws must be played out, or the counts stop matching.
+                fork.setDeadDrawCheck(false);
+                roots.add(root);
+                results.add(pool.submit(() -> {
+                    fork.select(root/fork.getSize(), root%fork.getSize());
+                    return count(fork, depth-1);
+                }));
+            }
+            for (int i = 0; i < roots.size(); i++)
+                counts[roots.get(i)] = results.get(i).get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Perft worker failed.", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    /*********************************************************************************
+     * count
+     *********************************************************************************
+     * Single threaded perft: makes and unmakes every legal move through the game's
+     * public select/undo methods.
+     *
+     * @param game - The position to count from. Restored before returning.
+     * @param depth - The remaining depth.
+     * @return leaves - The number of move sequences of the given length.
+     ********************************************************************************/
+    public static long count(SuperTicTacToeGame game, int depth) {
+        if (depth == 0)
+            return 1;
+        if (game.getGameStatus() != GameStatus.IN_PROGRESS)
+            return 0;
+
+        int size = game.getSize();
+        int cells = size*size;
+        long leaves = 0;
+        for (int i = 0; i < cells; i++) {
+            if (game.getCell(i) != Cell.EMPTY_CODE)
+                continue;
+            if (depth == 1) {
+                leaves++;
+                continue;
+            }
+            game.select(i/size, i%size);
+            leaves += count(game, depth-1);
+            game.undo();
+        }
+        return leaves;
+    }
+
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Same as run for the plain game, for an Ultimate Tic Tac Toe position.
+     *
+     * @param game - The position to count from.
+     * @param depth - The number of moves in each sequence.
+     * @return counts - The count below each root move, indexed by cell.
+     ********************************************************************************/
+    public long[] run(UltimateTicTacToeGame game, int depth) throws InterruptedException {
+        long[] counts = new long[UltimateTicTacToeGame.CELL_COUNT];
+        int[] roots = new int[UltimateTicTacToeGame.CELL_COUNT];
+        int rootCount = game.legalMoves(roots);
+        if (depth <= 0 || rootCount == 0)
+            return counts;
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < rootCount; i++) {
+                final int root = roots[i];
+                UltimateTicTacToeGame fork = game.fork();
+                results.add(pool.submit(() -> {
+                    fork.play(root);
+                    return count(fork, depth-1);
+                }));
+            }
+            for (int i = 0; i < rootCount; i++)
+                counts[roots[i]] = results.get(i).get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Perft worker failed.", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    /*********************************************************************************
+     * count
+     *********************************************************************************
+     * Single threaded perft for Ultimate Tic Tac Toe, through the game's
+     * legalMoves/play/undo methods.
+     *
+     * @param game - The position to count from. Restored before returning.
+     * @param depth - The remaining depth.
+     * @return leaves - The number of move sequences of the given length.
+     ********************************************************************************/
+    public static long count(UltimateTicTacToeGame game, int depth) {
+        if (depth == 0)
+            return 1;
+        return count(game, depth, new int[depth+1][UltimateTicTacToeGame.CELL_COUNT]);
+    }
+
+    /*********************************************************************************
+     * knownCount
+     *********************************************************************************
+     * Returns the known-good count for a configuration, or -1 when none is known.
+     * No line can be completed before the winner's connections-th move, so until
+     * then the count is simply the number of ordered selections of empty cells.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param depth - The number of moves in each sequence.
+     * @return count - The known count, or -1.
+     ********************************************************************************/
+    public static long knownCount(int size, int connections, int depth) {
+        if (size == 3 && connections == 3 && depth < KNOWN_3X3_K3.length)
+            return KNOWN_3X3_K3[depth];
+        int cells = size*size;
+        if (depth > cells)
+            return 0;
+        if (depth < 2*connections-1) {
+            long count = 1;
+            try {
+                for (int i = 0; i < depth; i++)
+                    count = Math.multiplyExact(count, cells-i);
+            } catch (ArithmeticException ex) {
+                return -1;
+            }
+            return count;
+        }
+        return -1;
+    }
+
+    /*********************************************************************************
+     * knownUltimateCount
+     *********************************************************************************
+     * Returns the known-good Ultimate Tic Tac Toe count, or -1 when none is known.
+     *
+     * @param depth - The number of moves in each sequence.
+     * @return count - The known count, or -1.
+     ********************************************************************************/
+    public static long knownUltimateCount(int depth) {
+        return depth < KNOWN_ULTIMATE.length ? KNOWN_ULTIMATE[depth] : -1;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * count
+     *********************************************************************************
+     * Recursive Ultimate Tic Tac Toe perft with one move list per remaining depth,
+     * counting the last ply's moves without playing them.
+     ********************************************************************************/
+    private static long count(UltimateTicTacToeGame game, int depth, int[][] moves) {
+        int count = game.legalMoves(moves[depth]);
+        if (depth == 1)
+            return count;
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            game.play(moves[depth][i]);
+            leaves += count(game, depth-1, moves);
+            game.undo();
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,131 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIConfig;
+import SuperTicTacToe.AI.Difficulty;
+import SuperTicTacToe.AI.GamePool;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class PoolBenchmark {
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Measures the cost of the game lifecycle with and without GamePool. Usage:
+     *     PoolBenchmark [--size n] [--connections k] [--games n] [--think]
+     * Every game takes a game and two AIs, plays random moves to the end (or, with
+     * --think, lets the AIs play at EASY) and gives them back. The bytes allocated
+     * per game and the heap used after a GC are printed for both lifecycles.
+     ********************************************************************************/
+    public static void main(String[] args) {
+        int size = 14;
+        int connections = 5;
+        int games = 2000;
+        boolean think = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--think":
+                    think = true;
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("%dx%d k=%d, %d games, %s moves%n", size, size, connections, games,
+                think ? "EASY AI" : "random");
+        System.out.printf("%-10s %12s %14s %12s%n", "lifecycle", "games/s", "bytes/game", "heap MB");
+        for (int round = 0; round < 2; round++) {
+            //The first round warms both lifecycles up; only the second is printed.
+            for (boolean pooled : new boolean[] {false, true}) {
+                Random random = new Random(1);
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                for (int g = 0; g < games; g++)
+                    playGame(size, connections, pooled, think, random);
+                double seconds = (System.nanoTime()-start)/1e9;
+                long bytes = allocatedBytes()-allocated;
+                if (round == 1)
+                    System.out.printf("%-10s %12.0f %14d %12.1f%n", pooled ? "pooled" : "new",
+                            games/seconds, bytes/games, usedHeap()/1e6);
+            }
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * playGame
+     *********************************************************************************
+     * Plays one game with new or pooled objects.
+     ********************************************************************************/
+    private static void playGame(int size, int connections, boolean pooled, boolean think, Random random) {
+        GamePool pool = GamePool.get();
+        AIConfig config = new AIConfig(Difficulty.EASY);
+        SuperTicTacToeGame game = pooled ? pool.acquireGame(size, connections, 'x')
+                : new SuperTicTacToeGame(size, connections, 'x');
+        AI xAI = pooled ? pool.acquireAI(game, Cell.X, config) : new AI(game, Cell.X, config);
+        AI oAI = pooled ? pool.acquireAI(game, Cell.O, config) : new AI(game, Cell.O, config);
+        xAI.setVerbose(false);
+        oAI.setVerbose(false);
+        int cells = size*size;
+        while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+            if (think) {
+                Point move = (game.getCurrentPlayer() == 'x' ? xAI : oAI).think(game.getBoard());
+                game.select(move.x, move.y);
+                continue;
+            }
+            int cell = random.nextInt(cells);
+            if (game.getCell(cell) == Cell.EMPTY_CODE)
+                game.select(cell/size, cell%size);
+        }
+        if (pooled) {
+            pool.release(xAI);
+            pool.release(oAI);
+            pool.release(game);
+        }
+    }
+
+    /*********************************************************************************
+     * allocatedBytes
+     *********************************************************************************
+     * Returns the bytes this thread has allocated so far, or 0 if the JVM does not
+     * say.
+     ********************************************************************************/
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return 0;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /*********************************************************************************
+     * usedHeap
+     *********************************************************************************
+     * Returns the heap in use after a GC.
+     ********************************************************************************/
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory()-runtime.freeMemory();
+    }
+}
@@ -0,0 +1,122 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.ProofNumberSearch;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class Solver {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Time allowed for --check.
+    private static final long CHECK_SECONDS = 60;
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Solves positions with proof-number search. Usage:
+     *     Solver size connections [row,col ...] [--table bits] [--nodes n]
+     *     Solver - [--table bits] [--nodes n]
+     *     Solver --check
+     * The first form solves the position after the given moves (X starts). The
+     * second form reads game records (see GameRecord) from standard input, one
+     * position per line. Each result is reported from the point of view of the
+     * player to move, with the node count, nodes per second, and table memory.
+     * The table defaults to ProofNumberSearch.defaultTableBits for each board.
+     * The third form solves the empty 5x5 k=4 board, a known draw, with the
+     * default settings, and exits with status 1 unless it is proven a draw
+     * within CHECK_SECONDS.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        //-1 picks the table size from each board.
+        int tableBits = -1;
+        long nodeLimit = Long.MAX_VALUE;
+        StringBuilder position = new StringBuilder();
+        boolean fromInput = false;
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--check":
+                    ProofNumberSearch.Result result = solve(GameRecord.parse("5 4 x"), -1, Long.MAX_VALUE,
+                            System.nanoTime()+CHECK_SECONDS*1000000000L);
+                    System.exit(result == ProofNumberSearch.Result.DRAW ? 0 : 1);
+                    break;
+                case "--table":
+                    tableBits = Integer.parseInt(args[++i]);
+                    break;
+                case "--nodes":
+                    nodeLimit = Long.parseLong(args[++i]);
+                    break;
+                case "-":
+                    fromInput = true;
+                    break;
+                default:
+                    position.append(args[i]).append(' ');
+                    //The starting player follows size and connections in a record.
+                    if (++positional == 2)
+                        position.append("x ");
+                    break;
+            }
+        }
+
+        if (fromInput) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null)
+                if (!line.trim().isEmpty() && !line.startsWith("#"))
+                    solve(GameRecord.parse(line), tableBits, nodeLimit, Long.MAX_VALUE);
+        } else if (position.length() > 0) {
+            solve(GameRecord.parse(position.toString()), tableBits, nodeLimit, Long.MAX_VALUE);
+        } else {
+            System.err.println("Usage: Solver size connections [row,col ...] [--table bits] [--nodes n]");
+            System.exit(2);
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * solve
+     *********************************************************************************
+     * Replays a record, solves the resulting position, and prints the result.
+     *
+     * @param tableBits - log2 of the node table entries, or -1 for the default.
+     * @param deadline - The System.nanoTime() value at which to give up, or
+     *                   Long.MAX_VALUE for none.
+     * @return result - The result for the player to move.
+     ********************************************************************************/
+    private static ProofNumberSearch.Result solve(GameRecord record, int tableBits, long nodeLimit, long deadline) {
+        if (tableBits < 0)
+            tableBits = ProofNumberSearch.defaultTableBits(record.getSize());
+        SuperTicTacToeGame game = record.newGame();
+        for (int i = 0; i < record.getMoveCount(); i++)
+            game.select(record.getMove(i)/record.getSize(), record.getMove(i)%record.getSize());
+
+        ProofNumberSearch solver = new ProofNumberSearch(record.getSize(), record.getConnections(), tableBits);
+        solver.setNodeLimit(nodeLimit);
+        solver.setDeadline(deadline);
+        long start = System.nanoTime();
+        ProofNumberSearch.Result result = solver.solve(game);
+        double seconds = (System.nanoTime()-start)/1e9;
+        long nodes = solver.getNodes();
+
+        String move = "";
+        if (result == ProofNumberSearch.Result.WIN) {
+            int cell = solver.findWinningMove(game);
+            if (cell >= 0)
+                move = "  best "+(cell/record.getSize())+","+(cell%record.getSize());
+        }
+        System.out.printf("%s: %s for %c%s  (%d nodes, %.2fs, %.0f nodes/sec, table %d/%d entries, %.1f MB)%n",
+                record, result, game.getCurrentPlayer(), move, nodes, seconds,
+                nodes/Math.max(seconds, 1e-9), solver.getTableEntries(),
+                1 << tableBits, solver.getTableBytes()/1048576.0);
+        return result;
+    }
+}
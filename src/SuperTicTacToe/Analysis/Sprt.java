@@ -0,0 +1,251 @@
+package SuperTicTacToe.Analysis;
+
+public class Sprt {
+    //================================================================================
+    // Enumerations
+    //================================================================================
+    public enum Decision {
+        //Not decided yet; keep playing.
+        CONTINUE,
+        //The Elo difference is at most elo0.
+        ACCEPT_H0,
+        //The Elo difference is at least elo1.
+        ACCEPT_H1
+    }
+
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Pseudo-games of each result (win, draw and loss) added to the counts the
+    //ratio is computed from, so the variance is never zero: runs where every
+    //result is the same still reach a decision.
+    private static final double PSEUDO_GAMES = 1;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private double score0;
+    private double score1;
+    private double lowerBound;
+    private double upperBound;
+
+    private long wins;
+    private long draws;
+    private long losses;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * Sprt - Constructor
+     *********************************************************************************
+     * Sets up a sequential probability ratio test of H0: elo = elo0 against
+     * H1: elo = elo1, for a player whose results are added one game at a time.
+     *
+     * @param elo0 - The Elo difference of the null hypothesis.
+     * @param elo1 - The Elo difference of the alternative hypothesis.
+     * @param alpha - The probability of accepting H1 when H0 is true.
+     * @param beta - The probability of accepting H0 when H1 is true.
+     ********************************************************************************/
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1)
+            throw new IllegalArgumentException("SPRT needs elo0 < elo1 and 0 < alpha, beta < 1.");
+        this.score0 = expectedScore(elo0);
+        this.score1 = expectedScore(elo1);
+        this.lowerBound = Math.log(beta/(1-alpha));
+        this.upperBound = Math.log((1-beta)/alpha);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * addResult
+     *********************************************************************************
+     * Adds one game result.
+     *
+     * @param points - 2 for a win, 1 for a draw, 0 for a loss.
+     ********************************************************************************/
+    public void addResult(int points) {
+        if (points == 2)
+            this.wins++;
+        else if (points == 1)
+            this.draws++;
+        else
+            this.losses++;
+    }
+
+    /*********************************************************************************
+     * getDecision
+     *********************************************************************************
+     * Compares the log-likelihood ratio with the bounds.
+     *
+     * @return decision - Whether either hypothesis can be accepted yet.
+     ********************************************************************************/
+    public Decision getDecision() {
+        double llr = getLLR();
+        if (llr >= this.upperBound)
+            return Decision.ACCEPT_H1;
+        if (llr <= this.lowerBound)
+            return Decision.ACCEPT_H0;
+        return Decision.CONTINUE;
+    }
+
+    /*********************************************************************************
+     * getLLR
+     *********************************************************************************
+     * Returns the log-likelihood ratio of H1 against H0, using the normal
+     * approximation of the mean score with the variance of the observed win, draw,
+     * and loss frequencies. Those frequencies include PSEUDO_GAMES of each result,
+     * as the variance is zero while every result so far is the same.
+     *
+     * @return llr - The log-likelihood ratio.
+     ********************************************************************************/
+    public double getLLR() {
+        long games = getGames();
+        if (games == 0)
+            return 0;
+        double wins = this.wins+PSEUDO_GAMES;
+        double draws = this.draws+PSEUDO_GAMES;
+        double losses = this.losses+PSEUDO_GAMES;
+        double score = (wins+0.5*draws)/(wins+draws+losses);
+        double variance = getVariance(wins, draws, losses, score);
+        return (this.score1-this.score0)*(2*score-this.score0-this.score1)/(2*variance/games);
+    }
+
+    /*********************************************************************************
+     * getElo
+     *********************************************************************************
+     * Returns the Elo difference implied by the mean score.
+     *
+     * @return elo - The Elo difference.
+     ********************************************************************************/
+    public double getElo() {
+        return elo(getScore());
+    }
+
+    /*********************************************************************************
+     * getEloError
+     *********************************************************************************
+     * Returns the half width of the 95% confidence interval of the Elo difference.
+     *
+     * @return error - The error bar in Elo.
+     ********************************************************************************/
+    public double getEloError() {
+        long games = getGames();
+        if (games == 0)
+            return Double.POSITIVE_INFINITY;
+        double score = getScore();
+        double margin = 1.959964*Math.sqrt(getVariance(this.wins, this.draws, this.losses, score)/games);
+        return (elo(score+margin)-elo(score-margin))/2;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * getVariance
+     *********************************************************************************
+     * Returns the per-game variance of the score around its mean, for the given
+     * numbers of each result.
+     ********************************************************************************/
+    private static double getVariance(double wins, double draws, double losses, double score) {
+        return (wins*(1-score)*(1-score)
+                + draws*(0.5-score)*(0.5-score)
+                + losses*score*score)/(wins+draws+losses);
+    }
+
+    /*********************************************************************************
+     * expectedScore
+     *********************************************************************************
+     * Converts an Elo difference to the expected score per game.
+     ********************************************************************************/
+    private static double expectedScore(double elo) {
+        return 1/(1+Math.pow(10, -elo/400));
+    }
+
+    /*********************************************************************************
+     * elo
+     *********************************************************************************
+     * Converts a score per game to an Elo difference. Scores of 0 and 1 are
+     * clamped, which keeps the result finite.
+     ********************************************************************************/
+    private static double elo(double score) {
+        double clamped = Math.min(Math.max(score, 1e-6), 1-1e-6);
+        return -400*Math.log10(1/clamped-1);
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getWins
+     *********************************************************************************
+     * Returns the number of wins.
+     * @return wins - The number of wins.
+     ********************************************************************************/
+    public long getWins() {
+        return this.wins;
+    }
+
+    /*********************************************************************************
+     * getDraws
+     *********************************************************************************
+     * Returns the number of draws.
+     * @return draws - The number of draws.
+     ********************************************************************************/
+    public long getDraws() {
+        return this.draws;
+    }
+
+    /*********************************************************************************
+     * getLosses
+     *********************************************************************************
+     * Returns the number of losses.
+     * @return losses - The number of losses.
+     ********************************************************************************/
+    public long getLosses() {
+        return this.losses;
+    }
+
+    /*********************************************************************************
+     * getGames
+     *********************************************************************************
+     * Returns the number of games added.
+     * @return games - The number of games.
+     ********************************************************************************/
+    public long getGames() {
+        return this.wins+this.draws+this.losses;
+    }
+
+    /*********************************************************************************
+     * getScore
+     *********************************************************************************
+     * Returns the mean score per game (1 for a win, 0.5 for a draw).
+     * @return score - The mean score, or 0.5 before any game.
+     ********************************************************************************/
+    public double getScore() {
+        long games = getGames();
+        return games == 0 ? 0.5 : (this.wins+0.5*this.draws)/games;
+    }
+
+    /*********************************************************************************
+     * getLowerBound
+     *********************************************************************************
+     * Returns the log-likelihood ratio at which H0 is accepted.
+     * @return lowerBound - The lower bound.
+     ********************************************************************************/
+    public double getLowerBound() {
+        return this.lowerBound;
+    }
+
+    /*********************************************************************************
+     * getUpperBound
+     *********************************************************************************
+     * Returns the log-likelihood ratio at which H1 is accepted.
+     * @return upperBound - The upper bound.
+     ********************************************************************************/
+    public double getUpperBound() {
+        return this.upperBound;
+    }
+}
@@ -0,0 +1,189 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.MoveStream;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StreamBenchmark {
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Measures what publishing to a MoveStream adds to select while many
+     * spectators read it. Usage:
+     *     StreamBenchmark [--size n] [--connections k] [--moves n]
+     *                     [--subscribers n] [--readers n] [--capacity n]
+     * The game thread plays random games (with undos) for the given number of
+     * moves, first without a stream and then with one; the subscribers are spread
+     * over the reader threads, which poll them round robin. Every subscriber
+     * rebuilds the board from its snapshot and events, and at the end each board
+     * is compared with the game's.
+     ********************************************************************************/
+    public static void main(String[] args) throws InterruptedException {
+        int size = 14;
+        int connections = 5;
+        int moves = 2000000;
+        int subscribers = 1000;
+        int readers = 2;
+        int capacity = MoveStream.DEFAULT_CAPACITY;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--moves":
+                    moves = Integer.parseInt(args[++i]);
+                    break;
+                case "--subscribers":
+                    subscribers = Integer.parseInt(args[++i]);
+                    break;
+                case "--readers":
+                    readers = Integer.parseInt(args[++i]);
+                    break;
+                case "--capacity":
+                    capacity = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("%dx%d k=%d, %d moves, %d subscribers on %d readers, capacity %d%n",
+                size, size, connections, moves, subscribers, readers, capacity);
+        SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, 'x');
+        //Let the JIT compile select with and without publishing before timing.
+        for (int round = 0; round < 4; round++) {
+            game.setMoveStream(round%2 == 0 ? null : new MoveStream(capacity));
+            play(game, moves/4, new Random(1));
+        }
+        game.setMoveStream(null);
+        game.reset();
+        double plain = play(game, moves, new Random(2));
+
+        MoveStream stream = new MoveStream(capacity);
+        game.reset();
+        game.setMoveStream(stream);
+        List<Spectator> spectators = new ArrayList<>();
+        for (int s = 0; s < subscribers; s++)
+            spectators.add(new Spectator(stream.subscribe()));
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            List<Spectator> mine = new ArrayList<>();
+            for (int s = r; s < subscribers; s += readers)
+                mine.add(spectators.get(s));
+            Thread thread = new Thread(() -> {
+                while (!done.get())
+                    for (Spectator spectator : mine)
+                        spectator.poll();
+            }, "StreamBenchmark-reader-"+r);
+            thread.start();
+            threads.add(thread);
+        }
+        double streamed = play(game, moves, new Random(2));
+        done.set(true);
+        for (Thread thread : threads)
+            thread.join();
+
+        long lapped = 0;
+        int matched = 0;
+        byte[] expected = game.snapshot().copyCells();
+        for (Spectator spectator : spectators) {
+            while (spectator.poll())
+                ;
+            lapped += spectator.subscription.getLapped();
+            if (Arrays.equals(spectator.board, expected))
+                matched++;
+        }
+        System.out.printf("select without stream %8.1f ns%n", plain);
+        System.out.printf("select with stream    %8.1f ns  (%+.1f ns)%n", streamed, streamed-plain);
+        System.out.printf("%d events, %d resyncs after being lapped, %d/%d boards match the game%n",
+                stream.getPublished(), lapped, matched, subscribers);
+        if (matched != subscribers)
+            System.exit(1);
+    }
+
+    //================================================================================
+    // Classes
+    //================================================================================
+    //A spectator rebuilding the board from the stream.
+    private static final class Spectator {
+        private final MoveStream.Subscription subscription;
+        private final byte[] board;
+        private final long[] events;
+
+        private Spectator(MoveStream.Subscription subscription) {
+            this.subscription = subscription;
+            this.board = subscription.getSnapshot().copyCells();
+            this.events = new long[64];
+        }
+
+        //Applies one batch of events; returns whether there were any.
+        private boolean poll() {
+            int count = this.subscription.poll(this.events);
+            if (count == MoveStream.LAPPED) {
+                this.subscription.resync().copyCells(this.board);
+                return true;
+            }
+            for (int i = 0; i < count; i++) {
+                long event = this.events[i];
+                switch (MoveStream.type(event)) {
+                    case MoveStream.MOVE:
+                        this.board[MoveStream.cell(event)] = MoveStream.player(event);
+                        break;
+                    case MoveStream.UNDO:
+                        this.board[MoveStream.cell(event)] = Cell.EMPTY_CODE;
+                        break;
+                    case MoveStream.RESET:
+                        Arrays.fill(this.board, Cell.EMPTY_CODE);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return count > 0;
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Plays random moves, undoing one move in eight and resetting finished games.
+     *
+     * @return nanos - The average time of a select, undo or reset call.
+     ********************************************************************************/
+    private static double play(SuperTicTacToeGame game, int moves, Random random) {
+        int size = game.getSize();
+        int cells = size*size;
+        long start = System.nanoTime();
+        for (int m = 0; m < moves; m++) {
+            if (game.getGameStatus() != GameStatus.IN_PROGRESS) {
+                game.reset();
+            } else if (game.getPly() > 0 && random.nextInt(8) == 0) {
+                game.undo();
+            } else {
+                int cell = random.nextInt(cells);
+                while (game.getCell(cell) != Cell.EMPTY_CODE)
+                    cell = cell+1 == cells ? 0 : cell+1;
+                game.select(cell/size, cell%size);
+            }
+        }
+        return (System.nanoTime()-start)/(double) moves;
+    }
+}
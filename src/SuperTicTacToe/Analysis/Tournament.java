@@ -0,0 +1,423 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIConfig;
+import SuperTicTacToe.AI.Difficulty;
+import SuperTicTacToe.AI.GamePool;
+import SuperTicTacToe.AI.MoveAnalysis;
+import SuperTicTacToe.AI.UltimateSearch;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+import SuperTicTacToe.UltimateTicTacToeGame;
+
+import java.awt.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Tournament {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int size;
+    private int connections;
+    private AIConfig configA;
+    private AIConfig configB;
+    private int openingPlies;
+    private long seed;
+    //Play Ultimate Tic Tac Toe (see UltimateSearch) instead of the plain game.
+    private boolean ultimate;
+    //End games as soon as they are dead draws (see setDeadDrawCheck).
+    private boolean deadDrawCheck = true;
+
+    //Handed to the main thread in place of a result when a game fails.
+    private static final int[] FAILED = new int[0];
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * Tournament - Constructor
+     *********************************************************************************
+     * Creates a match between two AI configurations.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param configA - The configuration under test.
+     * @param configB - The configuration it is measured against.
+     * @param openingPlies - The number of random moves that open each game.
+     * @param seed - The seed of the random openings.
+     ********************************************************************************/
+    public Tournament(int size, int connections, AIConfig configA, AIConfig configB, int openingPlies, long seed) {
+        if (openingPlies < 0 || openingPlies >= size*size)
+            throw new IllegalArgumentException("The opening must leave empty cells on the board.");
+        this.size = size;
+        this.connections = connections;
+        this.configA = configA;
+        this.configB = configB;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+    }
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Plays A against B until the SPRT decides or the game limit is reached. Usage:
+     *     Tournament [--size n] [--connections k] [--a config] [--b config]
+     *                [--elo0 e] [--elo1 e] [--alpha a] [--beta b] [--games n]
+     *                [--threads n] [--opening plies] [--seed s] [--ultimate]
+     *                [--no-dead-draw]
+     * A config is a difficulty (EASY, MEDIUM, HARD) or "ms,nodes,solverNodes".
+     * With --ultimate the games are Ultimate Tic Tac Toe, played by UltimateSearch
+     * with each config's move time (or to UltimateSearch.DEFAULT_MAX_DEPTH if it
+     * has none); size and connections are ignored. With --no-dead-draw, drawn
+     * games are played out to a full board.
+     * Every opening is played twice, once with each AI as X. Elo, the 95% error
+     * bar, the LLR, and games/sec are printed as results come in.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        int size = 8;
+        int connections = 4;
+        AIConfig configA = new AIConfig(Difficulty.MEDIUM);
+        AIConfig configB = new AIConfig(Difficulty.EASY);
+        double elo0 = 0;
+        double elo1 = 20;
+        double alpha = 0.05;
+        double beta = 0.05;
+        long maxGames = 20000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int openingPlies = 2;
+        long seed = 1;
+        boolean ultimate = false;
+        boolean deadDrawCheck = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--a":
+                    configA = parseConfig(args[++i]);
+                    break;
+                case "--b":
+                    configB = parseConfig(args[++i]);
+                    break;
+                case "--elo0":
+                    elo0 = Double.parseDouble(args[++i]);
+                    break;
+                case "--elo1":
+                    elo1 = Double.parseDouble(args[++i]);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(args[++i]);
+                    break;
+                case "--beta":
+                    beta = Double.parseDouble(args[++i]);
+                    break;
+                case "--games":
+                    maxGames = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--opening":
+                    openingPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--ultimate":
+                    ultimate = true;
+                    break;
+                case "--no-dead-draw":
+                    deadDrawCheck = false;
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.printf("A: %s%nB: %s%nSPRT elo0=%.1f elo1=%.1f alpha=%.3f beta=%.3f, %s, %d threads%n",
+                configA, configB, elo0, elo1, alpha, beta,
+                ultimate ? "ultimate" : size+"x"+size+" k="+connections, threads);
+        if (ultimate) {
+            size = UltimateTicTacToeGame.SIZE;
+            connections = 3;
+        }
+        Tournament tournament = new Tournament(size, connections, configA, configB, openingPlies, seed);
+        tournament.setUltimate(ultimate);
+        tournament.setDeadDrawCheck(deadDrawCheck);
+        Sprt sprt = new Sprt(elo0, elo1, alpha, beta);
+        long start = System.nanoTime();
+        Sprt.Decision decision = tournament.run(sprt, threads, maxGames);
+        double seconds = (System.nanoTime()-start)/1e9;
+        System.out.printf("%s after %d games (+%d =%d -%d): Elo %+.1f +/- %.1f, LLR %.2f [%.2f, %.2f], %.1f games/sec%n",
+                decision == Sprt.Decision.CONTINUE ? "Inconclusive" : decision,
+                sprt.getGames(), sprt.getWins(), sprt.getDraws(), sprt.getLosses(),
+                sprt.getElo(), sprt.getEloError(), sprt.getLLR(), sprt.getLowerBound(), sprt.getUpperBound(),
+                sprt.getGames()/seconds);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Plays opening pairs on a pool of threads and feeds the results, from A's
+     * point of view, to the SPRT in the order they finish. Once the test decides,
+     * the workers stop taking new openings and the games still being played are
+     * discarded.
+     *
+     * @param sprt - The test to feed.
+     * @param threads - The number of games played at once.
+     * @param maxGames - The most games to play if the test does not decide.
+     * @return decision - The SPRT decision, or CONTINUE if the limit was reached.
+     ********************************************************************************/
+    public Sprt.Decision run(Sprt sprt, int threads, long maxGames) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        BlockingQueue<int[]> results = new LinkedBlockingQueue<>();
+        AtomicLong nextOpening = new AtomicLong();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<RuntimeException> error = new AtomicReference<>();
+        long pairs = (maxGames+1)/2;
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                long opening;
+                try {
+                    while (!stop.get() && (opening = nextOpening.getAndIncrement()) < pairs)
+                        results.put(playPair(opening));
+                } catch (InterruptedException ex) {
+                    //Stopped after the decision.
+                } catch (RuntimeException ex) {
+                    error.compareAndSet(null, ex);
+                    results.offer(FAILED);
+                }
+            });
+        }
+
+        Sprt.Decision decision = Sprt.Decision.CONTINUE;
+        long start = System.nanoTime();
+        long lastReport = start;
+        try {
+            for (long pair = 0; pair < pairs && decision == Sprt.Decision.CONTINUE; pair++) {
+                int[] points = results.take();
+                if (points == FAILED)
+                    throw error.get();
+                sprt.addResult(points[0]);
+                sprt.addResult(points[1]);
+                decision = sprt.getDecision();
+
+                long now = System.nanoTime();
+                if (now-lastReport >= 5000000000L) {
+                    lastReport = now;
+                    System.out.printf("%d games: Elo %+.1f +/- %.1f, LLR %.2f, %.1f games/sec%n",
+                            sprt.getGames(), sprt.getElo(), sprt.getEloError(), sprt.getLLR(),
+                            sprt.getGames()/((now-start)/1e9));
+                }
+            }
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+        }
+        return decision;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * playPair
+     *********************************************************************************
+     * Plays one opening twice, with A as X and then with B as X.
+     *
+     * @param opening - The index of the opening.
+     * @return points - A's points in each game (2 win, 1 draw, 0 loss).
+     ********************************************************************************/
+    private int[] playPair(long opening) {
+        if (this.ultimate) {
+            int[] moves = randomUltimateOpening(opening);
+            return new int[] {playUltimate(moves, true), playUltimate(moves, false)};
+        }
+        int[] moves = randomOpening(opening);
+        return new int[] {play(moves, true), play(moves, false)};
+    }
+
+    /*********************************************************************************
+     * randomOpening
+     *********************************************************************************
+     * Returns the random opening with the given index. The same index always gives
+     * the same opening, so runs with the same seed play the same games.
+     ********************************************************************************/
+    private int[] randomOpening(long opening) {
+        Random random = new Random(this.seed*0x9E3779B97F4A7C15L+opening);
+        int[] moves = new int[this.openingPlies];
+        boolean[] taken = new boolean[this.size*this.size];
+        for (int i = 0; i < moves.length; i++) {
+            int cell;
+            do {
+                cell = random.nextInt(taken.length);
+            } while (taken[cell]);
+            taken[cell] = true;
+            moves[i] = cell;
+        }
+        return moves;
+    }
+
+    /*********************************************************************************
+     * randomUltimateOpening
+     *********************************************************************************
+     * Returns the random Ultimate Tic Tac Toe opening with the given index: random
+     * legal moves, stopping early if one ends the game.
+     ********************************************************************************/
+    private int[] randomUltimateOpening(long opening) {
+        Random random = new Random(this.seed*0x9E3779B97F4A7C15L+opening);
+        UltimateTicTacToeGame game = new UltimateTicTacToeGame('x');
+        int[] legal = new int[UltimateTicTacToeGame.CELL_COUNT];
+        while (game.getPly() < this.openingPlies && game.getGameStatus() == GameStatus.IN_PROGRESS)
+            game.play(legal[random.nextInt(game.legalMoves(legal))]);
+        int[] moves = new int[game.getPly()];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = game.getMove(i);
+        return moves;
+    }
+
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Plays one game from the opening, with the game and AIs taken from this
+     * thread's GamePool. Neither AI uses the position cache, so each side plays
+     * only its own moves. An AI that returns no move, or an illegal one, loses the
+     * game.
+     *
+     * @param opening - The opening moves, X first.
+     * @param aIsX - Whether or not A plays X.
+     * @return points - A's points (2 win, 1 draw, 0 loss).
+     ********************************************************************************/
+    private int play(int[] opening, boolean aIsX) {
+        GamePool pool = GamePool.get();
+        SuperTicTacToeGame game = pool.acquireGame(this.size, this.connections, 'x');
+        game.setDeadDrawCheck(this.deadDrawCheck);
+        for (int move : opening) {
+            game.select(move/this.size, move%this.size);
+            if (game.getGameStatus() != GameStatus.IN_PROGRESS)
+                break;
+        }
+        AI xAI = pool.acquireAI(game, Cell.X, aIsX ? this.configA : this.configB);
+        AI oAI = pool.acquireAI(game, Cell.O, aIsX ? this.configB : this.configA);
+        xAI.setVerbose(false);
+        oAI.setVerbose(false);
+        //A shared position cache would let one side replay the other's moves.
+        xAI.setCache(null);
+        oAI.setCache(null);
+        try {
+            while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+                boolean xToMove = game.getCurrentPlayer() == 'x';
+                Point move = (xToMove ? xAI : oAI).think(game.getBoard());
+                try {
+                    game.select(move.x, move.y);
+                } catch (RuntimeException ex) {
+                    return xToMove == aIsX ? 0 : 2;
+                }
+            }
+            if (game.getGameStatus() == GameStatus.CATS)
+                return 1;
+            boolean xWon = game.getGameStatus() == GameStatus.X_WON;
+            return xWon == aIsX ? 2 : 0;
+        } finally {
+            pool.release(xAI);
+            pool.release(oAI);
+            pool.release(game);
+        }
+    }
+
+    /*********************************************************************************
+     * playUltimate
+     *********************************************************************************
+     * Plays one Ultimate Tic Tac Toe game from the opening, each side searching
+     * with its config's move time. A side that finds no move loses the game.
+     *
+     * @param opening - The opening moves, X first.
+     * @param aIsX - Whether or not A plays X.
+     * @return points - A's points (2 win, 1 draw, 0 loss).
+     ********************************************************************************/
+    private int playUltimate(int[] opening, boolean aIsX) {
+        UltimateTicTacToeGame game = new UltimateTicTacToeGame('x');
+        for (int move : opening)
+            game.play(move);
+        UltimateSearch xSearch = new UltimateSearch();
+        UltimateSearch oSearch = new UltimateSearch();
+        while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+            boolean xToMove = game.getCurrentPlayer() == 'x';
+            AIConfig config = xToMove == aIsX ? this.configA : this.configB;
+            UltimateSearch search = xToMove ? xSearch : oSearch;
+            if (config.getMoveTimeMillis() > 0) {
+                search.setDeadline(System.nanoTime()+config.getMoveTimeMillis()*1000000L);
+                search.setMaxDepth(UltimateTicTacToeGame.CELL_COUNT);
+            } else {
+                search.setDeadline(Long.MAX_VALUE);
+                search.setMaxDepth(UltimateSearch.DEFAULT_MAX_DEPTH);
+            }
+            List<MoveAnalysis> lines = search.analyze(game, 1, null);
+            if (lines.isEmpty())
+                return xToMove == aIsX ? 0 : 2;
+            Point move = lines.get(0).getMove();
+            game.select(move.x, move.y);
+        }
+        if (game.getGameStatus() == GameStatus.CATS)
+            return 1;
+        boolean xWon = game.getGameStatus() == GameStatus.X_WON;
+        return xWon == aIsX ? 2 : 0;
+    }
+
+    /*********************************************************************************
+     * parseConfig
+     *********************************************************************************
+     * Parses a difficulty name or "ms,nodes,solverNodes".
+     ********************************************************************************/
+    private static AIConfig parseConfig(String text) {
+        if (!text.contains(","))
+            return new AIConfig(Difficulty.valueOf(text.toUpperCase()));
+        String[] parts = text.split(",");
+        if (parts.length != 3)
+            throw new IllegalArgumentException("Expected ms,nodes,solverNodes but got \""+text+"\".");
+        return new AIConfig(Long.parseLong(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                Long.parseLong(parts[2].trim()));
+    }
+
+    //================================================================================
+    // Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setUltimate
+     *********************************************************************************
+     * Chooses between the plain game and Ultimate Tic Tac Toe.
+     *
+     * @param ultimate - Whether or not to play Ultimate Tic Tac Toe.
+     ********************************************************************************/
+    public void setUltimate(boolean ultimate) {
+        this.ultimate = ultimate;
+    }
+
+    /*********************************************************************************
+     * setDeadDrawCheck
+     *********************************************************************************
+     * Chooses whether games end as soon as neither side can win (the default) or
+     * are played out to a full board.
+     *
+     * @param enabled - Whether or not to end dead draws early.
+     ********************************************************************************/
+    public void setDeadDrawCheck(boolean enabled) {
+        this.deadDrawCheck = enabled;
+    }
+}
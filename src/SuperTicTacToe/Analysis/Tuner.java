@@ -0,0 +1,343 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIConfig;
+import SuperTicTacToe.AI.Difficulty;
+import SuperTicTacToe.AI.Evaluator;
+import SuperTicTacToe.AI.GamePool;
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+public class Tuner {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Adam optimizer settings.
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private int featureCount;
+    //Row-major feature matrix: position i's features are at i*featureCount.
+    private float[] features;
+    //Result of each position for the player to move: 1 win, 0.5 draw, 0 loss.
+    private float[] results;
+    private int positions;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * Tuner - Constructor
+     *********************************************************************************
+     * Creates an empty training set.
+     *
+     * @param connections - The number of connections the weights are for.
+     ********************************************************************************/
+    public Tuner(int connections) {
+        this.featureCount = Evaluator.featureCount(connections);
+        this.features = new float[1024*this.featureCount];
+        this.results = new float[1024];
+    }
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Fits evaluation weights to game outcomes. Usage:
+     *     Tuner [--archive file] [--games n] [--size n] [--connections k]
+     *           [--epochs n] [--rate r] [--skip plies] [--threads n] [--out file]
+     * Positions come from an archive of GameRecord lines if one is given, and
+     * otherwise from self-play games of the EASY AI from random openings. The first
+     * "skip" plies of every game are left out. The fitted weights are merged into
+     * the weights file the AI loads at startup.
+     ********************************************************************************/
+    public static void main(String[] args) throws Exception {
+        String archive = null;
+        int games = 2000;
+        int size = 8;
+        int connections = 4;
+        int epochs = 2000;
+        double rate = 0.01;
+        int skip = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = System.getProperty(Evaluator.WEIGHTS_PROPERTY, Evaluator.DEFAULT_WEIGHTS_FILE);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--archive":
+                    archive = args[++i];
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--epochs":
+                    epochs = Integer.parseInt(args[++i]);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--skip":
+                    skip = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Tuner tuner = new Tuner(connections);
+        long start = System.nanoTime();
+        if (archive != null) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(archive), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null)
+                    if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                        GameRecord record = GameRecord.parse(line);
+                        if (record.getConnections() == connections)
+                            tuner.addGame(record, skip);
+                    }
+            }
+        } else {
+            Random random = new Random(1);
+            for (int g = 0; g < games; g++)
+                tuner.addGame(selfPlay(size, connections, random), skip);
+        }
+        System.out.printf("%d positions extracted in %.2fs%n", tuner.getPositions(), (System.nanoTime()-start)/1e9);
+
+        double[] weights = Evaluator.defaultWeights(connections);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            System.out.printf("Initial loss %.6f%n", tuner.loss(pool, threads, weights, null));
+            start = System.nanoTime();
+            weights = tuner.fit(pool, threads, weights, epochs, rate);
+            double seconds = (System.nanoTime()-start)/1e9;
+            System.out.printf("Final loss %.6f after %d epochs in %.2fs (%.0f positions/sec, %d threads)%n",
+                    tuner.loss(pool, threads, weights, null), epochs, seconds,
+                    (double) tuner.getPositions()*epochs/seconds, threads);
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Weights: "+Arrays.toString(weights));
+        Evaluator.writeWeights(new File(out), connections, weights);
+        System.out.println("Written to "+out);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * addGame
+     *********************************************************************************
+     * Replays a finished game and adds every position after the first skip plies,
+     * labelled with the final result for the player to move. Unfinished games are
+     * ignored.
+     *
+     * @param record - The game.
+     * @param skip - The number of opening plies to leave out.
+     ********************************************************************************/
+    public void addGame(GameRecord record, int skip) {
+        SuperTicTacToeGame game = record.newGame();
+        for (int i = 0; i < record.getMoveCount(); i++)
+            game.select(record.getMove(i)/record.getSize(), record.getMove(i)%record.getSize());
+        GameStatus result = game.getGameStatus();
+        if (result == GameStatus.IN_PROGRESS)
+            return;
+
+        Evaluator evaluator = new Evaluator(record.getSize(), record.getConnections());
+        byte[] board = new byte[record.getSize()*record.getSize()];
+        byte mover = record.getStarter() == 'x' ? Cell.X_CODE : Cell.O_CODE;
+        for (int ply = 0; ply < record.getMoveCount(); ply++) {
+            if (ply >= skip) {
+                ensureCapacity(this.positions+1);
+                evaluator.features(board, mover, this.features, this.positions*this.featureCount);
+                float outcome = 0.5f;
+                if (result != GameStatus.CATS)
+                    outcome = (result == GameStatus.X_WON) == (mover == Cell.X_CODE) ? 1 : 0;
+                this.results[this.positions++] = outcome;
+            }
+            board[record.getMove(ply)] = mover;
+            mover = mover == Cell.X_CODE ? Cell.O_CODE : Cell.X_CODE;
+        }
+    }
+
+    /*********************************************************************************
+     * fit
+     *********************************************************************************
+     * Minimizes the mean squared error between each result and the predicted chance
+     * of winning, 1/(1+e^-score), with full-batch Adam.
+     *
+     * @param pool - The threads the gradient is computed on.
+     * @param threads - The number of slices the positions are split into.
+     * @param weights - The starting weights.
+     * @param epochs - The number of passes over the positions.
+     * @param rate - The Adam learning rate.
+     * @return weights - The fitted weights.
+     ********************************************************************************/
+    public double[] fit(ExecutorService pool, int threads, double[] weights, int epochs, double rate)
+            throws InterruptedException, ExecutionException {
+        double[] w = weights.clone();
+        double[] gradient = new double[this.featureCount];
+        double[] m = new double[this.featureCount];
+        double[] v = new double[this.featureCount];
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            loss(pool, threads, w, gradient);
+            double correction1 = 1-Math.pow(BETA1, epoch);
+            double correction2 = 1-Math.pow(BETA2, epoch);
+            for (int f = 0; f < this.featureCount; f++) {
+                m[f] = BETA1*m[f]+(1-BETA1)*gradient[f];
+                v[f] = BETA2*v[f]+(1-BETA2)*gradient[f]*gradient[f];
+                w[f] -= rate*(m[f]/correction1)/(Math.sqrt(v[f]/correction2)+EPSILON);
+            }
+        }
+        return w;
+    }
+
+    /*********************************************************************************
+     * loss
+     *********************************************************************************
+     * Computes the mean squared error, and optionally its gradient. The positions
+     * are split into one contiguous slice per thread; every slice walks its rows of
+     * the feature matrix in order into its own gradient, and the slices are summed
+     * afterwards, so threads never write to shared memory.
+     *
+     * @param pool - The threads the slices run on.
+     * @param threads - The number of slices.
+     * @param weights - The weights to evaluate.
+     * @param gradient - Receives the gradient, or null if it is not needed.
+     * @return loss - The mean squared error.
+     ********************************************************************************/
+    public double loss(ExecutorService pool, int threads, double[] weights, double[] gradient)
+            throws InterruptedException, ExecutionException {
+        List<Future<double[]>> slices = new ArrayList<>();
+        int chunk = (this.positions+threads-1)/threads;
+        for (int t = 0; t < threads; t++) {
+            int from = Math.min(this.positions, t*chunk);
+            int to = Math.min(this.positions, from+chunk);
+            slices.add(pool.submit(() -> lossSlice(weights, from, to)));
+        }
+        double loss = 0;
+        if (gradient != null)
+            Arrays.fill(gradient, 0);
+        for (Future<double[]> slice : slices) {
+            double[] partial = slice.get();
+            loss += partial[this.featureCount];
+            if (gradient != null)
+                for (int f = 0; f < this.featureCount; f++)
+                    gradient[f] += partial[f]/this.positions;
+        }
+        return loss/Math.max(1, this.positions);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * lossSlice
+     *********************************************************************************
+     * Sums the squared error and its gradient over positions [from, to). The result
+     * holds the gradient followed by the error.
+     ********************************************************************************/
+    private double[] lossSlice(double[] weights, int from, int to) {
+        int featureCount = this.featureCount;
+        float[] features = this.features;
+        double[] result = new double[featureCount+1];
+        for (int i = from; i < to; i++) {
+            int row = i*featureCount;
+            double score = 0;
+            for (int f = 0; f < featureCount; f++)
+                score += weights[f]*features[row+f];
+            double predicted = 1/(1+Math.exp(-score));
+            double error = predicted-this.results[i];
+            result[featureCount] += error*error;
+            double scale = 2*error*predicted*(1-predicted);
+            for (int f = 0; f < featureCount; f++)
+                result[f] += scale*features[row+f];
+        }
+        return result;
+    }
+
+    /*********************************************************************************
+     * ensureCapacity
+     *********************************************************************************
+     * Grows the feature matrix and results, doubling their size when full.
+     ********************************************************************************/
+    private void ensureCapacity(int positions) {
+        if (positions <= this.results.length)
+            return;
+        int capacity = Math.max(positions, this.results.length*2);
+        this.results = Arrays.copyOf(this.results, capacity);
+        this.features = Arrays.copyOf(this.features, capacity*this.featureCount);
+    }
+
+    /*********************************************************************************
+     * selfPlay
+     *********************************************************************************
+     * Plays one EASY AI-vs-AI game from a random two-move opening, with the game
+     * and AIs taken from this thread's GamePool.
+     ********************************************************************************/
+    private static GameRecord selfPlay(int size, int connections, Random random) {
+        GamePool pool = GamePool.get();
+        SuperTicTacToeGame game = pool.acquireGame(size, connections, 'x');
+        while (game.getPly() < 2) {
+            int cell = random.nextInt(size*size);
+            if (game.getCell(cell) == Cell.EMPTY_CODE)
+                game.select(cell/size, cell%size);
+        }
+        AIConfig config = new AIConfig(Difficulty.EASY);
+        AI xAI = pool.acquireAI(game, Cell.X, config);
+        AI oAI = pool.acquireAI(game, Cell.O, config);
+        xAI.setVerbose(false);
+        oAI.setVerbose(false);
+        try {
+            while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+                Point move = (game.getCurrentPlayer() == 'x' ? xAI : oAI).think(game.getBoard());
+                game.select(move.x, move.y);
+            }
+            return GameRecord.of(game);
+        } finally {
+            pool.release(xAI);
+            pool.release(oAI);
+            pool.release(game);
+        }
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getPositions
+     *********************************************************************************
+     * Returns the number of positions in the training set.
+     * @return positions - The number of positions.
+     ********************************************************************************/
+    public int getPositions() {
+        return this.positions;
+    }
+}
@@ -0,0 +1,91 @@
+package SuperTicTacToe.Analysis;
+
+import SuperTicTacToe.Cell;
+import SuperTicTacToe.GameStatus;
+import SuperTicTacToe.SuperTicTacToeGame;
+
+import java.util.Random;
+
+public class WinCheckBenchmark {
+    //================================================================================
+    // Constants
+    //================================================================================
+    private static final int[] SIZES = {8, 14, 32, 64};
+    private static final int GAMES = 200;
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Compares the cell by cell win check with the bitmask win check by replaying
+     * the same random games with each. Usage:
+     *     WinCheckBenchmark [connections] [seconds per run]
+     ********************************************************************************/
+    public static void main(String[] args) {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+
+        System.out.printf("%6s %16s %16s %8s%n", "size", "scalar moves/s", "mask moves/s", "speedup");
+        for (int size : SIZES) {
+            int[][] games = randomGames(size, connections, new Random(size));
+            //Warm both paths up before measuring either.
+            run(size, connections, games, false, seconds/4);
+            run(size, connections, games, true, seconds/4);
+            double scalar = run(size, connections, games, false, seconds);
+            double mask = run(size, connections, games, true, seconds);
+            System.out.printf("%6d %16.0f %16.0f %7.2fx%n", size, scalar, mask, mask/scalar);
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * randomGames
+     *********************************************************************************
+     * Plays random games to completion and returns their moves.
+     ********************************************************************************/
+    private static int[][] randomGames(int size, int connections, Random random) {
+        int[][] games = new int[GAMES][];
+        for (int g = 0; g < GAMES; g++) {
+            SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, 'x');
+            while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+                int index = random.nextInt(size*size);
+                if (game.getCell(index) == Cell.EMPTY_CODE)
+                    game.select(index/size, index%size);
+            }
+            games[g] = new int[game.getPly()];
+            for (int i = 0; i < games[g].length; i++)
+                games[g][i] = game.getMove(i);
+        }
+        return games;
+    }
+
+    /*********************************************************************************
+     * run
+     *********************************************************************************
+     * Replays the games for roughly the given time and returns moves per second.
+     * Every replay must end on its last move, which doubles as a correctness check
+     * of the chosen win check.
+     ********************************************************************************/
+    private static double run(int size, int connections, int[][] games, boolean masks, double seconds) {
+        SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, 'x');
+        game.setLineMaskWinCheck(masks);
+        long moves = 0;
+        long start = System.nanoTime();
+        long deadline = start+(long) (seconds*1e9);
+        while (System.nanoTime() < deadline) {
+            for (int[] record : games) {
+                game.reset();
+                for (int move : record)
+                    game.select(move/size, move%size);
+                if (game.getGameStatus() == GameStatus.IN_PROGRESS)
+                    throw new IllegalStateException("Replay of a finished game did not finish.");
+                moves += record.length;
+            }
+        }
+        return moves/((System.nanoTime()-start)/1e9);
+    }
+}
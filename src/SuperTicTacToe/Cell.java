@@ -3,5 +3,43 @@ package SuperTicTacToe;
 public enum Cell {
     X,
     O,
-    EMPTY
+    EMPTY;
+
+    //================================================================================
+    // Byte Encoding
+    //================================================================================
+    //Flat boards (snapshots, search buffers) store one byte per cell using these codes.
+    public static final byte EMPTY_CODE = 0;
+    public static final byte X_CODE = 1;
+    public static final byte O_CODE = 2;
+
+    private static final Cell[] BY_CODE = {EMPTY, X, O};
+
+    /*********************************************************************************
+     * toByte
+     *********************************************************************************
+     * Returns the flat board code for this cell value.
+     * @return code - EMPTY_CODE, X_CODE, or O_CODE.
+     ********************************************************************************/
+    public byte toByte() {
+        switch (this) {
+            case X:
+                return X_CODE;
+            case O:
+                return O_CODE;
+            default:
+                return EMPTY_CODE;
+        }
+    }
+
+    /*********************************************************************************
+     * fromByte
+     *********************************************************************************
+     * Returns the cell value for a flat board code.
+     * @param code - EMPTY_CODE, X_CODE, or O_CODE.
+     * @return cell - The matching cell value.
+     ********************************************************************************/
+    public static Cell fromByte(byte code) {
+        return BY_CODE[code];
+    }
 }
@@ -0,0 +1,408 @@
+package SuperTicTacToe.Distributed;
+
+import SuperTicTacToe.AI.AnalysisListener;
+import SuperTicTacToe.AI.MoveAnalysis;
+import SuperTicTacToe.AI.MultiPvSearch;
+import SuperTicTacToe.Cell;
+
+import java.awt.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SearchCoordinator implements Closeable {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //How long to wait for workers to answer a CANCEL before giving up on them.
+    private static final long CANCEL_GRACE_MILLIS = 1000;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private List<Socket> sockets;
+    private List<Writer> writers;
+    //Answers of every worker, in the order they arrive, each prefixed with the
+    //worker's index. A worker whose connection closes adds a CLOSED line, and is
+    //marked dead: no more requests are sent to it.
+    private BlockingQueue<String> replies;
+    private boolean[] dead;
+    private long nextId;
+    private long nodes;
+    //In-process search, only used to list the root moves.
+    private MultiPvSearch local;
+    private int localKey;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * SearchCoordinator - Constructor
+     *********************************************************************************
+     * Connects to running search workers (see SearchWorker).
+     *
+     * @param workers - The workers' addresses.
+     ********************************************************************************/
+    public SearchCoordinator(List<InetSocketAddress> workers) throws IOException {
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("At least one worker is needed.");
+        this.sockets = new ArrayList<>();
+        this.writers = new ArrayList<>();
+        this.replies = new LinkedBlockingQueue<>();
+        this.dead = new boolean[workers.size()];
+        try {
+            for (InetSocketAddress address : workers) {
+                Socket socket = new Socket();
+                socket.connect(address);
+                socket.setTcpNoDelay(true);
+                this.sockets.add(socket);
+                this.writers.add(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)));
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                int worker = this.sockets.size()-1;
+                Thread reader = new Thread(() -> read(in, worker), "SearchCoordinator-"+address.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * analyze
+     *********************************************************************************
+     * Ranks the mover's best moves by iterative deepening, with the root moves of
+     * each depth split between the workers. The moves are dealt out in the order
+     * of the previous depth's scores, so every worker gets a share of the likely
+     * best ones. Each worker only needs exact scores for its own best count
+     * moves, as the overall best count are among them, so it cuts off the rest
+     * as a single search would (see MultiPvSearch.searchMoves). At the
+     * deadline the workers still searching are sent CANCEL and the results of the
+     * last completed depth are returned (or the moves answered so far, if not even
+     * the first depth completed). The moves of a worker that closes its
+     * connection are handed to a live one; once none is left, the analysis fails.
+     *
+     * @param board - The board, one byte code per cell (see Cell.toByte).
+     * @param mover - The player to move, X_CODE or O_CODE.
+     * @param connections - The number of connections to win the game.
+     * @param count - The number of moves to rank.
+     * @param maxDepth - The deepest depth to search.
+     * @param deadline - The System.nanoTime() value to stop at, or Long.MAX_VALUE.
+     * @param listener - Receives the results of each depth, or null.
+     * @return lines - Up to count moves, best first.
+     ********************************************************************************/
+    public List<MoveAnalysis> analyze(byte[] board, byte mover, int connections, int count, int maxDepth,
+                                      long deadline, AnalysisListener listener) throws IOException, InterruptedException {
+        if (count < 1)
+            throw new IllegalArgumentException("At least one move must be asked for.");
+        int size = (int) Math.round(Math.sqrt(board.length));
+        if (this.local == null || this.localKey != size*64+connections) {
+            this.local = new MultiPvSearch(size, connections);
+            this.localKey = size*64+connections;
+        }
+        int[] root = this.local.rootMoves(board);
+        int empty = 0;
+        StringBuilder boardText = new StringBuilder(board.length);
+        for (byte cell : board) {
+            boardText.append((char) ('0'+cell));
+            if (cell == Cell.EMPTY_CODE)
+                empty++;
+        }
+
+        this.nodes = 0;
+        Integer[] order = new Integer[root.length];
+        for (int i = 0; i < root.length; i++)
+            order[i] = i;
+        List<MoveAnalysis> result = new ArrayList<>();
+        for (int depth = 1; depth <= Math.min(maxDepth, empty) && root.length > 0; depth++) {
+            long id = ++this.nextId;
+            double[] scores = new double[root.length];
+            boolean[] exact = new boolean[root.length];
+            int[][] lines = new int[root.length][];
+            String search = "SEARCH "+id+" "+size+" "+connections+" "+mover+" "+depth+" "+count;
+            int[] owner = new int[root.length];
+            int[] outstanding = dispatch(search, order, root, owner, deadline, boardText);
+
+            boolean complete = collect(id, search, root, owner, scores, exact, lines, outstanding, deadline,
+                    boardText);
+            List<Integer> answered = new ArrayList<>();
+            for (int i = 0; i < root.length; i++)
+                if (lines[i] != null)
+                    answered.add(i);
+            if (!complete && !result.isEmpty())
+                break;
+
+            answered.sort((a, b) -> scores[a] != scores[b]
+                    ? Double.compare(scores[b], scores[a]) : Boolean.compare(exact[b], exact[a]));
+            result = new ArrayList<>();
+            for (int r = 0; r < Math.min(count, answered.size()); r++) {
+                int i = answered.get(r);
+                result.add(toAnalysis(size, root[i], scores[i], depth, lines[i]));
+            }
+            if (!complete)
+                break;
+            if (listener != null)
+                listener.depthCompleted(depth, result);
+
+            Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            //A forced result for the best move will not change at a greater depth.
+            if (Math.abs(scores[order[0]]) >= MultiPvSearch.WIN_THRESHOLD)
+                break;
+        }
+        return result;
+    }
+
+    /*********************************************************************************
+     * close
+     *********************************************************************************
+     * Disconnects from the workers. The workers keep running.
+     ********************************************************************************/
+    @Override
+    public void close() {
+        for (Socket socket : this.sockets) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                //Already closed.
+            }
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * dispatch
+     *********************************************************************************
+     * Deals the root moves out to the live workers round robin and sends each
+     * worker its SEARCH request. A worker whose send fails is still counted: its
+     * reader reports CLOSED, and collect hands its moves on.
+     *
+     * @param owner - Receives the worker of each root move.
+     * @return outstanding - The number of requests sent to each worker.
+     ********************************************************************************/
+    private int[] dispatch(String search, Integer[] order, int[] root, int[] owner, long deadline,
+                           StringBuilder boardText) throws IOException {
+        List<Integer> live = new ArrayList<>();
+        for (int w = 0; w < this.writers.size(); w++)
+            if (!this.dead[w])
+                live.add(w);
+        if (live.isEmpty())
+            throw new IOException("No search worker is left.");
+        int[] outstanding = new int[this.writers.size()];
+        List<StringBuilder> moves = new ArrayList<>();
+        for (int w = 0; w < this.writers.size(); w++)
+            moves.add(new StringBuilder());
+        for (int i = 0; i < order.length; i++) {
+            int w = live.get(i%live.size());
+            owner[order[i]] = w;
+            StringBuilder sb = moves.get(w);
+            sb.append(sb.length() > 0 ? "," : "").append(root[order[i]]);
+        }
+        for (int w : live) {
+            if (moves.get(w).length() == 0)
+                continue;
+            outstanding[w]++;
+            try {
+                send(w, request(search, deadline, boardText, moves.get(w)));
+            } catch (IOException ex) {
+                //Handled once the CLOSED line arrives.
+            }
+        }
+        return outstanding;
+    }
+
+    /*********************************************************************************
+     * request
+     *********************************************************************************
+     * Completes a SEARCH request with the time left until the deadline, the board
+     * and the moves.
+     ********************************************************************************/
+    private static String request(String search, long deadline, StringBuilder boardText, CharSequence moves) {
+        long timeout = deadline == Long.MAX_VALUE ? 0 : Math.max(1, (deadline-System.nanoTime())/1000000L);
+        return search+" "+timeout+" "+boardText+" "+moves;
+    }
+
+    /*********************************************************************************
+     * collect
+     *********************************************************************************
+     * Reads the answers to one request until every worker is done or the deadline
+     * passes. Stragglers are sent CANCEL, and their answers are drained for a short
+     * grace period so they do not mix with the next request's. When a worker
+     * closes its connection, its unanswered moves are sent to a live worker under
+     * the same id.
+     *
+     * @param outstanding - The requests of this id each worker has not finished.
+     * @return complete - Whether or not every worker finished all its moves.
+     ********************************************************************************/
+    private boolean collect(long id, String search, int[] root, int[] owner, double[] scores, boolean[] exact,
+                            int[][] lines, int[] outstanding, long deadline, StringBuilder boardText)
+            throws IOException, InterruptedException {
+        boolean complete = true;
+        boolean cancelled = false;
+        long graceEnd = Long.MAX_VALUE;
+        int pending = 0;
+        for (int requests : outstanding)
+            pending += requests;
+        while (pending > 0) {
+            long wait = cancelled ? graceEnd-System.nanoTime()
+                    : deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline-System.nanoTime();
+            String reply = wait <= 0 ? null : this.replies.poll(wait, TimeUnit.NANOSECONDS);
+            if (reply == null) {
+                if (cancelled)
+                    break;
+                complete = false;
+                cancelled = true;
+                graceEnd = System.nanoTime()+CANCEL_GRACE_MILLIS*1000000L;
+                for (int w = 0; w < this.writers.size(); w++)
+                    if (!this.dead[w])
+                        send(w, "CANCEL "+id);
+                continue;
+            }
+            String[] parts = reply.split(" ");
+            int worker = Integer.parseInt(parts[0]);
+            if (parts[1].equals("CLOSED")) {
+                this.dead[worker] = true;
+                pending -= outstanding[worker];
+                outstanding[worker] = 0;
+                if (!cancelled)
+                    pending += reassign(search, root, owner, lines, worker, outstanding, deadline, boardText);
+                continue;
+            }
+            if (Long.parseLong(parts[2]) != id)
+                continue;
+            if (parts[1].equals("DONE")) {
+                this.nodes += Long.parseLong(parts[3]);
+                outstanding[worker]--;
+                pending--;
+            } else if (parts[1].equals("MOVE")) {
+                int cell = Integer.parseInt(parts[3]);
+                int i = 0;
+                while (root[i] != cell)
+                    i++;
+                scores[i] = Double.parseDouble(parts[4]);
+                exact[i] = parts[5].equals("1");
+                String[] variation = parts[6].split(",");
+                lines[i] = new int[variation.length];
+                for (int j = 0; j < variation.length; j++)
+                    lines[i][j] = Integer.parseInt(variation[j]);
+            }
+        }
+        for (int[] line : lines)
+            if (line == null)
+                complete = false;
+        return complete;
+    }
+
+    /*********************************************************************************
+     * reassign
+     *********************************************************************************
+     * Sends the unanswered moves of a dead worker to the live worker with the
+     * fewest requests outstanding.
+     *
+     * @return requests - The number of requests sent (0 or 1).
+     ********************************************************************************/
+    private int reassign(String search, int[] root, int[] owner, int[][] lines, int worker, int[] outstanding,
+                         long deadline, StringBuilder boardText) throws IOException {
+        StringBuilder moves = new StringBuilder();
+        int target = -1;
+        for (int w = 0; w < this.writers.size(); w++)
+            if (!this.dead[w] && (target < 0 || outstanding[w] < outstanding[target]))
+                target = w;
+        for (int i = 0; i < root.length; i++) {
+            if (owner[i] != worker || lines[i] != null)
+                continue;
+            if (target < 0)
+                throw new IOException("Every search worker closed its connection.");
+            owner[i] = target;
+            moves.append(moves.length() > 0 ? "," : "").append(root[i]);
+        }
+        if (moves.length() == 0)
+            return 0;
+        outstanding[target]++;
+        try {
+            send(target, request(search, deadline, boardText, moves));
+        } catch (IOException ex) {
+            //Handled once the CLOSED line arrives.
+        }
+        return 1;
+    }
+
+    /*********************************************************************************
+     * read
+     *********************************************************************************
+     * Copies one worker's answers into the shared reply queue, prefixed with the
+     * worker's index.
+     ********************************************************************************/
+    private void read(BufferedReader in, int worker) {
+        try {
+            String line;
+            while ((line = in.readLine()) != null)
+                this.replies.add(worker+" "+line);
+        } catch (IOException ex) {
+            //Reported below.
+        }
+        this.replies.add(worker+" CLOSED");
+    }
+
+    /*********************************************************************************
+     * send
+     *********************************************************************************
+     * Sends one request line to a worker.
+     ********************************************************************************/
+    private void send(int worker, String request) throws IOException {
+        Writer out = this.writers.get(worker);
+        out.write(request+"\n");
+        out.flush();
+    }
+
+    /*********************************************************************************
+     * toAnalysis
+     *********************************************************************************
+     * Converts a root move, its score and its variation to a MoveAnalysis.
+     ********************************************************************************/
+    private static MoveAnalysis toAnalysis(int size, int cell, double score, int depth, int[] line) {
+        List<Point> variation = new ArrayList<>(line.length);
+        for (int move : line)
+            variation.add(new Point(move/size, move%size));
+        return new MoveAnalysis(new Point(cell/size, cell%size), score, depth, variation);
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getWorkerCount
+     *********************************************************************************
+     * Returns the number of workers still connected.
+     * @return workers - The number of live workers.
+     ********************************************************************************/
+    public int getWorkerCount() {
+        int live = 0;
+        for (boolean closed : this.dead)
+            if (!closed)
+                live++;
+        return live;
+    }
+
+    /*********************************************************************************
+     * getNodes
+     *********************************************************************************
+     * Returns the nodes the workers reported for the last analysis.
+     * @return nodes - The number of nodes.
+     ********************************************************************************/
+    public long getNodes() {
+        return this.nodes;
+    }
+}
@@ -0,0 +1,213 @@
+package SuperTicTacToe.Distributed;
+
+import SuperTicTacToe.AI.MultiPvSearch;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SearchWorker {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private ServerSocket server;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * SearchWorker - Constructor
+     *********************************************************************************
+     * Opens the worker's listening socket on the loopback interface.
+     *
+     * @param port - The port to listen on, or 0 for any free port.
+     ********************************************************************************/
+    public SearchWorker(int port) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    //================================================================================
+    // Main Method
+    //================================================================================
+    /*********************************************************************************
+     * main
+     *********************************************************************************
+     * Runs a search worker until it is killed. Usage:
+     *     SearchWorker [--port n]
+     * The first line printed is "SearchWorker listening on <port>", so a process
+     * that started the worker with port 0 can find it.
+     ********************************************************************************/
+    public static void main(String[] args) throws IOException {
+        int port = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+        SearchWorker worker = new SearchWorker(port);
+        System.out.println("SearchWorker listening on "+worker.getPort());
+        System.out.flush();
+        worker.serve();
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * serve
+     *********************************************************************************
+     * Accepts coordinators forever, each on its own thread.
+     ********************************************************************************/
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket = this.server.accept();
+            socket.setTcpNoDelay(true);
+            Thread thread = new Thread(() -> handle(socket), "SearchWorker-"+socket.getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * handle
+     *********************************************************************************
+     * Serves one coordinator. Requests are read on this thread and searched one at
+     * a time on a second thread, so a CANCEL can reach the running search:
+     *     SEARCH id size connections mover depth count timeoutMillis board moves
+     *     CANCEL id
+     * The board is one digit (cell byte code) per cell and the moves are comma
+     * separated cell indices (see MultiPvSearch.searchMoves for count). For every
+     * move searched the worker answers
+     *     MOVE id cell score exact variation
+     * with exact 1 or 0 and the variation as comma separated cells, and ends every
+     * request with
+     *     DONE id nodes
+     * whether it finished, timed out, or was cancelled.
+     ********************************************************************************/
+    private void handle(Socket socket) {
+        ExecutorService searcher = Executors.newSingleThreadExecutor();
+        Map<Integer, MultiPvSearch> searches = new HashMap<>();
+        Set<Long> cancelled = ConcurrentHashMap.newKeySet();
+        MultiPvSearch[] running = new MultiPvSearch[1];
+        long[] runningId = new long[1];
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(" ");
+                switch (parts[0]) {
+                    case "SEARCH":
+                        searcher.execute(() -> {
+                            long id = Long.parseLong(parts[1]);
+                            int size = Integer.parseInt(parts[2]);
+                            int connections = Integer.parseInt(parts[3]);
+                            MultiPvSearch search = searches.computeIfAbsent(size*64+connections,
+                                    key -> new MultiPvSearch(size, connections));
+                            synchronized (running) {
+                                running[0] = search;
+                                runningId[0] = id;
+                            }
+                            search(search, parts, cancelled.remove(id), out);
+                            synchronized (running) {
+                                running[0] = null;
+                            }
+                        });
+                        break;
+                    case "CANCEL":
+                        long id = Long.parseLong(parts[1]);
+                        synchronized (running) {
+                            if (running[0] != null && runningId[0] == id)
+                                running[0].cancel();
+                            else
+                                cancelled.add(id);
+                        }
+                        break;
+                    default:
+                        System.err.println("Unknown request "+parts[0]);
+                }
+            }
+        } catch (IOException ex) {
+            //The coordinator went away.
+        } finally {
+            searcher.shutdownNow();
+        }
+    }
+
+    /*********************************************************************************
+     * search
+     *********************************************************************************
+     * Runs one SEARCH request and writes its answers. A request cancelled before
+     * it started is answered with DONE straight away.
+     ********************************************************************************/
+    private static void search(MultiPvSearch search, String[] parts, boolean cancelled, Writer out) {
+        long id = Long.parseLong(parts[1]);
+        byte mover = Byte.parseByte(parts[4]);
+        int depth = Integer.parseInt(parts[5]);
+        int count = Integer.parseInt(parts[6]);
+        long timeout = Long.parseLong(parts[7]);
+        byte[] board = new byte[parts[8].length()];
+        for (int i = 0; i < board.length; i++)
+            board[i] = (byte) (parts[8].charAt(i)-'0');
+        String[] cells = parts.length > 9 ? parts[9].split(",") : new String[0];
+        int[] moves = new int[cells.length];
+        for (int i = 0; i < moves.length; i++)
+            moves[i] = Integer.parseInt(cells[i]);
+
+        StringBuilder sb = new StringBuilder();
+        long nodes = 0;
+        if (!cancelled && moves.length > 0) {
+            search.setDeadline(timeout > 0 ? System.nanoTime()+timeout*1000000L : Long.MAX_VALUE);
+            double[] scores = new double[moves.length];
+            boolean[] exact = new boolean[moves.length];
+            int[][] lines = new int[moves.length][];
+            int completed = search.searchMoves(board, mover, moves, depth, count, scores, exact, lines);
+            nodes = search.getNodes();
+            for (int i = 0; i < completed; i++) {
+                sb.append("MOVE ").append(id).append(' ').append(moves[i]).append(' ').append(scores[i])
+                        .append(exact[i] ? " 1 " : " 0 ");
+                for (int j = 0; j < lines[i].length; j++)
+                    sb.append(j > 0 ? "," : "").append(lines[i][j]);
+                sb.append('\n');
+            }
+        }
+        sb.append("DONE ").append(id).append(' ').append(nodes).append('\n');
+        try {
+            synchronized (out) {
+                out.write(sb.toString());
+                out.flush();
+            }
+        } catch (IOException ex) {
+            //The coordinator went away; the reader thread notices.
+        }
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getPort
+     *********************************************************************************
+     * Returns the port the worker listens on.
+     * @return port - The port number.
+     ********************************************************************************/
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+}
@@ -0,0 +1,213 @@
+package SuperTicTacToe;
+
+import java.util.Arrays;
+
+public final class GameSnapshot {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final int size;
+    private final int connections;
+    private final char starter;
+    private final char currentPlayer;
+    private final GameStatus status;
+
+    //One byte per cell (see Cell.toByte), indexed by row*size+col.
+    private final byte[] cells;
+    //Cell indices of every move played, in order.
+    private final int[] moves;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * GameSnapshot - Constructor
+     *********************************************************************************
+     * Wraps arrays that are already owned by the snapshot. Snapshots are created by
+     * SuperTicTacToeGame.snapshot, which hands over fresh copies of its state.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     * @param starter - The starting player.
+     * @param currentPlayer - The player to move.
+     * @param status - The status of the game.
+     * @param cells - The flat board, owned by the snapshot.
+     * @param moves - The move history, owned by the snapshot.
+     ********************************************************************************/
+    GameSnapshot(int size, int connections, char starter, char currentPlayer,
+                 GameStatus status, byte[] cells, int[] moves) {
+        this.size = size;
+        this.connections = connections;
+        this.starter = starter;
+        this.currentPlayer = currentPlayer;
+        this.status = status;
+        this.cells = cells;
+        this.moves = moves;
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * toGame
+     *********************************************************************************
+     * Restores a new, independent game from this snapshot. Snapshots are immutable,
+     * so one snapshot may be shared between threads that each restore their own game.
+     *
+     * @return game - The restored game.
+     ********************************************************************************/
+    public SuperTicTacToeGame toGame() {
+        return new SuperTicTacToeGame(this);
+    }
+
+    /*********************************************************************************
+     * copyCells
+     *********************************************************************************
+     * Returns a copy of the flat board.
+     * @return cells - One byte code per cell, indexed by row*size+col.
+     ********************************************************************************/
+    public byte[] copyCells() {
+        return this.cells.clone();
+    }
+
+    /*********************************************************************************
+     * copyCells
+     *********************************************************************************
+     * Copies the flat board into a caller-provided buffer, so workers can reuse
+     * their own arrays.
+     * @param dest - A buffer of at least size*size bytes.
+     ********************************************************************************/
+    public void copyCells(byte[] dest) {
+        System.arraycopy(this.cells, 0, dest, 0, this.cells.length);
+    }
+
+    /*********************************************************************************
+     * copyMoves
+     *********************************************************************************
+     * Copies the move history into a caller-provided buffer.
+     * @param dest - A buffer of at least getPly() ints.
+     * @return ply - The number of moves copied.
+     ********************************************************************************/
+    public int copyMoves(int[] dest) {
+        System.arraycopy(this.moves, 0, dest, 0, this.moves.length);
+        return this.moves.length;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getCell
+     *********************************************************************************
+     * Returns the cell value at the given position.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     * @return cell - The cell value.
+     ********************************************************************************/
+    public Cell getCell(int row, int col) {
+        return Cell.fromByte(this.cells[row*this.size+col]);
+    }
+
+    /*********************************************************************************
+     * getCellCode
+     *********************************************************************************
+     * Returns the byte code (see Cell.toByte) of the cell at the given index.
+     * @param index - The cell index (row*size+col).
+     * @return code - The cell's byte code.
+     ********************************************************************************/
+    public byte getCellCode(int index) {
+        return this.cells[index];
+    }
+
+    /*********************************************************************************
+     * getMove
+     *********************************************************************************
+     * Returns the cell index of the move played at the given ply.
+     * @param ply - The zero based ply.
+     * @return index - The cell index of the move.
+     ********************************************************************************/
+    public int getMove(int ply) {
+        return this.moves[ply];
+    }
+
+    /*********************************************************************************
+     * getPly
+     *********************************************************************************
+     * Returns the number of moves played.
+     * @return ply - The number of moves played.
+     ********************************************************************************/
+    public int getPly() {
+        return this.moves.length;
+    }
+
+    /*********************************************************************************
+     * getSize
+     *********************************************************************************
+     * Returns the width (and height) of the board.
+     * @return size - The size of the game board.
+     ********************************************************************************/
+    public int getSize() {
+        return this.size;
+    }
+
+    /*********************************************************************************
+     * getConnections
+     *********************************************************************************
+     * Returns the connections to win.
+     * @return connections - The connections to win the game.
+     ********************************************************************************/
+    public int getConnections() {
+        return this.connections;
+    }
+
+    /*********************************************************************************
+     * getStarter
+     *********************************************************************************
+     * Returns the player that started the game.
+     * @return starter - The starting player ('x'/'o').
+     ********************************************************************************/
+    public char getStarter() {
+        return this.starter;
+    }
+
+    /*********************************************************************************
+     * getCurrentPlayer
+     *********************************************************************************
+     * Returns the player whose turn it is.
+     * @return currentPlayer - The player to move ('x'/'o').
+     ********************************************************************************/
+    public char getCurrentPlayer() {
+        return this.currentPlayer;
+    }
+
+    /*********************************************************************************
+     * getGameStatus
+     *********************************************************************************
+     * Returns the status of the game.
+     * @return status - The status of the game.
+     ********************************************************************************/
+    public GameStatus getGameStatus() {
+        return this.status;
+    }
+
+    //================================================================================
+    // Object Methods
+    //================================================================================
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof GameSnapshot))
+            return false;
+        GameSnapshot other = (GameSnapshot) o;
+        return this.size == other.size
+                && this.connections == other.connections
+                && this.currentPlayer == other.currentPlayer
+                && Arrays.equals(this.cells, other.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31*Arrays.hashCode(this.cells)+this.currentPlayer;
+    }
+}
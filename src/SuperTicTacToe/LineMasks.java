@@ -0,0 +1,139 @@
+package SuperTicTacToe;
+
+import java.util.Arrays;
+
+final class LineMasks {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //A line's cells must fit into the bits of a single long.
+    static final int MAX_SIZE = 64;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final int size;
+    //Per player (X first, then O), one mask per line: rows, columns, diagonals, then
+    //anti diagonals. Bit c is set when that player owns the line's cell in column c
+    //(row r for columns).
+    private final long[] masks;
+    private final int linesPerPlayer;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * LineMasks - Constructor
+     *********************************************************************************
+     * Creates empty masks for a board of the given size.
+     *
+     * @param size - The size of the game board. (At most MAX_SIZE.)
+     ********************************************************************************/
+    LineMasks(int size) {
+        this.size = size;
+        //size rows, size columns, 2*size-1 diagonals, 2*size-1 anti diagonals.
+        this.linesPerPlayer = 6*size-2;
+        this.masks = new long[2*this.linesPerPlayer];
+    }
+
+    /*********************************************************************************
+     * LineMasks - Copy Constructor
+     *********************************************************************************
+     * Creates an independent copy of another set of masks.
+     *
+     * @param other - The masks to copy.
+     ********************************************************************************/
+    LineMasks(LineMasks other) {
+        this.size = other.size;
+        this.linesPerPlayer = other.linesPerPlayer;
+        this.masks = other.masks.clone();
+    }
+
+    //================================================================================
+    // Package Methods
+    //================================================================================
+    /*********************************************************************************
+     * set
+     *********************************************************************************
+     * Records that a player owns a cell, in all four lines through the cell.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     ********************************************************************************/
+    void set(byte player, int row, int col) {
+        int base = player == Cell.X_CODE ? 0 : this.linesPerPlayer;
+        this.masks[base+row] |= 1L << col;
+        this.masks[base+this.size+col] |= 1L << row;
+        this.masks[base+2*this.size+(row-col+this.size-1)] |= 1L << col;
+        this.masks[base+4*this.size-1+(row+col)] |= 1L << col;
+    }
+
+    /*********************************************************************************
+     * clear
+     *********************************************************************************
+     * Removes a player's ownership of a cell from all four lines through the cell.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     ********************************************************************************/
+    void clear(byte player, int row, int col) {
+        int base = player == Cell.X_CODE ? 0 : this.linesPerPlayer;
+        this.masks[base+row] &= ~(1L << col);
+        this.masks[base+this.size+col] &= ~(1L << row);
+        this.masks[base+2*this.size+(row-col+this.size-1)] &= ~(1L << col);
+        this.masks[base+4*this.size-1+(row+col)] &= ~(1L << col);
+    }
+
+    /*********************************************************************************
+     * reset
+     *********************************************************************************
+     * Clears every mask.
+     ********************************************************************************/
+    void reset() {
+        Arrays.fill(this.masks, 0L);
+    }
+
+    /*********************************************************************************
+     * hasWin
+     *********************************************************************************
+     * Determines whether any of the four lines through a cell holds a run of the
+     * given length for the player.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     * @param connections - The run length needed to win.
+     * @return result - Whether or not the player has won through the cell.
+     ********************************************************************************/
+    boolean hasWin(byte player, int row, int col, int connections) {
+        int base = player == Cell.X_CODE ? 0 : this.linesPerPlayer;
+        return hasRun(this.masks[base+row], connections)
+                || hasRun(this.masks[base+this.size+col], connections)
+                || hasRun(this.masks[base+2*this.size+(row-col+this.size-1)], connections)
+                || hasRun(this.masks[base+4*this.size-1+(row+col)], connections);
+    }
+
+    /*********************************************************************************
+     * hasRun
+     *********************************************************************************
+     * Determines whether a mask holds at least the given number of consecutive set
+     * bits. After "bits &= bits >>> m" a bit stays set only where a run of m+1
+     * starts, so doubling m reaches any run length in log2(length) steps.
+     *
+     * @param bits - The line mask.
+     * @param length - The run length to look for.
+     * @return result - Whether or not such a run exists.
+     ********************************************************************************/
+    static boolean hasRun(long bits, int length) {
+        int run = 1;
+        while (run*2 <= length && bits != 0) {
+            bits &= bits >>> run;
+            run *= 2;
+        }
+        if (run < length)
+            bits &= bits >>> (length-run);
+        return bits != 0;
+    }
+}
@@ -0,0 +1,32 @@
+package SuperTicTacToe.Monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("SuperTicTacToe.GameEnd")
+@Label("Game End")
+@Category("Super Tic Tac Toe")
+@Description("A monitored game was won or drawn.")
+public class GameEndEvent extends Event {
+    @Label("Board Size")
+    public int boardSize;
+
+    @Label("Connections")
+    public int connections;
+
+    @Label("Plies")
+    public int plies;
+
+    @Label("Result")
+    @Description("The final GameStatus.")
+    public String result;
+
+    @Label("Game Duration")
+    @Description("Time from the first move to the last.")
+    @Timespan(Timespan.NANOSECONDS)
+    public long gameDuration;
+}
@@ -0,0 +1,312 @@
+package SuperTicTacToe.Monitoring;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GameStats implements GameStatsMBean {
+    //================================================================================
+    // Constants
+    //================================================================================
+    public static final String OBJECT_NAME = "SuperTicTacToe:type=GameStats";
+
+    //Latencies are bucketed in microseconds: four buckets per power of two, which
+    //keeps every percentile within 25% of the true value.
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int BUCKETS = 64 << SUB_BUCKET_BITS;
+    //Moves per second is measured over at least this long.
+    private static final long RATE_INTERVAL_NANOS = 1000000000L;
+
+    private static final GameStats INSTANCE = register(new GameStats());
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    //Counters are LongAdders so that recording from many threads does not contend.
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder gamesInProgress = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder thinks = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder tableProbes = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder cacheProbes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final AtomicLongArray thinkLatency = new AtomicLongArray(BUCKETS);
+
+    private long rateStartNanos;
+    private long rateStartMoves;
+    private double movesPerSecond;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    private GameStats() {
+        this.rateStartNanos = System.nanoTime();
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * get
+     *********************************************************************************
+     * Returns the process-wide statistics, which are also registered with the
+     * platform MBean server as SuperTicTacToe:type=GameStats.
+     *
+     * @return stats - The shared statistics.
+     ********************************************************************************/
+    public static GameStats get() {
+        return INSTANCE;
+    }
+
+    /*********************************************************************************
+     * moveSelected
+     *********************************************************************************
+     * Counts a move played in a monitored game.
+     ********************************************************************************/
+    public void moveSelected() {
+        this.moves.increment();
+    }
+
+    /*********************************************************************************
+     * gameEntered
+     *********************************************************************************
+     * Counts a monitored game that has started and is not yet decided.
+     ********************************************************************************/
+    public void gameEntered() {
+        this.gamesInProgress.increment();
+    }
+
+    /*********************************************************************************
+     * gameLeft
+     *********************************************************************************
+     * Removes a game from the games in progress, because it was decided or reset.
+     ********************************************************************************/
+    public void gameLeft() {
+        this.gamesInProgress.decrement();
+    }
+
+    /*********************************************************************************
+     * gameFinished
+     *********************************************************************************
+     * Counts a monitored game that was won or drawn.
+     ********************************************************************************/
+    public void gameFinished() {
+        this.gamesFinished.increment();
+    }
+
+    /*********************************************************************************
+     * thinkCompleted
+     *********************************************************************************
+     * Records the latency and search effort of one AI move.
+     *
+     * @param nanos - How long the move took.
+     * @param nodes - The nodes searched for the move.
+     ********************************************************************************/
+    public void thinkCompleted(long nanos, long nodes) {
+        this.thinks.increment();
+        this.nodes.add(nodes);
+        this.thinkLatency.incrementAndGet(bucket(nanos/1000));
+    }
+
+    /*********************************************************************************
+     * tableProbed
+     *********************************************************************************
+     * Records lookups in a search's node table.
+     *
+     * @param probes - The number of lookups.
+     * @param hits - The number of lookups that found their entry.
+     ********************************************************************************/
+    public void tableProbed(long probes, long hits) {
+        this.tableProbes.add(probes);
+        this.tableHits.add(hits);
+    }
+
+    /*********************************************************************************
+     * cacheProbed
+     *********************************************************************************
+     * Records one lookup in the position cache.
+     *
+     * @param hit - Whether or not the position was found.
+     ********************************************************************************/
+    public void cacheProbed(boolean hit) {
+        this.cacheProbes.increment();
+        if (hit)
+            this.cacheHits.increment();
+    }
+
+    //================================================================================
+    // MBean Methods
+    //================================================================================
+    @Override
+    public synchronized double getMovesPerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now-this.rateStartNanos;
+        if (elapsed >= RATE_INTERVAL_NANOS) {
+            long total = this.moves.sum();
+            this.movesPerSecond = (total-this.rateStartMoves)/(elapsed/1e9);
+            this.rateStartNanos = now;
+            this.rateStartMoves = total;
+        }
+        return this.movesPerSecond;
+    }
+
+    @Override
+    public long getMoves() {
+        return this.moves.sum();
+    }
+
+    @Override
+    public long getGamesInProgress() {
+        return this.gamesInProgress.sum();
+    }
+
+    @Override
+    public long getGamesFinished() {
+        return this.gamesFinished.sum();
+    }
+
+    @Override
+    public long getThinks() {
+        return this.thinks.sum();
+    }
+
+    @Override
+    public double getThinkLatencyP50Millis() {
+        return percentile(0.50);
+    }
+
+    @Override
+    public double getThinkLatencyP90Millis() {
+        return percentile(0.90);
+    }
+
+    @Override
+    public double getThinkLatencyP99Millis() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public double getThinkLatencyMaxMillis() {
+        return percentile(1.0);
+    }
+
+    @Override
+    public long getNodesSearched() {
+        return this.nodes.sum();
+    }
+
+    @Override
+    public double getSolverTableHitRate() {
+        long probes = this.tableProbes.sum();
+        return probes == 0 ? 0 : (double) this.tableHits.sum()/probes;
+    }
+
+    @Override
+    public double getPositionCacheHitRate() {
+        long probes = this.cacheProbes.sum();
+        return probes == 0 ? 0 : (double) this.cacheHits.sum()/probes;
+    }
+
+    /*********************************************************************************
+     * reset
+     *********************************************************************************
+     * Clears the counters and latency histogram. Games in progress are left alone,
+     * since they are a live gauge rather than a total.
+     ********************************************************************************/
+    @Override
+    public synchronized void reset() {
+        this.moves.reset();
+        this.gamesFinished.reset();
+        this.thinks.reset();
+        this.nodes.reset();
+        this.tableProbes.reset();
+        this.tableHits.reset();
+        this.cacheProbes.reset();
+        this.cacheHits.reset();
+        for (int i = 0; i < BUCKETS; i++)
+            this.thinkLatency.set(i, 0);
+        this.rateStartNanos = System.nanoTime();
+        this.rateStartMoves = 0;
+        this.movesPerSecond = 0;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * bucket
+     *********************************************************************************
+     * Returns the histogram bucket of a latency in microseconds. Values below four
+     * get a bucket each; above that, each power of two is split in four.
+     ********************************************************************************/
+    private static int bucket(long micros) {
+        if (micros < (1 << SUB_BUCKET_BITS))
+            return (int) Math.max(micros, 0);
+        int octave = 63-Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (octave-SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS)-1);
+        return (octave << SUB_BUCKET_BITS)+sub;
+    }
+
+    /*********************************************************************************
+     * bucketLimit
+     *********************************************************************************
+     * Returns the upper bound, in microseconds, of a histogram bucket.
+     ********************************************************************************/
+    private static long bucketLimit(int bucket) {
+        int octave = bucket >>> SUB_BUCKET_BITS;
+        int sub = bucket & ((1 << SUB_BUCKET_BITS)-1);
+        if (octave < SUB_BUCKET_BITS)
+            return bucket+1;
+        return (long) ((1 << SUB_BUCKET_BITS)+sub+1) << (octave-SUB_BUCKET_BITS);
+    }
+
+    /*********************************************************************************
+     * percentile
+     *********************************************************************************
+     * Returns the think latency below which the given fraction of moves fell, in
+     * milliseconds, rounded up to the end of its histogram bucket.
+     ********************************************************************************/
+    private double percentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.thinkLatency.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(fraction*total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target)
+                return bucketLimit(i)/1000.0;
+        }
+        return bucketLimit(BUCKETS-1)/1000.0;
+    }
+
+    /*********************************************************************************
+     * register
+     *********************************************************************************
+     * Registers the statistics with the platform MBean server, on a background
+     * thread: starting the MBean server takes longer than a short game, and
+     * nothing has to wait for it. Counting still works if registration fails (for
+     * example, when the name is already taken).
+     ********************************************************************************/
+    private static GameStats register(GameStats stats) {
+        Thread thread = new Thread(() -> {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(OBJECT_NAME));
+            } catch (JMException | SecurityException ex) {
+                System.err.println("GameStats MBean not registered: "+ex.getMessage());
+            }
+        }, "GameStats-register");
+        thread.setDaemon(true);
+        thread.start();
+        return stats;
+    }
+}
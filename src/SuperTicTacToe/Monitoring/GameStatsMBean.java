@@ -0,0 +1,17 @@
+package SuperTicTacToe.Monitoring;
+
+public interface GameStatsMBean {
+    double getMovesPerSecond();
+    long getMoves();
+    long getGamesInProgress();
+    long getGamesFinished();
+    long getThinks();
+    double getThinkLatencyP50Millis();
+    double getThinkLatencyP90Millis();
+    double getThinkLatencyP99Millis();
+    double getThinkLatencyMaxMillis();
+    long getNodesSearched();
+    double getSolverTableHitRate();
+    double getPositionCacheHitRate();
+    void reset();
+}
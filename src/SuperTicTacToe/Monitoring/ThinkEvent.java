@@ -0,0 +1,32 @@
+package SuperTicTacToe.Monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("SuperTicTacToe.Think")
+@Label("AI Think")
+@Category("Super Tic Tac Toe")
+@Description("One call to AI.think, from observing the board to returning a move.")
+public class ThinkEvent extends Event {
+    @Label("Board Size")
+    public int boardSize;
+
+    @Label("Ply")
+    @Description("Number of moves on the board when the AI was asked.")
+    public int ply;
+
+    @Label("Depth")
+    @Description("Deepest threat-search depth limit reached, in attacker moves.")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Threat-search and solver nodes searched for the move.")
+    public long nodes;
+
+    @Label("Strategy")
+    @Description("The AIStatus that produced the move.")
+    public String strategy;
+}
@@ -0,0 +1,521 @@
+package SuperTicTacToe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32C;
+
+public class MoveLog implements Closeable {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Record types.
+    private static final int START = 1;
+    private static final int MOVE = 2;
+    private static final int UNDO = 3;
+    private static final int RESET = 4;
+    private static final int END = 5;
+
+    //A record is the game id and the type (top 4 bits) with its argument, 4 bytes
+    //each. Each group commit is written as a block: its length and the CRC-32C of
+    //its records, then the records.
+    private static final int RECORD_BYTES = 8;
+    private static final int HEADER_BYTES = 8;
+    private static final int ARGUMENT_MASK = (1 << 28)-1;
+    //Records not yet on disk; appends wait only once this many are pending. The
+    //largest block is all of them (4 MB). With a single core the flusher runs on
+    //a game thread's time, so it commits rarely and in large blocks: a smaller
+    //ring or interval makes more commits for the same records.
+    private static final int RING_RECORDS = 1 << 19;
+    private static final int BUFFER_BYTES = RING_RECORDS*RECORD_BYTES;
+    public static final long DEFAULT_COMMIT_MICROS = 10000;
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private Path file;
+    private FileChannel channel;
+    //Appends reserve a sequence number from tail, then store their record (never
+    //0, as its type is not) in the ring slot of that number. Slots are set back
+    //to 0 once copied out, and reused after flushed passes them. No lock is taken
+    //on the way.
+    private final AtomicLongArray ring = new AtomicLongArray(RING_RECORDS);
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long flushed;
+    //The lock only guards the group commit: waking the flusher and waiting for it.
+    private final Object lock = new Object();
+    //Used by the flusher only.
+    private ByteBuffer block;
+    private ByteBuffer header;
+    private CRC32C crc;
+    private Thread flusher;
+    private volatile boolean closed;
+    private volatile boolean flusherWaiting;
+    //Threads in awaitDurable, which have the flusher commit at once.
+    private int waiters;
+    private long commitNanos = DEFAULT_COMMIT_MICROS*1000;
+    private volatile IOException failure;
+
+    //Records written and forced to disk.
+    private long durable;
+    private long commits;
+    private final AtomicLong nextGameId = new AtomicLong();
+    //In-progress games found in the log when it was opened, by game id.
+    private Map<Integer, SuperTicTacToeGame> recovered;
+    //Whether or not the replay stopped before the end of the file.
+    private boolean damaged;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * MoveLog - Constructor
+     *********************************************************************************
+     * Opens (or creates) a write-ahead log of moves. The games still in progress
+     * in an existing log are replayed (see getRecoveredGames) up to the first
+     * block that is torn or damaged (see replay). The log is then compacted: the
+     * recovered games are written to a new file, which is forced to disk and
+     * moved over the old one, and appends continue there. If the replay stopped
+     * before the end of the old file, the old file is first renamed with a
+     * .corrupt suffix rather than replaced, so what could not be read is kept.
+     * The recovered games are attached to this log.
+     *
+     * @param file - The log file.
+     ********************************************************************************/
+    public MoveLog(Path file) throws IOException {
+        this.file = file;
+        this.crc = new CRC32C();
+        this.block = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        this.header = ByteBuffer.allocateDirect(HEADER_BYTES);
+        this.recovered = replay(file);
+        for (int id : this.recovered.keySet())
+            this.nextGameId.accumulateAndGet(id+1, Math::max);
+
+        Path compacted = file.resolveSibling(file.getFileName()+".compact");
+        this.channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.flusher = new Thread(this::flushLoop, "MoveLog-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        for (Map.Entry<Integer, SuperTicTacToeGame> entry : this.recovered.entrySet())
+            entry.getValue().attachMoveLog(this, entry.getKey());
+        awaitDurable();
+        if (this.damaged)
+            Files.move(file, file.resolveSibling(file.getFileName()+".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.recovered = Collections.unmodifiableMap(this.recovered);
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * awaitDurable
+     *********************************************************************************
+     * Waits until every record appended so far is on disk. Moves are never
+     * forced one by one: the flusher writes and forces whatever all games have
+     * appended since its last force, so waiting callers share one fsync.
+     ********************************************************************************/
+    public void awaitDurable() throws IOException {
+        synchronized (this.lock) {
+            long target = this.tail.get();
+            this.waiters++;
+            wakeFlusher();
+            try {
+                while (this.durable < target && this.failure == null)
+                    this.lock.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the move log.", ex);
+            } finally {
+                this.waiters--;
+            }
+            if (this.failure != null)
+                throw this.failure;
+        }
+    }
+
+    /*********************************************************************************
+     * close
+     *********************************************************************************
+     * Forces the remaining records to disk and closes the file. Games still
+     * attached stay in the log, and are recovered by the next MoveLog on the file.
+     ********************************************************************************/
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitDurable();
+        } finally {
+            synchronized (this.lock) {
+                this.closed = true;
+                this.lock.notifyAll();
+            }
+            try {
+                this.flusher.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            this.channel.close();
+        }
+    }
+
+    //================================================================================
+    // Package Methods
+    //================================================================================
+    /*********************************************************************************
+     * start
+     *********************************************************************************
+     * Logs a game joining the log, with the moves already on its board.
+     *
+     * @return id - The id the game's records carry.
+     ********************************************************************************/
+    int start(SuperTicTacToeGame game) {
+        int id = (int) this.nextGameId.getAndIncrement();
+        logGame(game, id);
+        return id;
+    }
+
+    /*********************************************************************************
+     * logGame
+     *********************************************************************************
+     * Logs a START record for a game and a MOVE record for each move on its board.
+     ********************************************************************************/
+    void logGame(SuperTicTacToeGame game, int id) {
+        append(id, START, game.getSize() << 13 | game.getConnections() << 1 | starterBit(game.getStarter()));
+        for (int ply = 0; ply < game.getPly(); ply++)
+            append(id, MOVE, game.getMove(ply));
+    }
+
+    void logMove(int id, int cell) {
+        append(id, MOVE, cell);
+    }
+
+    void logUndo(int id) {
+        append(id, UNDO, 0);
+    }
+
+    void logReset(int id, char starter) {
+        append(id, RESET, starterBit(starter));
+    }
+
+    void logEnd(int id) {
+        append(id, END, 0);
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * append
+     *********************************************************************************
+     * Adds a record to the ring: reserves the next sequence number and stores the
+     * record in its slot. Only waits when the ring is full, that is when the disk
+     * falls a whole ring behind. The first record after a commit and the one that
+     * fills half the ring wake the flusher. Records are dropped once the log has
+     * failed or closed; awaitDurable reports a failure.
+     ********************************************************************************/
+    private void append(int id, int type, int argument) {
+        if (this.failure != null || this.closed)
+            return;
+        long seq = this.tail.getAndIncrement();
+        long behind = seq-this.flushed;
+        //The flusher drains the ring even once closed, so only a failure ends this.
+        while (behind >= RING_RECORDS) {
+            if (this.failure != null)
+                return;
+            wakeFlusher();
+            Thread.yield();
+            behind = seq-this.flushed;
+        }
+        //A release store is enough: the flusher reads the slot with a volatile
+        //load, and nothing else reads it.
+        this.ring.lazySet((int) seq & (RING_RECORDS-1), (long) id << 32 | (type << 28 | argument) & 0xFFFFFFFFL);
+        if (behind == 0 || behind == RING_RECORDS/2)
+            wakeFlusher();
+    }
+
+    /*********************************************************************************
+     * wakeFlusher
+     *********************************************************************************
+     * Wakes the flusher if it is waiting for records.
+     ********************************************************************************/
+    private void wakeFlusher() {
+        if (!this.flusherWaiting)
+            return;
+        synchronized (this.lock) {
+            if (this.flusherWaiting) {
+                this.flusherWaiting = false;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /*********************************************************************************
+     * flushLoop
+     *********************************************************************************
+     * The group commit: once records are pending for the commit interval, the
+     * ring is half full or a thread waits in awaitDurable, copies everything
+     * reserved so far out of the ring, waiting for slots whose records are still
+     * being stored, then writes it as one block and forces it with one fsync,
+     * however many games it came from. While it does, appends go on into the
+     * rest of the ring.
+     ********************************************************************************/
+    private void flushLoop() {
+        while (true) {
+            long upTo;
+            synchronized (this.lock) {
+                long due = 0;
+                while (!this.closed) {
+                    //Set before reading tail, so an append either is seen here or
+                    //sees this and wakes the flusher.
+                    this.flusherWaiting = true;
+                    long pending = this.tail.get()-this.flushed;
+                    if (pending >= RING_RECORDS/2 || pending > 0 && this.waiters > 0)
+                        break;
+                    long millis = 0;
+                    if (pending > 0) {
+                        if (due == 0)
+                            due = System.nanoTime()+this.commitNanos;
+                        long left = due-System.nanoTime();
+                        if (left <= 0)
+                            break;
+                        millis = Math.max(1, left/1000000);
+                    }
+                    try {
+                        this.lock.wait(millis);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                this.flusherWaiting = false;
+                upTo = Math.min(this.tail.get(), this.flushed+RING_RECORDS);
+                if (upTo == this.flushed)
+                    return;
+            }
+            this.block.clear();
+            for (long seq = this.flushed; seq < upTo; seq++) {
+                int slot = (int) seq & (RING_RECORDS-1);
+                long record;
+                while ((record = this.ring.get(slot)) == 0)
+                    Thread.yield();
+                this.ring.lazySet(slot, 0);
+                this.block.putLong(record);
+            }
+            //Appenders waiting for space can carry on.
+            this.flushed = upTo;
+            try {
+                this.block.flip();
+                this.crc.reset();
+                this.crc.update(this.block.duplicate());
+                this.header.clear();
+                this.header.putInt(this.block.remaining()).putInt((int) this.crc.getValue()).flip();
+                ByteBuffer[] buffers = {this.header, this.block};
+                while (this.block.hasRemaining())
+                    this.channel.write(buffers);
+                this.channel.force(false);
+            } catch (IOException ex) {
+                synchronized (this.lock) {
+                    this.failure = ex;
+                    this.lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (this.lock) {
+                this.durable = upTo;
+                this.commits++;
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /*********************************************************************************
+     * replay
+     *********************************************************************************
+     * Reads a log and replays it into games, stopping at the first block that is
+     * incomplete, has an impossible length or fails its CRC: past a torn or
+     * damaged block, records may be missing from any game, so nothing more is
+     * trusted. A record that does not make sense for its game drops that game,
+     * and records of unknown games are skipped, but the replay goes on either way.
+     * Games that ended or were decided are left out. Sets damaged if any of the
+     * file was left unread.
+     *
+     * @return games - The in-progress games by id.
+     ********************************************************************************/
+    private Map<Integer, SuperTicTacToeGame> replay(Path file) throws IOException {
+        Map<Integer, SuperTicTacToeGame> games = new LinkedHashMap<>();
+        if (!Files.exists(file))
+            return games;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            ByteBuffer block = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            CRC32C check = new CRC32C();
+            while (readFully(in, header.clear())) {
+                header.flip();
+                int length = header.getInt();
+                int crc = header.getInt();
+                if (length <= 0 || length > BUFFER_BYTES || length%RECORD_BYTES != 0)
+                    break;
+                if (!readFully(in, block.clear().limit(length)))
+                    break;
+                block.flip();
+                check.reset();
+                check.update(block.duplicate());
+                if ((int) check.getValue() != crc)
+                    break;
+                while (block.hasRemaining()) {
+                    int id = block.getInt();
+                    int record = block.getInt();
+                    if (!apply(games, id, record >>> 28, record & ARGUMENT_MASK))
+                        games.remove(id);
+                }
+            }
+            //A clean end of file leaves the header empty.
+            this.damaged = header.position() > 0;
+        }
+        return dropFinished(games);
+    }
+
+    /*********************************************************************************
+     * readFully
+     *********************************************************************************
+     * Fills a buffer from the channel.
+     *
+     * @return full - Whether or not the buffer was filled before the end of file.
+     ********************************************************************************/
+    private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (in.read(buffer) < 0)
+                return false;
+        return true;
+    }
+
+    /*********************************************************************************
+     * apply
+     *********************************************************************************
+     * Replays one record. Records of games not in the map are ignored.
+     *
+     * @return valid - Whether or not the record made sense for its game.
+     ********************************************************************************/
+    private static boolean apply(Map<Integer, SuperTicTacToeGame> games, int id, int type, int argument) {
+        try {
+            if (type == START) {
+                games.put(id, new SuperTicTacToeGame(argument >>> 13, (argument >>> 1) & 0xFFF,
+                        starter(argument)));
+                return true;
+            }
+            SuperTicTacToeGame game = games.get(id);
+            if (game == null)
+                return true;
+            switch (type) {
+                case MOVE:
+                    game.select(argument/game.getSize(), argument%game.getSize());
+                    return true;
+                case UNDO:
+                    game.undo();
+                    return true;
+                case RESET:
+                    game.reset(starter(argument));
+                    return true;
+                case END:
+                    games.remove(id);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static int starterBit(char starter) {
+        return starter == 'o' ? 1 : 0;
+    }
+
+    private static char starter(int argument) {
+        return (argument & 1) == 0 ? 'x' : 'o';
+    }
+
+    /*********************************************************************************
+     * dropFinished
+     *********************************************************************************
+     * Removes the decided games from a replay's results.
+     ********************************************************************************/
+    private static Map<Integer, SuperTicTacToeGame> dropFinished(Map<Integer, SuperTicTacToeGame> games) {
+        games.values().removeIf(game -> game.getGameStatus() != GameStatus.IN_PROGRESS);
+        return games;
+    }
+
+    //================================================================================
+    // Setter Methods
+    //================================================================================
+    /*********************************************************************************
+     * setCommitInterval
+     *********************************************************************************
+     * Sets how long records may wait for a group commit when no thread waits in
+     * awaitDurable: the most a crash can lose of moves nobody waited for. Longer
+     * intervals batch more records per fsync.
+     *
+     * @param micros - The commit interval in microseconds.
+     ********************************************************************************/
+    public void setCommitInterval(long micros) {
+        synchronized (this.lock) {
+            this.commitNanos = micros*1000;
+        }
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getRecoveredGames
+     *********************************************************************************
+     * Returns the games that were in progress when the log was last written, as
+     * found on opening. They are attached to this log already.
+     * @return games - The recovered games by id, in the order they started.
+     ********************************************************************************/
+    public Map<Integer, SuperTicTacToeGame> getRecoveredGames() {
+        return this.recovered;
+    }
+
+    /*********************************************************************************
+     * getAppended
+     *********************************************************************************
+     * Returns the number of records appended since the log was opened.
+     * @return appended - The number of records.
+     ********************************************************************************/
+    public long getAppended() {
+        return this.tail.get();
+    }
+
+    /*********************************************************************************
+     * getCommits
+     *********************************************************************************
+     * Returns the number of group commits (write plus fsync) so far.
+     * @return commits - The number of commits.
+     ********************************************************************************/
+    public long getCommits() {
+        synchronized (this.lock) {
+            return this.commits;
+        }
+    }
+
+    /*********************************************************************************
+     * getFile
+     *********************************************************************************
+     * Returns the log file.
+     * @return file - The path of the log.
+     ********************************************************************************/
+    public Path getFile() {
+        return this.file;
+    }
+}
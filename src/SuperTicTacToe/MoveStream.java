@@ -0,0 +1,315 @@
+package SuperTicTacToe;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class MoveStream {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //Event types.
+    public static final int MOVE = 1;
+    public static final int UNDO = 2;
+    public static final int RESULT = 3;
+    public static final int RESET = 4;
+
+    //Returned by Subscription.poll when the subscriber fell a whole ring behind.
+    public static final int LAPPED = -1;
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final GameStatus[] STATUSES = GameStatus.values();
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    //Events packed into one long each (see encode), event n at n & mask.
+    private AtomicLongArray events;
+    private int mask;
+    //Number of events published, and number of slots the game has started to
+    //write (one ahead while an event is being written). Written only by the
+    //game's thread.
+    private AtomicLong published;
+    private AtomicLong claimed;
+    //The game thread's own copy of the published count.
+    private long sequence;
+    //The latest keyframe, refreshed every half ring so a lapped subscriber can
+    //always restart from one whose following events are still in the ring.
+    private volatile Keyframe keyframe;
+    private long nextKeyframe;
+
+    //================================================================================
+    // Classes
+    //================================================================================
+    private static final class Keyframe {
+        //Number of events published when the snapshot was taken.
+        private final long sequence;
+        private final GameSnapshot snapshot;
+
+        private Keyframe(long sequence, GameSnapshot snapshot) {
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+        }
+    }
+
+    public static final class Subscription {
+        private final MoveStream stream;
+        //Number of the next event to read.
+        private long next;
+        private GameSnapshot snapshot;
+        private long lapped;
+
+        private Subscription(MoveStream stream) {
+            this.stream = stream;
+            resync();
+        }
+
+        /*****************************************************************************
+         * poll
+         *****************************************************************************
+         * Copies the events published since the last poll, oldest first, without
+         * waiting and without slowing the game down. If the game has published a
+         * whole ring of events since then, the missed events are gone and LAPPED is
+         * returned; resync restarts the subscription from a newer snapshot.
+         *
+         * @param out - Receives the events (see the static decoders).
+         * @return count - The number of events copied, or LAPPED.
+         ****************************************************************************/
+        public int poll(long[] out) {
+            MoveStream stream = this.stream;
+            long available = stream.published.get();
+            int count = (int) Math.min(out.length, available-this.next);
+            for (int i = 0; i < count; i++)
+                out[i] = stream.events.get((int) (this.next+i) & stream.mask);
+            //Slots the game reached again while they were being copied hold newer
+            //events, so the copy only counts if the oldest one survived. A slot is
+            //claimed before it is written, so any newer event read here shows up
+            //in the claimed count read after it.
+            if (stream.claimed.get()-this.next > stream.mask+1) {
+                this.lapped++;
+                return LAPPED;
+            }
+            this.next += count;
+            return count;
+        }
+
+        /*****************************************************************************
+         * resync
+         *****************************************************************************
+         * Restarts the subscription from the stream's latest keyframe. The events
+         * polled next are the ones published after the snapshot was taken.
+         *
+         * @return snapshot - The game as of the keyframe.
+         ****************************************************************************/
+        public GameSnapshot resync() {
+            Keyframe keyframe = this.stream.keyframe;
+            this.next = keyframe.sequence;
+            this.snapshot = keyframe.snapshot;
+            return keyframe.snapshot;
+        }
+
+        /*****************************************************************************
+         * getSnapshot
+         *****************************************************************************
+         * Returns the snapshot the subscription started from (at subscribe or the
+         * last resync).
+         * @return snapshot - The starting position.
+         ****************************************************************************/
+        public GameSnapshot getSnapshot() {
+            return this.snapshot;
+        }
+
+        /*****************************************************************************
+         * getLapped
+         *****************************************************************************
+         * Returns how many times the subscriber fell a whole ring behind.
+         * @return lapped - The number of LAPPED polls.
+         ****************************************************************************/
+        public long getLapped() {
+            return this.lapped;
+        }
+
+        /*****************************************************************************
+         * getBacklog
+         *****************************************************************************
+         * Returns the number of published events not yet polled.
+         * @return backlog - The number of pending events.
+         ****************************************************************************/
+        public long getBacklog() {
+            return this.stream.published.get()-this.next;
+        }
+    }
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * MoveStream - Constructor
+     *********************************************************************************
+     * Creates a bounded ring of move events that one game publishes to and any
+     * number of subscribers read from, each at its own pace. Publishing never
+     * waits on subscribers and costs the same with one or thousands of them, as
+     * subscribers only track their own position; a subscriber that falls a whole
+     * ring behind is told so and restarts from a snapshot.
+     *
+     * @param capacity - The number of events kept, a power of two of at least 2.
+     ********************************************************************************/
+    public MoveStream(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("The capacity must be a power of two of at least 2.");
+        this.events = new AtomicLongArray(capacity);
+        this.mask = capacity-1;
+        this.published = new AtomicLong();
+        this.claimed = new AtomicLong();
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * subscribe
+     *********************************************************************************
+     * Adds a subscriber, starting from the latest keyframe (see
+     * Subscription.getSnapshot). May be called from any thread once the stream has
+     * been attached to a game.
+     *
+     * @return subscription - The new subscriber's position in the stream.
+     ********************************************************************************/
+    public Subscription subscribe() {
+        if (this.keyframe == null)
+            throw new IllegalStateException("The stream is not attached to a game.");
+        return new Subscription(this);
+    }
+
+    /*********************************************************************************
+     * type
+     *********************************************************************************
+     * Decodes an event's type: MOVE, UNDO, RESULT or RESET.
+     *
+     * @param event - The packed event.
+     * @return type - The event type.
+     ********************************************************************************/
+    public static int type(long event) {
+        return (int) (event >>> 56) & 0xF;
+    }
+
+    /*********************************************************************************
+     * cell
+     *********************************************************************************
+     * Decodes the cell a MOVE was played on or an UNDO took back.
+     *
+     * @param event - The packed event.
+     * @return cell - The cell index (row*size+col), or -1 for other events.
+     ********************************************************************************/
+    public static int cell(long event) {
+        return (int) event;
+    }
+
+    /*********************************************************************************
+     * player
+     *********************************************************************************
+     * Decodes the player of a MOVE or UNDO, or the winner of a RESULT.
+     *
+     * @param event - The packed event.
+     * @return player - X_CODE, O_CODE, or EMPTY_CODE if there is none.
+     ********************************************************************************/
+    public static byte player(long event) {
+        return (byte) ((event >>> 52) & 0x3);
+    }
+
+    /*********************************************************************************
+     * status
+     *********************************************************************************
+     * Decodes the game's status after the event.
+     *
+     * @param event - The packed event.
+     * @return status - The game status.
+     ********************************************************************************/
+    public static GameStatus status(long event) {
+        return STATUSES[(int) (event >>> 48) & 0x3];
+    }
+
+    /*********************************************************************************
+     * ply
+     *********************************************************************************
+     * Decodes the number of moves on the board after the event.
+     *
+     * @param event - The packed event.
+     * @return ply - The ply after the event.
+     ********************************************************************************/
+    public static int ply(long event) {
+        return (int) (event >>> 32) & 0xFFFF;
+    }
+
+    //================================================================================
+    // Package Methods
+    //================================================================================
+    /*********************************************************************************
+     * publish
+     *********************************************************************************
+     * Appends an event. Only the game's thread publishes, so this is a few
+     * ordered stores and no atomic read-modify-write: the slot is claimed, the
+     * event written, and the count advanced, so a subscriber that sees the count
+     * also sees the event.
+     *
+     * @param game - The publishing game, for the keyframes.
+     ********************************************************************************/
+    void publish(SuperTicTacToeGame game, int type, int cell, byte player, int ply, GameStatus status) {
+        long sequence = ++this.sequence;
+        this.claimed.lazySet(sequence);
+        VarHandle.storeStoreFence();
+        this.events.lazySet((int) (sequence-1) & this.mask, encode(type, cell, player, ply, status));
+        this.published.lazySet(sequence);
+        if (sequence >= this.nextKeyframe)
+            keyframe(game);
+    }
+
+    /*********************************************************************************
+     * keyframe
+     *********************************************************************************
+     * Records a snapshot of the game as of the events published so far.
+     *
+     * @param game - The publishing game.
+     ********************************************************************************/
+    void keyframe(SuperTicTacToeGame game) {
+        this.keyframe = new Keyframe(this.sequence, game.snapshot());
+        this.nextKeyframe = this.sequence+(this.mask+1)/2;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * encode
+     *********************************************************************************
+     * Packs an event: type in bits 56-59, player in 52-53, status in 48-49, ply in
+     * 32-47 and the cell in the low 32 bits.
+     ********************************************************************************/
+    private static long encode(int type, int cell, byte player, int ply, GameStatus status) {
+        return (long) type << 56 | (long) player << 52 | (long) status.ordinal() << 48
+                | (long) (ply & 0xFFFF) << 32 | (cell & 0xFFFFFFFFL);
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getPublished
+     *********************************************************************************
+     * Returns the number of events published so far.
+     * @return published - The number of events.
+     ********************************************************************************/
+    public long getPublished() {
+        return this.published.get();
+    }
+
+    /*********************************************************************************
+     * getCapacity
+     *********************************************************************************
+     * Returns the number of events the ring keeps.
+     * @return capacity - The ring size.
+     ********************************************************************************/
+    public int getCapacity() {
+        return this.mask+1;
+    }
+}
@@ -0,0 +1,234 @@
+package SuperTicTacToe;
+
+import java.util.Arrays;
+
+public final class OpenWindows {
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    private final int size;
+    private final int connections;
+    //Index of the first window of each line, in the same line order as LineMasks:
+    //rows, columns, diagonals, then anti diagonals. A line of length n has
+    //n-connections+1 windows; window s covers positions s to s+connections-1.
+    private final int[] firstWindow;
+    //Per window, the number of X cells (low 16 bits) and O cells (high 16 bits).
+    private final int[] counts;
+    //Windows not holding cells of both players: those someone can still complete.
+    private int open;
+    //Per cell, the number of open windows through it, and the number on an empty
+    //board (shared between copies, never changed).
+    private final int[] openThroughCell;
+    private final int[] allThroughCell;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * OpenWindows - Constructor
+     *********************************************************************************
+     * Creates the windows of an empty board, all of them open.
+     *
+     * @param size - The size of the game board.
+     * @param connections - The number of connections to win the game.
+     ********************************************************************************/
+    public OpenWindows(int size, int connections) {
+        this.size = size;
+        this.connections = connections;
+        this.firstWindow = new int[6*size-1];
+        this.allThroughCell = new int[size*size];
+        int windows = 0;
+        for (int line = 0; line < 6*size-2; line++) {
+            this.firstWindow[line] = windows;
+            int lineWindows = Math.max(0, lineLength(line)-connections+1);
+            for (int position = 0; position < lineWindows+connections-1 && lineWindows > 0; position++)
+                this.allThroughCell[cellAt(line, position)] += Math.min(position, lineWindows-1)
+                        -Math.max(0, position-connections+1)+1;
+            windows += lineWindows;
+        }
+        this.firstWindow[6*size-2] = windows;
+        this.counts = new int[windows];
+        this.open = windows;
+        this.openThroughCell = this.allThroughCell.clone();
+    }
+
+    /*********************************************************************************
+     * OpenWindows - Copy Constructor
+     *********************************************************************************
+     * Creates an independent copy of another set of windows. The line tables are
+     * never changed, so they are shared.
+     *
+     * @param other - The windows to copy.
+     ********************************************************************************/
+    public OpenWindows(OpenWindows other) {
+        this.size = other.size;
+        this.connections = other.connections;
+        this.firstWindow = other.firstWindow;
+        this.allThroughCell = other.allThroughCell;
+        this.counts = other.counts.clone();
+        this.open = other.open;
+        this.openThroughCell = other.openThroughCell.clone();
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * set
+     *********************************************************************************
+     * Counts a player's cell in every window through it, closing the windows the
+     * other player already had a cell in.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     ********************************************************************************/
+    public void set(byte player, int row, int col) {
+        update(player, row, col, 1);
+    }
+
+    /*********************************************************************************
+     * clear
+     *********************************************************************************
+     * Takes a player's cell back out of every window through it, opening the
+     * windows that only that cell kept closed.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     ********************************************************************************/
+    public void clear(byte player, int row, int col) {
+        update(player, row, col, -1);
+    }
+
+    /*********************************************************************************
+     * reset
+     *********************************************************************************
+     * Empties every window.
+     ********************************************************************************/
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        this.open = this.counts.length;
+        System.arraycopy(this.allThroughCell, 0, this.openThroughCell, 0, this.openThroughCell.length);
+    }
+
+    /*********************************************************************************
+     * isDead
+     *********************************************************************************
+     * Determines whether every window holds cells of both players, so that
+     * neither player can win any more however the game goes on.
+     *
+     * @return result - Whether or not the game is a dead draw.
+     ********************************************************************************/
+    public boolean isDead() {
+        return this.open == 0;
+    }
+
+    /*********************************************************************************
+     * isLiveCell
+     *********************************************************************************
+     * Determines whether a cell lies in a window someone can still complete.
+     *
+     * @param cell - The cell index (row*size+col).
+     * @return result - Whether or not any open window passes through the cell.
+     ********************************************************************************/
+    public boolean isLiveCell(int cell) {
+        return this.openThroughCell[cell] > 0;
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * update
+     *********************************************************************************
+     * Adds or removes a cell in the windows through it on all four lines.
+     *
+     * @param player - X_CODE or O_CODE.
+     * @param row - The row of the cell.
+     * @param col - The column of the cell.
+     * @param change - 1 to add the cell, -1 to remove it.
+     ********************************************************************************/
+    private void update(byte player, int row, int col, int change) {
+        int n = this.size;
+        int shift = player == Cell.X_CODE ? 0 : 16;
+        int other = 16-shift;
+        updateLine(row, col, shift, other, change);
+        updateLine(n+col, row, shift, other, change);
+        updateLine(2*n+(row-col+n-1), Math.min(row, col), shift, other, change);
+        updateLine(4*n-1+(row+col), col-Math.max(0, row+col-(n-1)), shift, other, change);
+    }
+
+    /*********************************************************************************
+     * updateLine
+     *********************************************************************************
+     * Adds or removes a cell in the windows of one line that cover its position.
+     * A window closes when its first cell of one player joins the other player's
+     * cells, and opens again when that cell is taken back; either way, the open
+     * counts of its cells follow.
+     *
+     * @param line - The line (see firstWindow for the order).
+     * @param position - The cell's position along the line.
+     * @param shift - The bit offset of the player's count in a window.
+     * @param other - The bit offset of the other player's count.
+     * @param change - 1 to add the cell, -1 to remove it.
+     ********************************************************************************/
+    private void updateLine(int line, int position, int shift, int other, int change) {
+        int base = this.firstWindow[line];
+        int last = this.firstWindow[line+1]-base-1;
+        int from = Math.max(0, position-this.connections+1);
+        int to = Math.min(position, last);
+        for (int w = base+from; w <= base+to; w++) {
+            int count = this.counts[w];
+            int mine = (count >>> shift) & 0xFFFF;
+            if ((count >>> other & 0xFFFF) != 0 && mine == (change > 0 ? 0 : 1)) {
+                this.open -= change;
+                for (int p = w-base; p < w-base+this.connections; p++)
+                    this.openThroughCell[cellAt(line, p)] -= change;
+            }
+            this.counts[w] = count+(change << shift);
+        }
+    }
+
+    /*********************************************************************************
+     * cellAt
+     *********************************************************************************
+     * Returns the cell at a position along a line, the inverse of the positions
+     * update passes to updateLine.
+     *
+     * @param line - The line (see firstWindow for the order).
+     * @param position - The position along the line.
+     * @return cell - The cell index (row*size+col).
+     ********************************************************************************/
+    private int cellAt(int line, int position) {
+        int n = this.size;
+        if (line < n)
+            return line*n+position;
+        if (line < 2*n)
+            return position*n+(line-n);
+        if (line < 4*n-1) {
+            int diagonal = line-2*n-(n-1);
+            return (Math.max(0, diagonal)+position)*n+Math.max(0, -diagonal)+position;
+        }
+        int sum = line-(4*n-1);
+        int col = Math.max(0, sum-(n-1))+position;
+        return (sum-col)*n+col;
+    }
+
+    /*********************************************************************************
+     * lineLength
+     *********************************************************************************
+     * Returns the number of cells of a line.
+     *
+     * @param line - The line (see firstWindow for the order).
+     * @return length - The number of cells on the line.
+     ********************************************************************************/
+    private int lineLength(int line) {
+        int n = this.size;
+        if (line < 2*n)
+            return n;
+        if (line < 4*n-1)
+            return n-Math.abs(line-2*n-(n-1));
+        return n-Math.abs(line-(4*n-1)-(n-1));
+    }
+}
@@ -1,6 +1,22 @@
 package SuperTicTacToe;
 
+import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIConfig;
+import SuperTicTacToe.AI.Difficulty;
+import SuperTicTacToe.AI.MoveAnalysis;
+import SuperTicTacToe.AI.PatternTable;
+import SuperTicTacToe.AI.UltimateSearch;
+
 import javax.swing.*;
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
 
 public class SuperTicTacToe {
     //================================================================================
@@ -10,6 +26,11 @@ public class SuperTicTacToe {
     private static int connections;
     private static char starter;
     private static boolean ai;
+    //Play Ultimate Tic Tac Toe (see UltimateTicTacToeGame) instead of the plain game.
+    private static boolean ultimate;
+    //The sides the AI plays ("none", "x", "o" or "both"), and how hard it tries.
+    private static String aiSides;
+    private static AIConfig aiConfig;
 
     //================================================================================
     // Main Method
@@ -17,16 +38,107 @@ public class SuperTicTacToe {
     /*********************************************************************************
      * main
      *********************************************************************************
-     * Asks the user for the desired board size, number of connections needed for a
-     * win, and the starting player before starting a new game of Super Tic Tac Toe.
+     * Starts a new game of Super Tic Tac Toe. Usage:
+     *     SuperTicTacToe [--config file] [--size n] [--connections k] [--starter x|o]
+     *                    [--ai none|x|o|both] [--difficulty level] [--headless]
+     *                    [--ultimate]
+     * The config file is a properties file with the same keys (size, connections,
+     * starter, ai, difficulty, headless, ultimate); options on the command line win
+     * over it.
+     * In the Swing window the user is asked for the board size, number of
+     * connections, and starting player unless they were given, and the AI plays the
+     * side after the starter unless --ai says otherwise (not both). With --headless
+     * no window is opened and AWT is never initialized: the moves of the sides the
+     * AI does not play are read from standard input as "row col" lines, every move
+     * is printed as "x row col" (or "o row col"), and the result is printed last.
+     * The AI has no time limit unless a difficulty (EASY, MEDIUM, HARD) is given.
+     * With --ultimate (headless only) the game is Ultimate Tic Tac Toe on the full
+     * 9x9 board, size and connections are ignored, and the AI is UltimateSearch
+     * with the difficulty's move time.
      ********************************************************************************/
     public static void main(String[] args) {
-        size = askForSize();
-        connections = askForConnections();
-        starter = askForStart();
+        Properties settings = new Properties();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config":
+                    loadConfig(settings, args[++i]);
+                    break;
+                case "--size":
+                    settings.setProperty("size", args[++i]);
+                    break;
+                case "--connections":
+                    settings.setProperty("connections", args[++i]);
+                    break;
+                case "--starter":
+                    settings.setProperty("starter", args[++i]);
+                    break;
+                case "--ai":
+                    settings.setProperty("ai", args[++i]);
+                    break;
+                case "--difficulty":
+                    settings.setProperty("difficulty", args[++i]);
+                    break;
+                case "--headless":
+                    settings.setProperty("headless", "true");
+                    break;
+                case "--ultimate":
+                    settings.setProperty("ultimate", "true");
+                    break;
+                default:
+                    System.err.println("Unknown option "+args[i]);
+                    System.exit(2);
+            }
+        }
+        boolean headless = Boolean.parseBoolean(settings.getProperty("headless", "false"));
+        if (headless)
+            System.setProperty("java.awt.headless", "true");
+        ultimate = Boolean.parseBoolean(settings.getProperty("ultimate", "false"));
+        if (ultimate && !headless)
+            fail("Ultimate Tic Tac Toe can only be played with --headless.");
 
+        if (ultimate) {
+            size = UltimateTicTacToeGame.SIZE;
+            connections = 3;
+        } else {
+            size = settings.containsKey("size") ? parseSetting(settings, "size")
+                    : headless ? 3 : askForSize();
+            if (size < 3 || (!headless && size >= 15))
+                fail("The board size must be greater than 2"+(headless ? "." : " and less than 15."));
+            connections = settings.containsKey("connections") ? parseSetting(settings, "connections")
+                    : headless ? 3 : askForConnections();
+            if (connections < 3 || connections > size)
+                fail("The connections must be at least 3 and at most the board size.");
+        }
+        String starterSetting = settings.getProperty("starter");
+        starter = starterSetting == null ? (headless ? 'x' : askForStart())
+                : starterSetting.trim().isEmpty() ? ' ' : starterSetting.trim().toLowerCase().charAt(0);
+        if (starter != 'x' && starter != 'o')
+            fail("The starter must be x or o.");
+        aiSides = settings.getProperty("ai", headless ? "none" : starter == 'x' ? "o" : "x").toLowerCase();
+        if (!aiSides.equals("none") && !aiSides.equals("x") && !aiSides.equals("o") && !aiSides.equals("both"))
+            fail("The AI plays none, x, o or both.");
+        if (!headless && aiSides.equals("both"))
+            fail("The AI can only play both sides with --headless.");
+        ai = !aiSides.equals("none");
+        if (ai && connections > PatternTable.MAX_CONNECTIONS)
+            fail("The AI plays at most "+PatternTable.MAX_CONNECTIONS+" connections.");
+        String difficulty = settings.getProperty("difficulty");
+        try {
+            aiConfig = difficulty == null ? AIConfig.UNLIMITED
+                    : new AIConfig(Difficulty.valueOf(difficulty.toUpperCase()));
+        } catch (IllegalArgumentException ex) {
+            fail("The difficulty must be EASY, MEDIUM or HARD.");
+        }
 
-        SuperTicTacToePanel game = new SuperTicTacToePanel(size, connections, starter, ai);
+        if (headless) {
+            if (ultimate)
+                playUltimate();
+            else
+                playHeadless();
+            return;
+        }
+        SuperTicTacToePanel game = new SuperTicTacToePanel(size, connections, starter,
+                ai ? (aiSides.equals("x") ? Cell.X : Cell.O) : null, aiConfig);
     }
 
     //================================================================================
@@ -143,4 +255,149 @@ public class SuperTicTacToe {
 
         return userChar;
     }
+
+    /*********************************************************************************
+     * playHeadless
+     *********************************************************************************
+     * Plays one game on standard input and output, without touching AWT. Standard
+     * input is only opened if a human plays; if it ends mid-game, so does the
+     * program.
+     ********************************************************************************/
+    private static void playHeadless() {
+        SuperTicTacToeGame game = new SuperTicTacToeGame(size, connections, starter);
+        AI xAI = aiSides.equals("x") || aiSides.equals("both") ? new AI(game, Cell.X, aiConfig) : null;
+        AI oAI = aiSides.equals("o") || aiSides.equals("both") ? new AI(game, Cell.O, aiConfig) : null;
+        BufferedReader input = null;
+        if (xAI != null)
+            xAI.setVerbose(false);
+        if (oAI != null)
+            oAI.setVerbose(false);
+        while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+            char player = game.getCurrentPlayer();
+            AI side = player == 'x' ? xAI : oAI;
+            if (side != null) {
+                Point move = side.think(game.getBoard());
+                game.select(move.x, move.y);
+                System.out.println(player+" "+move.x+" "+move.y);
+                continue;
+            }
+            if (input == null)
+                input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line = readMove(input);
+            try {
+                String[] parts = line.trim().split("\\s+");
+                int row = Integer.parseInt(parts[0]);
+                int col = Integer.parseInt(parts[1]);
+                game.select(row, col);
+                System.out.println(player+" "+row+" "+col);
+            } catch (RuntimeException ex) {
+                System.err.println("Invalid move \""+line+"\", expected \"row col\" of an empty cell.");
+            }
+        }
+        System.out.println("result "+game.getGameStatus());
+    }
+
+    /*********************************************************************************
+     * playUltimate
+     *********************************************************************************
+     * Plays one game of Ultimate Tic Tac Toe on standard input and output, like
+     * playHeadless. Each AI side searches with UltimateSearch until the
+     * difficulty's move time runs out, or to UltimateSearch.DEFAULT_MAX_DEPTH
+     * without one.
+     ********************************************************************************/
+    private static void playUltimate() {
+        UltimateTicTacToeGame game = new UltimateTicTacToeGame(starter);
+        UltimateSearch search = ai ? new UltimateSearch() : null;
+        long moveTimeMillis = aiConfig.getMoveTimeMillis();
+        BufferedReader input = null;
+        while (game.getGameStatus() == GameStatus.IN_PROGRESS) {
+            char player = game.getCurrentPlayer();
+            if (aiSides.equals("both") || aiSides.equals(String.valueOf(player))) {
+                if (moveTimeMillis > 0) {
+                    search.setDeadline(System.nanoTime()+moveTimeMillis*1000000L);
+                    search.setMaxDepth(UltimateTicTacToeGame.CELL_COUNT);
+                }
+                List<MoveAnalysis> lines = search.analyze(game, 1, null);
+                Point move = lines.get(0).getMove();
+                game.select(move.x, move.y);
+                System.out.println(player+" "+move.x+" "+move.y);
+                continue;
+            }
+            if (input == null)
+                input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line = readMove(input);
+            try {
+                String[] parts = line.trim().split("\\s+");
+                int row = Integer.parseInt(parts[0]);
+                int col = Integer.parseInt(parts[1]);
+                game.select(row, col);
+                System.out.println(player+" "+row+" "+col);
+            } catch (RuntimeException ex) {
+                System.err.println("Invalid move \""+line+"\", expected \"row col\" of a cell that may be played.");
+            }
+        }
+        System.out.println("result "+game.getGameStatus());
+    }
+
+    /*********************************************************************************
+     * readMove
+     *********************************************************************************
+     * Reads the next move line from standard input, ending the program if the
+     * input ends.
+     *
+     * @param input - The reader over standard input.
+     * @return line - The line read.
+     ********************************************************************************/
+    private static String readMove(BufferedReader input) {
+        String line;
+        try {
+            line = input.readLine();
+        } catch (IOException ex) {
+            line = null;
+        }
+        if (line == null)
+            System.exit(1);
+        return line;
+    }
+
+    /*********************************************************************************
+     * loadConfig
+     *********************************************************************************
+     * Reads a properties file into the settings. Settings already given on the
+     * command line are kept.
+     ********************************************************************************/
+    private static void loadConfig(Properties settings, String file) {
+        Properties loaded = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            loaded.load(in);
+        } catch (IOException ex) {
+            fail("Could not read "+file+": "+ex.getMessage());
+        }
+        for (String key : loaded.stringPropertyNames())
+            settings.putIfAbsent(key, loaded.getProperty(key));
+    }
+
+    /*********************************************************************************
+     * parseSetting
+     *********************************************************************************
+     * Returns a setting as a number, ending the program if it is not one.
+     ********************************************************************************/
+    private static int parseSetting(Properties settings, String key) {
+        try {
+            return Integer.parseInt(settings.getProperty(key).trim());
+        } catch (NumberFormatException ex) {
+            fail("The "+key+" must be a number.");
+            return -1;
+        }
+    }
+
+    /*********************************************************************************
+     * fail
+     *********************************************************************************
+     * Prints an error about the settings and ends the program.
+     ********************************************************************************/
+    private static void fail(String message) {
+        System.err.println(message);
+        System.exit(2);
+    }
 }
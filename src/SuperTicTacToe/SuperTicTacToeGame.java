@@ -1,18 +1,47 @@
 package SuperTicTacToe;
 
-import java.awt.*;
-import java.util.ArrayList;
+import SuperTicTacToe.Monitoring.GameEndEvent;
+import SuperTicTacToe.Monitoring.GameStats;
+import jdk.jfr.FlightRecorder;
+
+import java.util.Arrays;
 
 public class SuperTicTacToeGame {
     //================================================================================
     // Private Variables
     //================================================================================
+    //The board is stored as one byte per cell (see Cell.toByte), indexed by
+    //row*size+col. The Cell[][] view is only built once somebody asks for it.
+    private byte[] cells;
     private Cell[][] board;
+    //Per-line bitmasks for the fast win check. Null when the board is too large.
+    private LineMasks lineMasks;
+    private boolean lineMaskWinCheck;
+    //Counts of the windows either player can still complete, for ending dead
+    //draws early. Null when that check is turned off.
+    private OpenWindows openWindows;
+    private int size;
     private GameStatus status;
     private char currentPlayer;
+    private char starter;
     private int connections;
 
-    private ArrayList<Point> history;
+    //Moves are stored as cell indices (row*size+col). Entries past historySize
+    //are kept as the redo tail until a new selection overwrites them.
+    private int[] history;
+    private int historySize;
+    private int historyLimit;
+
+    //Monitored games report moves and results to GameStats and JFR. Searches play
+    //millions of moves on their own copies, so games are unmonitored by default.
+    private boolean monitored;
+    private boolean countedInProgress;
+    private long firstMoveNanos;
+    //Spectator event stream, or null. Like monitoring, not carried over to forks.
+    private MoveStream moveStream;
+    //Write-ahead log and this game's id in it, or null. Not carried over to forks.
+    private MoveLog moveLog;
+    private int moveLogId;
 
     //================================================================================
     // Constructors
@@ -29,17 +58,70 @@ public class SuperTicTacToeGame {
      ********************************************************************************/
     public SuperTicTacToeGame(int size, int connections, char starter) {
         this.status = GameStatus.IN_PROGRESS;
-        this.board = new Cell[size][size];
-        this.history = new ArrayList<Point>();
-
-        for (int i = 0; i < size; i++)
-            for (int j = 0; j < size; j++)
-                this.board[i][j] = Cell.EMPTY;
+        this.size = size;
+        this.cells = new byte[size*size];
+        this.history = new int[size*size];
+        if (size <= LineMasks.MAX_SIZE)
+            this.lineMasks = new LineMasks(size);
+        this.lineMaskWinCheck = this.lineMasks != null;
 
         this.currentPlayer = starter;
+        this.starter = starter;
         this.connections = connections;
     }
 
+    /*********************************************************************************
+     * SuperTicTacToeGame - Copy Constructor
+     *********************************************************************************
+     * Creates an independent copy of another game, including its history and redo
+     * tail. The cells and history are each copied with a single array copy.
+     *
+     * @param other - The game to copy.
+     ********************************************************************************/
+    private SuperTicTacToeGame(SuperTicTacToeGame other) {
+        this.status = other.status;
+        this.size = other.size;
+        this.cells = other.cells.clone();
+        this.history = other.history.clone();
+        if (other.lineMasks != null)
+            this.lineMasks = new LineMasks(other.lineMasks);
+        this.lineMaskWinCheck = other.lineMaskWinCheck;
+        if (other.openWindows != null)
+            this.openWindows = new OpenWindows(other.openWindows);
+        this.historySize = other.historySize;
+        this.historyLimit = other.historyLimit;
+        this.currentPlayer = other.currentPlayer;
+        this.starter = other.starter;
+        this.connections = other.connections;
+    }
+
+    /*********************************************************************************
+     * SuperTicTacToeGame - Snapshot Constructor
+     *********************************************************************************
+     * Restores a playable game from a snapshot. The snapshot itself is left
+     * untouched, so many games may be restored from the same snapshot.
+     *
+     * @param snapshot - The snapshot to restore.
+     ********************************************************************************/
+    public SuperTicTacToeGame(GameSnapshot snapshot) {
+        this.status = snapshot.getGameStatus();
+        this.size = snapshot.getSize();
+        this.cells = snapshot.copyCells();
+        this.history = new int[this.size*this.size];
+        if (this.size <= LineMasks.MAX_SIZE) {
+            this.lineMasks = new LineMasks(this.size);
+            for (int i = 0; i < this.cells.length; i++)
+                if (this.cells[i] != Cell.EMPTY_CODE)
+                    this.lineMasks.set(this.cells[i], i/this.size, i%this.size);
+        }
+        this.lineMaskWinCheck = this.lineMasks != null;
+        this.historySize = snapshot.copyMoves(this.history);
+        this.historyLimit = this.historySize;
+        this.currentPlayer = snapshot.getCurrentPlayer();
+        this.starter = snapshot.getStarter();
+        this.connections = snapshot.getConnections();
+    }
+
     //================================================================================
     // Public Methods
     //================================================================================
@@ -54,65 +136,368 @@ public class SuperTicTacToeGame {
      * @param col - The column selected by the user.
      ********************************************************************************/
     public void select(int row, int col) throws UnsupportedOperationException {
-        if (this.board[row][col] != Cell.EMPTY)
-            throw new UnsupportedOperationException("Cell occupied by \""+this.board[row][col]+"\".");
-        if (row >= this.board.length || col >= board[row].length)
+        if (row < 0 || col < 0 || row >= this.size || col >= this.size)
             throw new IndexOutOfBoundsException("The selected cell does not exist.");
+        int index = row*this.size+col;
+        if (this.cells[index] != Cell.EMPTY_CODE)
+            throw new UnsupportedOperationException("Cell occupied by \""+Cell.fromByte(this.cells[index])+"\".");
 
-        this.board[row][col] = this.currentPlayer == 'x' ? Cell.X : Cell.O;
+        //A new move only invalidates the redo tail if it differs from it.
+        if (this.historySize >= this.historyLimit || this.history[this.historySize] != index)
+            this.historyLimit = this.historySize+1;
+        this.history[this.historySize++] = index;
 
-        history.add(new Point(row, col));
-
-        checkGameStatus(row, col);
-        switchCurPly();
+        place(index);
+        if (this.monitored)
+            reportSelection();
     }
 
     /*********************************************************************************
      * reset
      *********************************************************************************
-     * Resets all cells of the game board to empty, and clears the move history queue.
+     * Resets all cells of the game board to empty, clears the move history, and
+     * restores the starting player the game was created with.
      ********************************************************************************/
     public void reset() {
-        this.currentPlayer = this.board[history.get(0).x][history.get(0).y] == Cell.X ? 'x' : 'o';
+        this.currentPlayer = this.starter;
         this.status = GameStatus.IN_PROGRESS;
-        for (int i = 0; i < this.board.length; i++)
-            for (int j = 0; j < this.board.length; j++)
-                this.board[i][j] = Cell.EMPTY;
-        this.history.clear();
+        Arrays.fill(this.cells, Cell.EMPTY_CODE);
+        if (this.lineMasks != null)
+            this.lineMasks.reset();
+        if (this.openWindows != null)
+            this.openWindows.reset();
+        if (this.board != null)
+            for (int i = 0; i < this.size; i++)
+                Arrays.fill(this.board[i], Cell.EMPTY);
+        this.historySize = 0;
+        this.historyLimit = 0;
+        if (this.monitored)
+            updateInProgress();
+        if (this.moveStream != null) {
+            this.moveStream.publish(this, MoveStream.RESET, -1, Cell.EMPTY_CODE, 0, this.status);
+            this.moveStream.keyframe(this);
+        }
+        if (this.moveLog != null)
+            this.moveLog.logReset(this.moveLogId, this.starter);
+    }
+
+    /*********************************************************************************
+     * reset
+     *********************************************************************************
+     * Same as reset(), with a new starting player, so a pooled game can be reused
+     * for any game of its size and connections. Also restores the default win
+     * and draw checks (see setLineMaskWinCheck and setDeadDrawCheck).
+     *
+     * @param starter - The starting player of the next game.
+     ********************************************************************************/
+    public void reset(char starter) {
+        this.starter = starter;
+        this.lineMaskWinCheck = this.lineMasks != null;
+        this.openWindows = null;
+        reset();
     }
 
     /*********************************************************************************
      * undo
      *********************************************************************************
-     * Reverts the previous move if it is logged in the history queue.
+     * Reverts the previous move if it is logged in the history. The move is kept as
+     * part of the redo tail until a different move is selected.
      ********************************************************************************/
     public void undo() {
-        if (this.history.size() <= 0)
+        if (this.historySize <= 0)
             throw new UnsupportedOperationException("There is nothing left to undo.");
-        Point lastSelection = this.history.get(history.size()-1);
-        this.board[lastSelection.x][lastSelection.y] = Cell.EMPTY;
+        int lastSelection = this.history[--this.historySize];
+        byte player = this.cells[lastSelection];
+        if (this.lineMasks != null)
+            this.lineMasks.clear(player, lastSelection/this.size, lastSelection%this.size);
+        if (this.openWindows != null)
+            this.openWindows.clear(player, lastSelection/this.size, lastSelection%this.size);
+        this.cells[lastSelection] = Cell.EMPTY_CODE;
+        if (this.board != null)
+            this.board[lastSelection/this.size][lastSelection%this.size] = Cell.EMPTY;
+        this.status = GameStatus.IN_PROGRESS;
         switchCurPly();
-        this.history.remove(this.history.size()-1);
+        if (this.monitored)
+            updateInProgress();
+        if (this.moveStream != null)
+            this.moveStream.publish(this, MoveStream.UNDO, lastSelection, player, this.historySize, this.status);
+        if (this.moveLog != null)
+            this.moveLog.logUndo(this.moveLogId);
+    }
+
+    /*********************************************************************************
+     * redo
+     *********************************************************************************
+     * Replays the most recently undone move, if there is one. It is reported to
+     * GameStats and the flight recorder the same as a selected move.
+     ********************************************************************************/
+    public void redo() {
+        if (this.historySize >= this.historyLimit)
+            throw new UnsupportedOperationException("There is nothing left to redo.");
+        place(this.history[this.historySize++]);
+        if (this.monitored)
+            reportSelection();
+    }
+
+    /*********************************************************************************
+     * jumpToPly
+     *********************************************************************************
+     * Undoes or redoes moves until exactly the given number of plies have been
+     * played. Any ply between zero and the end of the redo tail may be reached.
+     *
+     * @param ply - The number of moves that should be on the board.
+     ********************************************************************************/
+    public void jumpToPly(int ply) {
+        if (ply < 0 || ply > this.historyLimit)
+            throw new IndexOutOfBoundsException("Ply "+ply+" is outside of the game history.");
+        while (this.historySize > ply)
+            undo();
+        while (this.historySize < ply)
+            redo();
+    }
+
+    /*********************************************************************************
+     * setLineMaskWinCheck
+     *********************************************************************************
+     * Chooses between the bitmask win check and the cell by cell win check. Both
+     * give the same results; the switch exists so the two can be compared. Boards
+     * larger than 64 cells per side always use the cell by cell check.
+     *
+     * @param enabled - Whether or not to use the bitmask win check.
+     ********************************************************************************/
+    public void setLineMaskWinCheck(boolean enabled) {
+        this.lineMaskWinCheck = enabled && this.lineMasks != null;
+    }
+
+    /*********************************************************************************
+     * setDeadDrawCheck
+     *********************************************************************************
+     * Chooses whether a game ends as a draw as soon as every window of connections
+     * cells holds cells of both players, or only once the board is full. Either
+     * way the winner is the same, as nobody can win a dead game, but the early
+     * check ends the game at a different ply, so it is off by default and only
+     * turned on by callers that want to skip playing dead games out (the AI
+     * search and Tournament). It costs a few counter updates per move.
+     *
+     * @param enabled - Whether or not to end dead draws early.
+     ********************************************************************************/
+    public void setDeadDrawCheck(boolean enabled) {
+        if (!enabled) {
+            this.openWindows = null;
+            return;
+        }
+        if (this.openWindows != null)
+            return;
+        this.openWindows = new OpenWindows(this.size, this.connections);
+        for (int i = 0; i < this.cells.length; i++)
+            if (this.cells[i] != Cell.EMPTY_CODE)
+                this.openWindows.set(this.cells[i], i/this.size, i%this.size);
+    }
+
+    /*********************************************************************************
+     * setMonitored
+     *********************************************************************************
+     * Turns reporting to GameStats (moves, games in progress, games finished) and
+     * the GameEnd JFR event on or off. Forks and restored snapshots start out
+     * unmonitored.
+     *
+     * @param monitored - Whether or not the game is monitored.
+     ********************************************************************************/
+    public void setMonitored(boolean monitored) {
+        if (!monitored && this.countedInProgress) {
+            this.countedInProgress = false;
+            GameStats.get().gameLeft();
+        }
+        this.monitored = monitored;
+        if (monitored)
+            updateInProgress();
+    }
+
+    /*********************************************************************************
+     * setMoveStream
+     *********************************************************************************
+     * Publishes this game's moves, undos, results and resets to a stream that
+     * spectators subscribe to (see MoveStream). The stream starts with a keyframe
+     * of the current position. Events are published on the thread that plays.
+     *
+     * @param stream - The stream, or null to stop publishing.
+     ********************************************************************************/
+    public void setMoveStream(MoveStream stream) {
+        this.moveStream = stream;
+        if (stream != null)
+            stream.keyframe(this);
+    }
+
+    /*********************************************************************************
+     * setMoveLog
+     *********************************************************************************
+     * Records this game's moves, undos and resets in a write-ahead log, so the game
+     * survives the process dying (see MoveLog). The position so far is logged
+     * first. Records are appended on the thread that plays, without waiting for
+     * the disk; MoveLog.awaitDurable waits for them. Setting another log, or
+     * null, ends the game in the current one, so it is not recovered.
+     *
+     * @param log - The log, or null to stop logging.
+     ********************************************************************************/
+    public void setMoveLog(MoveLog log) {
+        if (this.moveLog != null)
+            this.moveLog.logEnd(this.moveLogId);
+        this.moveLog = log;
+        if (log != null)
+            this.moveLogId = log.start(this);
+    }
+
+    /*********************************************************************************
+     * attachMoveLog
+     *********************************************************************************
+     * Same as setMoveLog, keeping an id the game already had in an earlier log.
+     * Used by MoveLog for recovered games.
+     ********************************************************************************/
+    void attachMoveLog(MoveLog log, int id) {
+        this.moveLog = log;
+        this.moveLogId = id;
+        log.logGame(this, id);
+    }
+
+    /*********************************************************************************
+     * fork
+     *********************************************************************************
+     * Returns an independent copy of this game which may be played, undone, and
+     * handed to another thread without affecting this game.
+     *
+     * @return game - The forked game.
+     ********************************************************************************/
+    public SuperTicTacToeGame fork() {
+        return new SuperTicTacToeGame(this);
+    }
+
+    /*********************************************************************************
+     * snapshot
+     *********************************************************************************
+     * Captures the current position as an immutable snapshot. The redo tail is not
+     * part of the snapshot.
+     *
+     * @return snapshot - The current position.
+     ********************************************************************************/
+    public GameSnapshot snapshot() {
+        return new GameSnapshot(this.size, this.connections, this.starter, this.currentPlayer,
+                this.status, this.cells.clone(), Arrays.copyOf(this.history, this.historySize));
     }
 
     //================================================================================
     // Private (Helper) Methods
     //================================================================================
+    /*********************************************************************************
+     * reportSelection
+     *********************************************************************************
+     * Counts a selected move, and reports the game once it has been decided.
+     ********************************************************************************/
+    private void reportSelection() {
+        GameStats stats = GameStats.get();
+        stats.moveSelected();
+        if (this.historySize == 1)
+            this.firstMoveNanos = System.nanoTime();
+        updateInProgress();
+        if (this.status == GameStatus.IN_PROGRESS)
+            return;
+        stats.gameFinished();
+        if (!FlightRecorder.isInitialized())
+            return;
+        GameEndEvent event = new GameEndEvent();
+        if (event.shouldCommit()) {
+            event.boardSize = this.size;
+            event.connections = this.connections;
+            event.plies = this.historySize;
+            event.result = this.status.name();
+            event.gameDuration = System.nanoTime()-this.firstMoveNanos;
+            event.commit();
+        }
+    }
+
+    /*********************************************************************************
+     * updateInProgress
+     *********************************************************************************
+     * Keeps GameStats' count of games in progress in step with this game. A game is
+     * in progress once it has a move on the board, until it is decided or reset.
+     ********************************************************************************/
+    private void updateInProgress() {
+        boolean inProgress = this.status == GameStatus.IN_PROGRESS && this.historySize > 0;
+        if (inProgress == this.countedInProgress)
+            return;
+        this.countedInProgress = inProgress;
+        if (inProgress)
+            GameStats.get().gameEntered();
+        else
+            GameStats.get().gameLeft();
+    }
+
+    /*********************************************************************************
+     * place
+     *********************************************************************************
+     * Marks the cell for the current player, checks the game status, and passes the
+     * turn to the other player. The move must already be logged in the history.
+     *
+     * @param index - The cell index of the move.
+     ********************************************************************************/
+    private void place(int index) {
+        Cell value = this.currentPlayer == 'x' ? Cell.X : Cell.O;
+        this.cells[index] = value.toByte();
+        if (this.lineMasks != null)
+            this.lineMasks.set(this.cells[index], index/this.size, index%this.size);
+        if (this.openWindows != null)
+            this.openWindows.set(this.cells[index], index/this.size, index%this.size);
+        if (this.board != null)
+            this.board[index/this.size][index%this.size] = value;
+        checkGameStatus(index/this.size, index%this.size);
+        switchCurPly();
+        if (this.moveStream != null)
+            publishMove(index);
+        if (this.moveLog != null)
+            this.moveLog.logMove(this.moveLogId, index);
+    }
+
+    /*********************************************************************************
+     * publishMove
+     *********************************************************************************
+     * Publishes a placed move to the move stream, followed by the result if the
+     * move decided the game.
+     *
+     * @param index - The cell index of the move.
+     ********************************************************************************/
+    private void publishMove(int index) {
+        this.moveStream.publish(this, MoveStream.MOVE, index, this.cells[index], this.historySize, this.status);
+        if (this.status == GameStatus.IN_PROGRESS)
+            return;
+        byte winner = this.status == GameStatus.X_WON ? Cell.X_CODE
+                : this.status == GameStatus.O_WON ? Cell.O_CODE : Cell.EMPTY_CODE;
+        this.moveStream.publish(this, MoveStream.RESULT, -1, winner, this.historySize, this.status);
+    }
+
     /*********************************************************************************
      * checkGameStatus
      *********************************************************************************
      * Establishes the player to check for, then checks all possible win
-     * conditions for that player.
+     * conditions for that player. Boards of up to 64 cells per side check the line
+     * bitmasks through the move; larger boards (or games with the mask check turned
+     * off) walk the lines cell by cell.
      *
      * @param row - The row selected by the user.
      * @param col - The column selected by the user.
      ********************************************************************************/
     private void checkGameStatus(int row, int col) {
-        Cell condition = Cell.EMPTY;
+        byte condition = Cell.EMPTY_CODE;
         if (this.currentPlayer == 'x')
-            condition = Cell.X;
+            condition = Cell.X_CODE;
         if (this.currentPlayer == 'o')
-            condition = Cell.O;
+            condition = Cell.O_CODE;
+
+        if (this.lineMaskWinCheck) {
+            if (this.lineMasks.hasWin(condition, row, col, this.connections))
+                setWinner(condition);
+            else
+                checkCats();
+            return;
+        }
 
         if (checkRowColWinConditions(condition, row, col))
             return;
@@ -133,18 +518,18 @@ public class SuperTicTacToeGame {
      * @param row - The row selected by the user.
      * @param col - The column selected by the user.
      ********************************************************************************/
-    private boolean checkRowColWinConditions(Cell condition, int row, int col) {
+    private boolean checkRowColWinConditions(byte condition, int row, int col) {
         //Check Row Condition
         int rowCons = 0;
         int colCons = 0;
-        for (int i = 0; i < this.board.length; i++) {
+        for (int i = 0; i < this.size; i++) {
             //Increment Row Connections
-            if (condition == this.board[row][i])
+            if (condition == this.cells[row*this.size+i])
                 rowCons++;
             else
                 rowCons = 0;
             //Increment Column Connections
-            if (condition == this.board[i][col])
+            if (condition == this.cells[i*this.size+col])
                 colCons++;
             else
                 colCons = 0;
@@ -169,17 +554,18 @@ public class SuperTicTacToeGame {
      * @param row - The row selected by the user.
      * @param col - The column selected by the user.
      ********************************************************************************/
-    private boolean checkDiagWinConditions(Cell condition, int row, int col) {
+    private boolean checkDiagWinConditions(byte condition, int row, int col) {
         int subVal = Math.min(col, row);
         //The startPos is the position at which the method begins to check
         //for possible diagonal win conditions. (As far left as possible.)
-        Point startPos = new Point(row-subVal, col-subVal);
+        int startRow = row-subVal;
+        int startCol = col-subVal;
         //"Primary" refers to the maximum length diagonal.
-        int distFromPrimary = startPos.x+startPos.y;
+        int distFromPrimary = startRow+startCol;
 
         int diagCons = 0;
-        for (int i = 0; i < board.length-distFromPrimary; i++) {
-            diagCons = (condition == this.board[startPos.x+i][startPos.y+i]) ? diagCons+1 : 0;
+        for (int i = 0; i < this.size-distFromPrimary; i++) {
+            diagCons = (condition == this.cells[(startRow+i)*this.size+startCol+i]) ? diagCons+1 : 0;
 
             if (diagCons >= this.connections) {
                 setWinner(condition);
@@ -199,21 +585,22 @@ public class SuperTicTacToeGame {
      * @param row - The row selected by the user.
      * @param col - The column selected by the user.
      ********************************************************************************/
-    private boolean checkAntiDiagWinConditions(Cell condition, int row, int col) {
-        int distFromBottom = (this.board.length-1)-row;
+    private boolean checkAntiDiagWinConditions(byte condition, int row, int col) {
+        int distFromBottom = (this.size-1)-row;
         //If closer to the left, validate from the left. If closer to the bottom,
         //validate from the bottom.
         int subVal = Math.min(col, distFromBottom);
 
         //The startPos is the position at which the method begins to check
         //for possible anti diagonal win conditions. (As far left as possible.)
-        Point startPos = new Point(row+subVal, col-subVal);
+        int startRow = row+subVal;
+        int startCol = col-subVal;
         //"Primary" refers to the maximum length anti diagonal.
-        int distFromPrimary = Math.abs((startPos.x+startPos.y)-(this.board.length-1));
+        int distFromPrimary = Math.abs((startRow+startCol)-(this.size-1));
 
         int diagCons = 0;
-        for (int i = 0; i < board.length-distFromPrimary; i++) {
-            diagCons = (condition == this.board[startPos.x-i][startPos.y+i]) ? diagCons+1 : 0;
+        for (int i = 0; i < this.size-distFromPrimary; i++) {
+            diagCons = (condition == this.cells[(startRow-i)*this.size+startCol+i]) ? diagCons+1 : 0;
 
             if (diagCons >= this.connections) {
                 setWinner(condition);
@@ -227,15 +614,13 @@ public class SuperTicTacToeGame {
      * checkCats
      *********************************************************************************
      * Determines whether or not the game has ended in a draw, by validating that
-     * none of the cells remain unselected.
+     * none of the cells remain unselected. (Every move is logged, so a full board is
+     * simply a full history.) With the dead draw check, a board on which no window
+     * can be completed any more is a draw too.
      ********************************************************************************/
     private void checkCats() {
-        for (int i = 0; i < this.board.length; i++) {
-            for (int j = 0; j < this.board.length; j++) {
-                if (this.board[i][j] == Cell.EMPTY)
-                    return;
-            }
-        }
+        if (this.historySize < this.cells.length && (this.openWindows == null || !this.openWindows.isDead()))
+            return;
         this.status = GameStatus.CATS;
     }
 
@@ -246,8 +631,8 @@ public class SuperTicTacToeGame {
      *
      * @param val - The cell value of the user that won.
      ********************************************************************************/
-    private void setWinner(Cell val) {
-        this.status = val == Cell.X ? GameStatus.X_WON : GameStatus.O_WON;
+    private void setWinner(byte val) {
+        this.status = val == Cell.X_CODE ? GameStatus.X_WON : GameStatus.O_WON;
     }
 
     /*********************************************************************************
@@ -275,13 +660,31 @@ public class SuperTicTacToeGame {
     /*********************************************************************************
      * getBoard
      *********************************************************************************
-     * Returns the current board.
+     * Returns the current board. The array is kept in sync with the game from the
+     * first call onwards, so it should be treated as read only.
      * @return board - The current board.
      ********************************************************************************/
     public Cell[][] getBoard() {
+        if (this.board == null) {
+            this.board = new Cell[this.size][this.size];
+            for (int i = 0; i < this.size; i++)
+                for (int j = 0; j < this.size; j++)
+                    this.board[i][j] = Cell.fromByte(this.cells[i*this.size+j]);
+        }
         return this.board;
     }
 
+    /*********************************************************************************
+     * getCell
+     *********************************************************************************
+     * Returns the byte code (see Cell.toByte) of a single cell.
+     * @param index - The cell index (row*size+col).
+     * @return code - The cell's byte code.
+     ********************************************************************************/
+    public byte getCell(int index) {
+        return this.cells[index];
+    }
+
     /*********************************************************************************
      * getConnections
      *********************************************************************************
@@ -291,4 +694,79 @@ public class SuperTicTacToeGame {
     public int getConnections() {
         return this.connections;
     }
+
+    /*********************************************************************************
+     * getSize
+     *********************************************************************************
+     * Returns the width (and height) of the board.
+     * @return size - The size of the game board.
+     ********************************************************************************/
+    public int getSize() {
+        return this.size;
+    }
+
+    /*********************************************************************************
+     * getPly
+     *********************************************************************************
+     * Returns the number of moves currently on the board.
+     * @return ply - The number of moves played.
+     ********************************************************************************/
+    public int getPly() {
+        return this.historySize;
+    }
+
+    /*********************************************************************************
+     * getRedoCount
+     *********************************************************************************
+     * Returns the number of undone moves that may still be redone.
+     * @return redoCount - The number of moves in the redo tail.
+     ********************************************************************************/
+    public int getRedoCount() {
+        return this.historyLimit-this.historySize;
+    }
+
+    /*********************************************************************************
+     * getMove
+     *********************************************************************************
+     * Returns the cell index (row*size+col) of a logged move, including moves in the
+     * redo tail.
+     * @param ply - The zero based ply of the move.
+     * @return index - The cell index of the move.
+     ********************************************************************************/
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= this.historyLimit)
+            throw new IndexOutOfBoundsException("Ply "+ply+" is outside of the game history.");
+        return this.history[ply];
+    }
+
+    /*********************************************************************************
+     * getCurrentPlayer
+     *********************************************************************************
+     * Returns the player whose turn it is.
+     * @return currentPlayer - The current player ('x'/'o').
+     ********************************************************************************/
+    public char getCurrentPlayer() {
+        return this.currentPlayer;
+    }
+
+    /*********************************************************************************
+     * getStarter
+     *********************************************************************************
+     * Returns the player that started the game.
+     * @return starter - The starting player ('x'/'o').
+     ********************************************************************************/
+    public char getStarter() {
+        return this.starter;
+    }
+
+    /*********************************************************************************
+     * getMoveLogId
+     *********************************************************************************
+     * Returns the id this game's records carry in its move log (see setMoveLog),
+     * the key it is recovered under.
+     * @return id - The game's log id, meaningless if it has no log.
+     ********************************************************************************/
+    public int getMoveLogId() {
+        return this.moveLogId;
+    }
 }
@@ -1,6 +1,7 @@
 package SuperTicTacToe;
 
 import SuperTicTacToe.AI.AI;
+import SuperTicTacToe.AI.AIConfig;
 
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -20,12 +21,14 @@ public class SuperTicTacToePanel extends JFrame {
 
     private JButton[][] board;
     private Cell[][] iBoard;
+    //The X and O icons are only loaded once the first one is placed.
     private ImageIcon xIcon;
     private ImageIcon oIcon;
     private ImageIcon emptyIcon;
 
     private SuperTicTacToeGame game;
     private AI ai;
+    private char aiPlayer;
 
     //================================================================================
     // Button Action Listener
@@ -52,12 +55,18 @@ public class SuperTicTacToePanel extends JFrame {
     // Constructors
     //================================================================================
     public SuperTicTacToePanel(int size, int connections, char starter, boolean ai) {
+        this(size, connections, starter, ai ? (starter == 'x' ? Cell.O : Cell.X) : null, AIConfig.UNLIMITED);
+    }
+
+    public SuperTicTacToePanel(int size, int connections, char starter, Cell aiValue, AIConfig aiConfig) {
         this.board = new JButton[size][size];
-        this.xIcon = new ImageIcon("src/SuperTicTacToe/res/x.png");
-        this.oIcon = new ImageIcon("src/SuperTicTacToe/res/o.png");
         this.emptyIcon = new ImageIcon("src/SuperTicTacToe/res/empty.png");
         this.game = new SuperTicTacToeGame(size, connections, starter);
-        this.ai = new AI(this.game, starter == 'x' ? Cell.O : Cell.X);
+        this.game.setMonitored(true);
+        if (aiValue != null) {
+            this.ai = new AI(this.game, aiValue, aiConfig);
+            this.aiPlayer = aiValue == Cell.X ? 'x' : 'o';
+        }
 
         this.setTitle("Super TicTacToe");
         this.setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -84,6 +93,7 @@ public class SuperTicTacToePanel extends JFrame {
         this.pack();
         this.setLocationRelativeTo(null);
         this.setVisible(true);
+        aiMove();
     }
 
     //================================================================================
@@ -95,9 +105,13 @@ public class SuperTicTacToePanel extends JFrame {
             for (int j = 0; j < this.board[i].length; j++) {
                 switch (this.iBoard[i][j]) {
                     case X:
+                        if (this.xIcon == null)
+                            this.xIcon = new ImageIcon("src/SuperTicTacToe/res/x.png");
                         this.board[i][j].setIcon(this.xIcon);
                         break;
                     case O:
+                        if (this.oIcon == null)
+                            this.oIcon = new ImageIcon("src/SuperTicTacToe/res/o.png");
                         this.board[i][j].setIcon(this.oIcon);
                         break;
                     default:
@@ -144,6 +158,7 @@ public class SuperTicTacToePanel extends JFrame {
                 if (this.ai != null)
                     this.ai.eraseMemory();
                 displayBoard();
+                aiMove();
                 break;
             default:
                 System.exit(0);
@@ -151,6 +166,17 @@ public class SuperTicTacToePanel extends JFrame {
         }
     }
 
+    private void aiMove() {
+        if (this.ai == null || this.game.getCurrentPlayer() != this.aiPlayer
+                || this.game.getGameStatus() != GameStatus.IN_PROGRESS)
+            return;
+        Point AIDecision = this.ai.think(this.game.getBoard());
+        this.game.select(AIDecision.x, AIDecision.y);
+        displayBoard();
+        if (this.game.getGameStatus() != GameStatus.IN_PROGRESS)
+            finalizeGame();
+    }
+
     //================================================================================
     // Button Methods
     //================================================================================
@@ -185,20 +211,10 @@ public class SuperTicTacToePanel extends JFrame {
             this.game.select(row, col);
             displayBoard();
 
-            if (this.game.getGameStatus() != GameStatus.IN_PROGRESS) {
+            if (this.game.getGameStatus() != GameStatus.IN_PROGRESS)
                 finalizeGame();
-            } else {
-                //TEMPORARY AI TEST CODE
-                if (this.ai != null) {
-                    Point AIDecision = this.ai.think(this.iBoard);
-                    this.game.select(AIDecision.x, AIDecision.y);
-                    displayBoard();
-                    if (this.game.getGameStatus() != GameStatus.IN_PROGRESS) {
-                        finalizeGame();
-                    }
-                }
-                //END TEMPORARY AI TEST CODE
-            }
+            else
+                aiMove();
         } catch (UnsupportedOperationException ex) {
             JOptionPane.showMessageDialog(null,
                     "Unable to select cell." +
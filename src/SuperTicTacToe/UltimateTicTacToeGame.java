@@ -0,0 +1,451 @@
+package SuperTicTacToe;
+
+import java.util.Arrays;
+
+public class UltimateTicTacToeGame {
+    //================================================================================
+    // Constants
+    //================================================================================
+    //The full board is 9x9: 3x3 sub-boards of 3x3 cells. Cells are indexed
+    //row*SIZE+col over the full board, like SuperTicTacToeGame's.
+    public static final int SIZE = 9;
+    public static final int CELL_COUNT = SIZE*SIZE;
+    //Active board value meaning the mover may play in any open sub-board.
+    public static final int ANY_BOARD = -1;
+
+    //A 3x3 board is 9 bits, bit row*3+col.
+    private static final int FULL = 0x1FF;
+    private static final int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+    //WINS[bits] is whether a 3x3 bitboard holds a line.
+    private static final boolean[] WINS = new boolean[1 << 9];
+    //Sub-board and bit of every cell, and the cell of every sub-board bit.
+    private static final int[] BOARD_OF = new int[CELL_COUNT];
+    private static final int[] BIT_OF = new int[CELL_COUNT];
+    private static final int[][] CELL_AT = new int[9][9];
+
+    static {
+        for (int bits = 0; bits <= FULL; bits++)
+            for (int line : LINES)
+                if ((bits & line) == line) {
+                    WINS[bits] = true;
+                    break;
+                }
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int row = cell/SIZE;
+            int col = cell%SIZE;
+            BOARD_OF[cell] = (row/3)*3+col/3;
+            BIT_OF[cell] = (row%3)*3+col%3;
+            CELL_AT[BOARD_OF[cell]][BIT_OF[cell]] = cell;
+        }
+    }
+
+    //================================================================================
+    // Private Variables
+    //================================================================================
+    //One 9 bit bitboard per sub-board and player.
+    private int[] xBits;
+    private int[] oBits;
+    //The macro board: sub-boards won by each player, and sub-boards that take no
+    //more moves (won or full).
+    private int macroX;
+    private int macroO;
+    private int closed;
+    //Sub-board the mover is sent to, or ANY_BOARD.
+    private int active;
+    private GameStatus status;
+    private char currentPlayer;
+    private char starter;
+
+    //Moves as cell indices, and the active board before each move.
+    private int[] history;
+    private int[] activeHistory;
+    private int historySize;
+
+    //================================================================================
+    // Constructors
+    //================================================================================
+    /*********************************************************************************
+     * UltimateTicTacToeGame - Constructor
+     *********************************************************************************
+     * Starts a new game of Ultimate Tic Tac Toe: a move in a cell of a sub-board
+     * sends the opponent to the sub-board at the same position of the macro board.
+     * A sub-board is closed once won or full, and a player sent to a closed board
+     * may play in any open one. Three won sub-boards in a line win the game; the
+     * game is drawn when every sub-board is closed without one.
+     *
+     * @param starter - The starting player.
+     ********************************************************************************/
+    public UltimateTicTacToeGame(char starter) {
+        this.xBits = new int[9];
+        this.oBits = new int[9];
+        this.active = ANY_BOARD;
+        this.status = GameStatus.IN_PROGRESS;
+        this.currentPlayer = starter;
+        this.starter = starter;
+        this.history = new int[CELL_COUNT];
+        this.activeHistory = new int[CELL_COUNT];
+    }
+
+    /*********************************************************************************
+     * UltimateTicTacToeGame - Copy Constructor
+     *********************************************************************************
+     * Creates an independent copy of another game, including its history.
+     *
+     * @param other - The game to copy.
+     ********************************************************************************/
+    private UltimateTicTacToeGame(UltimateTicTacToeGame other) {
+        this.xBits = other.xBits.clone();
+        this.oBits = other.oBits.clone();
+        this.macroX = other.macroX;
+        this.macroO = other.macroO;
+        this.closed = other.closed;
+        this.active = other.active;
+        this.status = other.status;
+        this.currentPlayer = other.currentPlayer;
+        this.starter = other.starter;
+        this.history = other.history.clone();
+        this.activeHistory = other.activeHistory.clone();
+        this.historySize = other.historySize;
+    }
+
+    //================================================================================
+    // Public Methods
+    //================================================================================
+    /*********************************************************************************
+     * select
+     *********************************************************************************
+     * Plays the current player on a cell after checking that the move is legal.
+     *
+     * @param row - The row on the full 9x9 board.
+     * @param col - The column on the full 9x9 board.
+     ********************************************************************************/
+    public void select(int row, int col) throws UnsupportedOperationException {
+        if (row < 0 || col < 0 || row >= SIZE || col >= SIZE)
+            throw new IndexOutOfBoundsException("The selected cell does not exist.");
+        if (this.status != GameStatus.IN_PROGRESS)
+            throw new UnsupportedOperationException("The game is over.");
+        int cell = row*SIZE+col;
+        if (!isLegal(cell))
+            throw new UnsupportedOperationException("Cell "+row+","+col+" may not be played now.");
+        play(cell);
+    }
+
+    /*********************************************************************************
+     * play
+     *********************************************************************************
+     * Plays the current player on a cell without checking the move, for searches
+     * that only play moves from legalMoves. Updates the sub-board, the macro board,
+     * the active board and the game status with a few bit operations.
+     *
+     * @param cell - The cell index (row*SIZE+col).
+     ********************************************************************************/
+    public void play(int cell) {
+        int board = BOARD_OF[cell];
+        int bit = BIT_OF[cell];
+        this.history[this.historySize] = cell;
+        this.activeHistory[this.historySize++] = this.active;
+
+        int boardMask = 1 << board;
+        if (this.currentPlayer == 'x') {
+            int bits = this.xBits[board] |= 1 << bit;
+            if (WINS[bits]) {
+                this.macroX |= boardMask;
+                this.closed |= boardMask;
+                if (WINS[this.macroX])
+                    this.status = GameStatus.X_WON;
+            }
+        } else {
+            int bits = this.oBits[board] |= 1 << bit;
+            if (WINS[bits]) {
+                this.macroO |= boardMask;
+                this.closed |= boardMask;
+                if (WINS[this.macroO])
+                    this.status = GameStatus.O_WON;
+            }
+        }
+        if ((this.xBits[board] | this.oBits[board]) == FULL)
+            this.closed |= boardMask;
+        if (this.closed == FULL && this.status == GameStatus.IN_PROGRESS)
+            this.status = GameStatus.CATS;
+
+        this.active = (this.closed & (1 << bit)) != 0 ? ANY_BOARD : bit;
+        this.currentPlayer = this.currentPlayer == 'x' ? 'o' : 'x';
+    }
+
+    /*********************************************************************************
+     * undo
+     *********************************************************************************
+     * Reverts the previous move. A closed sub-board takes no further moves, so if
+     * the move's sub-board is closed, it was this move that closed it.
+     ********************************************************************************/
+    public void undo() {
+        if (this.historySize <= 0)
+            throw new UnsupportedOperationException("There is nothing left to undo.");
+        int cell = this.history[--this.historySize];
+        int board = BOARD_OF[cell];
+        int mask = ~(1 << board);
+        this.currentPlayer = this.currentPlayer == 'x' ? 'o' : 'x';
+        if (this.currentPlayer == 'x')
+            this.xBits[board] &= ~(1 << BIT_OF[cell]);
+        else
+            this.oBits[board] &= ~(1 << BIT_OF[cell]);
+        this.macroX &= mask;
+        this.macroO &= mask;
+        this.closed &= mask;
+        this.active = this.activeHistory[this.historySize];
+        this.status = GameStatus.IN_PROGRESS;
+    }
+
+    /*********************************************************************************
+     * reset
+     *********************************************************************************
+     * Clears the board and the history and restores the starting player.
+     ********************************************************************************/
+    public void reset() {
+        Arrays.fill(this.xBits, 0);
+        Arrays.fill(this.oBits, 0);
+        this.macroX = 0;
+        this.macroO = 0;
+        this.closed = 0;
+        this.active = ANY_BOARD;
+        this.status = GameStatus.IN_PROGRESS;
+        this.currentPlayer = this.starter;
+        this.historySize = 0;
+    }
+
+    /*********************************************************************************
+     * legalMoves
+     *********************************************************************************
+     * Lists the legal moves: the empty cells of the active sub-board, or of every
+     * open sub-board when the mover may play anywhere. Each sub-board's empty cells
+     * come from its two bitboards, so only legal cells are visited.
+     *
+     * @param moves - Receives the moves as cell indices; CELL_COUNT entries suffice.
+     * @return count - The number of legal moves, 0 once the game is over.
+     ********************************************************************************/
+    public int legalMoves(int[] moves) {
+        if (this.status != GameStatus.IN_PROGRESS)
+            return 0;
+        if (this.active != ANY_BOARD)
+            return addEmpty(this.active, moves, 0);
+        int count = 0;
+        for (int open = ~this.closed & FULL; open != 0; open &= open-1)
+            count = addEmpty(Integer.numberOfTrailingZeros(open), moves, count);
+        return count;
+    }
+
+    /*********************************************************************************
+     * isLegal
+     *********************************************************************************
+     * Determines whether or not the current player may play on a cell.
+     *
+     * @param cell - The cell index (row*SIZE+col).
+     * @return result - Whether or not the move is legal.
+     ********************************************************************************/
+    public boolean isLegal(int cell) {
+        if (this.status != GameStatus.IN_PROGRESS || cell < 0 || cell >= CELL_COUNT)
+            return false;
+        int board = BOARD_OF[cell];
+        if ((this.closed & (1 << board)) != 0 || (this.active != ANY_BOARD && this.active != board))
+            return false;
+        return ((this.xBits[board] | this.oBits[board]) & (1 << BIT_OF[cell])) == 0;
+    }
+
+    /*********************************************************************************
+     * fork
+     *********************************************************************************
+     * Returns an independent copy of this game which may be played, undone, and
+     * handed to another thread without affecting this game.
+     *
+     * @return game - The forked game.
+     ********************************************************************************/
+    public UltimateTicTacToeGame fork() {
+        return new UltimateTicTacToeGame(this);
+    }
+
+    /*********************************************************************************
+     * isWin
+     *********************************************************************************
+     * Determines whether or not a 3x3 bitboard (bit row*3+col) holds a line.
+     *
+     * @param bits - The 9 bit bitboard.
+     * @return result - Whether or not there is a line.
+     ********************************************************************************/
+    public static boolean isWin(int bits) {
+        return WINS[bits];
+    }
+
+    /*********************************************************************************
+     * boardOf
+     *********************************************************************************
+     * Returns the sub-board a cell is in.
+     *
+     * @param cell - The cell index (row*SIZE+col).
+     * @return board - The sub-board, numbered row*3+col on the macro board.
+     ********************************************************************************/
+    public static int boardOf(int cell) {
+        return BOARD_OF[cell];
+    }
+
+    /*********************************************************************************
+     * bitOf
+     *********************************************************************************
+     * Returns a cell's position within its sub-board, which is also the sub-board
+     * a move there sends the opponent to.
+     *
+     * @param cell - The cell index (row*SIZE+col).
+     * @return bit - The position, row*3+col within the sub-board.
+     ********************************************************************************/
+    public static int bitOf(int cell) {
+        return BIT_OF[cell];
+    }
+
+    //================================================================================
+    // Private (Helper) Methods
+    //================================================================================
+    /*********************************************************************************
+     * addEmpty
+     *********************************************************************************
+     * Appends the empty cells of one sub-board to a move list.
+     *
+     * @return count - The new length of the list.
+     ********************************************************************************/
+    private int addEmpty(int board, int[] moves, int count) {
+        int[] cells = CELL_AT[board];
+        for (int empty = ~(this.xBits[board] | this.oBits[board]) & FULL; empty != 0; empty &= empty-1)
+            moves[count++] = cells[Integer.numberOfTrailingZeros(empty)];
+        return count;
+    }
+
+    //================================================================================
+    // Getter Methods
+    //================================================================================
+    /*********************************************************************************
+     * getGameStatus
+     *********************************************************************************
+     * Returns the current status of the game.
+     * @return status - The current status of the game.
+     ********************************************************************************/
+    public GameStatus getGameStatus() {
+        return this.status;
+    }
+
+    /*********************************************************************************
+     * getCell
+     *********************************************************************************
+     * Returns the byte code (see Cell.toByte) of a single cell.
+     * @param index - The cell index (row*SIZE+col).
+     * @return code - The cell's byte code.
+     ********************************************************************************/
+    public byte getCell(int index) {
+        int bit = 1 << BIT_OF[index];
+        if ((this.xBits[BOARD_OF[index]] & bit) != 0)
+            return Cell.X_CODE;
+        return (this.oBits[BOARD_OF[index]] & bit) != 0 ? Cell.O_CODE : Cell.EMPTY_CODE;
+    }
+
+    /*********************************************************************************
+     * getXBits
+     *********************************************************************************
+     * Returns X's bitboard of a sub-board.
+     * @param board - The sub-board, row*3+col on the macro board.
+     * @return bits - The 9 bit bitboard.
+     ********************************************************************************/
+    public int getXBits(int board) {
+        return this.xBits[board];
+    }
+
+    /*********************************************************************************
+     * getOBits
+     *********************************************************************************
+     * Returns O's bitboard of a sub-board.
+     * @param board - The sub-board, row*3+col on the macro board.
+     * @return bits - The 9 bit bitboard.
+     ********************************************************************************/
+    public int getOBits(int board) {
+        return this.oBits[board];
+    }
+
+    /*********************************************************************************
+     * getMacroX
+     *********************************************************************************
+     * Returns the sub-boards X has won, one bit per sub-board.
+     * @return bits - The 9 bit macro bitboard.
+     ********************************************************************************/
+    public int getMacroX() {
+        return this.macroX;
+    }
+
+    /*********************************************************************************
+     * getMacroO
+     *********************************************************************************
+     * Returns the sub-boards O has won, one bit per sub-board.
+     * @return bits - The 9 bit macro bitboard.
+     ********************************************************************************/
+    public int getMacroO() {
+        return this.macroO;
+    }
+
+    /*********************************************************************************
+     * getClosed
+     *********************************************************************************
+     * Returns the sub-boards that take no more moves, won or full.
+     * @return bits - The 9 bit macro bitboard.
+     ********************************************************************************/
+    public int getClosed() {
+        return this.closed;
+    }
+
+    /*********************************************************************************
+     * getActiveBoard
+     *********************************************************************************
+     * Returns the sub-board the current player must play in.
+     * @return board - The sub-board (row*3+col), or ANY_BOARD.
+     ********************************************************************************/
+    public int getActiveBoard() {
+        return this.active;
+    }
+
+    /*********************************************************************************
+     * getPly
+     *********************************************************************************
+     * Returns the number of moves currently on the board.
+     * @return ply - The number of moves played.
+     ********************************************************************************/
+    public int getPly() {
+        return this.historySize;
+    }
+
+    /*********************************************************************************
+     * getMove
+     *********************************************************************************
+     * Returns the cell index (row*SIZE+col) of a played move.
+     * @param ply - The zero based ply of the move.
+     * @return index - The cell index of the move.
+     ********************************************************************************/
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= this.historySize)
+            throw new IndexOutOfBoundsException("Ply "+ply+" is outside of the game history.");
+        return this.history[ply];
+    }
+
+    /*********************************************************************************
+     * getCurrentPlayer
+     *********************************************************************************
+     * Returns the player whose turn it is.
+     * @return currentPlayer - The current player ('x'/'o').
+     ********************************************************************************/
+    public char getCurrentPlayer() {
+        return this.currentPlayer;
+    }
+
+    /*********************************************************************************
+     * getStarter
+     *********************************************************************************
+     * Returns the player that started the game.
+     * @return starter - The starting player ('x'/'o').
+     ********************************************************************************/
+    public char getStarter() {
+        return this.starter;
+    }
+}